@@ -0,0 +1,122 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Helpers for the variable-length part of the generated codecs.
+ * A string or an array is written as its length in an int, -1 for null, followed by its elements.
+ * Strings are encoded into UTF-8 directly in the buffer, so encoding does not allocate.
+ * Decoding allocates only the string itself if the buffer has an accessible array.
+ *
+ * @author Tsutomu YANO
+ */
+public final class ByteBuffers {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[256];
+        }
+    };
+
+    private ByteBuffers() {
+        super();
+    }
+
+    /**
+     * @return the number of bytes which {@link #putString(ByteBuffer, String)} writes.
+     */
+    public static int sizeOf(String value) {
+        return value == null ? 4 : 4 + utf8Length(value);
+    }
+
+    public static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                length++;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    //an unpaired surrogate is replaced with '?', like String.getBytes().
+                    length++;
+                }
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        if(value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        int length = utf8Length(value);
+        if(buffer.remaining() < 4 + length) throw new BufferOverflowException();
+        buffer.putInt(length);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                buffer.put((byte) c);
+            } else if(c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    buffer.put((byte) '?');
+                }
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = getLength(buffer, 1);
+        if(length < 0) return null;
+        int position = buffer.position();
+        if(buffer.hasArray()) {
+            buffer.position(position + length);
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, UTF_8);
+        }
+        byte[] scratch = SCRATCH.get();
+        if(scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length << 1)];
+            SCRATCH.set(scratch);
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, UTF_8);
+    }
+
+    /**
+     * Read the length of a string or an array, and check that the buffer has all of its elements.
+     *
+     * @return the length, or -1 for null.
+     */
+    public static int getLength(ByteBuffer buffer, int elementSize) {
+        int length = buffer.getInt();
+        if(length == -1) return -1;
+        if(length < 0) throw new IllegalArgumentException("malformed length: " + length);
+        if(length > buffer.remaining() / elementSize) throw new BufferUnderflowException();
+        return length;
+    }
+}
@@ -0,0 +1,448 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the values assigned by the setters of generated classes, which 'journal' of
+ * {@link com.shelfmap.interfaceprocessor.annotation.GenerateClass} is true.
+ *
+ * A setter encodes its record into a buffer of the current thread and appends it to the in-memory buffer of the journal.
+ * The buffer is written to the file and forced to the disk by {@link #sync()}, by a background thread every flushInterval
+ * milliseconds, or by {@link #close()}. Appending continues into a second buffer while a batch is written,
+ * and the threads which call sync() at the same time share one write and one force (group commit).
+ *
+ * A journal records the instances of one class. Each record consists of its length, its CRC32, the id of the instance,
+ * the index of the property, the time in milliseconds and the value. When a journal is opened, the records are verified
+ * and a torn record at the end, left by a crash, is truncated.
+ * If writing the file fails, the journal is broken: append() throws an UncheckedIOException, so a setter fails
+ * instead of losing its record silently, and sync() and close() throw the exception.
+ *
+ * @author Tsutomu YANO
+ */
+public final class ChangeJournal implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    private static final int BODY_HEADER_SIZE = 20;
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private static final ThreadLocal<Record> RECORDS = new ThreadLocal<Record>() {
+        @Override
+        protected Record initialValue() {
+            return new Record();
+        }
+    };
+
+    private static final ThreadLocal<CRC32> CHECKSUMS = new ThreadLocal<CRC32>() {
+        @Override
+        protected CRC32 initialValue() {
+            return new CRC32();
+        }
+    };
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final AtomicLong instanceIds;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final Condition requested = lock.newCondition();
+    private final Thread flusher;
+    private Record active = new Record();
+    private Record spare = new Record();
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Open a journal which is written only by {@link #sync()} and {@link #close()}.
+     */
+    public ChangeJournal(File file) throws IOException {
+        this(file, 0L);
+    }
+
+    /**
+     * Open a journal, and append to it if the file exists.
+     *
+     * @param flushIntervalMillis the interval of a background thread which writes and forces the appended records.
+     * if it is 0, no thread is started.
+     */
+    public ChangeJournal(File file, long flushIntervalMillis) throws IOException {
+        if(file == null) throw new IllegalArgumentException("the argument 'file' should not be null.");
+        if(flushIntervalMillis < 0L) throw new IllegalArgumentException("the argument 'flushIntervalMillis' must not be negative.");
+        final long[] maxId = new long[1];
+        long valid = file.exists() ? read(file, new Handler() {
+            @Override
+            public void record(long instanceId, int propertyIndex, long timestamp, DataInput in) {
+                maxId[0] = Math.max(maxId[0], instanceId);
+            }
+        }) : 0L;
+
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        try {
+            this.channel.truncate(valid);
+            this.channel.position(valid);
+        } catch (IOException ex) {
+            this.file.close();
+            throw ex;
+        }
+        this.instanceIds = new AtomicLong(maxId[0]);
+
+        if(flushIntervalMillis > 0L) {
+            this.flusher = new Thread(new Flusher(flushIntervalMillis), "ChangeJournal-" + file.getName());
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * @return a new id for an instance, which is greater than all ids in the file when it was opened.
+     */
+    public long nextInstanceId() {
+        return this.instanceIds.incrementAndGet();
+    }
+
+    /**
+     * Start a record in the buffer of the current thread. write the value into the returned Record, and pass it to {@link #append(Record)}.
+     */
+    public Record begin(long instanceId, int propertyIndex) {
+        Record record = RECORDS.get();
+        record.reset();
+        record.ensure(HEADER_SIZE);
+        record.count = HEADER_SIZE;
+        record.writeLong(instanceId);
+        record.writeInt(propertyIndex);
+        record.writeLong(System.currentTimeMillis());
+        return record;
+    }
+
+    /**
+     * Append a record started by {@link #begin(long, int)}. The record is not written to the file by this method.
+     *
+     * @throws IllegalStateException if this journal is closed.
+     * @throws UncheckedIOException if writing the file has failed. The records appended after the failure are not recorded.
+     */
+    public void append(Record record) {
+        int length = record.count - HEADER_SIZE;
+        CRC32 crc = CHECKSUMS.get();
+        crc.reset();
+        crc.update(record.bytes, HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+
+        this.lock.lock();
+        try {
+            if(this.closed) throw new IllegalStateException("the journal is closed.");
+            if(this.failure != null) throw new UncheckedIOException("the journal could not be written.", this.failure);
+            this.active.put(record);
+            this.appended++;
+            if(this.flusher != null && this.active.count >= FLUSH_THRESHOLD) {
+                this.requested.signal();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Write and force all records appended before this call. If another thread is writing a batch,
+     * this method waits for it and writes the records appended meanwhile as the next batch at once.
+     */
+    public void sync() throws IOException {
+        this.lock.lock();
+        try {
+            long target = this.appended;
+            while(this.durable < target) {
+                checkFailure();
+                if(this.flushing) {
+                    this.flushed.awaitUninterruptibly();
+                } else {
+                    writeBatch();
+                }
+            }
+            checkFailure();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the background thread, write all appended records and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            if(this.closed) return;
+            this.closed = true;
+            this.requested.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        if(this.flusher != null) {
+            boolean interrupted = false;
+            while(this.flusher.isAlive()) {
+                try {
+                    this.flusher.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) Thread.currentThread().interrupt();
+        }
+
+        try {
+            sync();
+        } finally {
+            this.file.close();
+        }
+    }
+
+    /**
+     * Write the active buffer as one batch. It must be called by the thread holding the lock,
+     * and the lock is released while the file is written.
+     */
+    private void writeBatch() throws IOException {
+        Record batch = this.active;
+        long target = this.appended;
+        this.active = this.spare;
+        this.spare = null;
+        this.flushing = true;
+        this.lock.unlock();
+
+        IOException error = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.bytes, 0, batch.count);
+            while(buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            this.channel.force(false);
+        } catch (IOException ex) {
+            error = ex;
+        } finally {
+            this.lock.lock();
+            batch.reset();
+            this.spare = batch;
+            this.flushing = false;
+            if(error == null) {
+                this.durable = target;
+            } else {
+                this.failure = error;
+                this.active.reset();
+            }
+            this.flushed.signalAll();
+        }
+        if(error != null) throw error;
+    }
+
+    private void checkFailure() throws IOException {
+        if(this.failure != null) {
+            throw new IOException("the journal could not be written.", this.failure);
+        }
+    }
+
+    private final class Flusher implements Runnable {
+        private final long intervalNanos;
+
+        Flusher(long intervalMillis) {
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        }
+
+        @Override
+        public void run() {
+            lock.lock();
+            try {
+                while(!closed) {
+                    try {
+                        requested.awaitNanos(this.intervalNanos);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    if(!flushing && failure == null && durable < appended) {
+                        try {
+                            writeBatch();
+                        } catch (IOException ex) {
+                            //it is reported by sync() and close().
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Read all records of a journal in the order of their appending. The reading stops at a torn or broken record.
+     */
+    public static void replay(File file, Handler handler) throws IOException {
+        if(file == null) throw new IllegalArgumentException("the argument 'file' should not be null.");
+        if(handler == null) throw new IllegalArgumentException("the argument 'handler' should not be null.");
+        read(file, handler);
+    }
+
+    /**
+     * @return the length of the valid records.
+     */
+    private static long read(File file, Handler handler) throws IOException {
+        long size = file.length();
+        InputStream stream = new FileInputStream(file);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            CRC32 crc = new CRC32();
+            byte[] body = new byte[64];
+            long valid = 0L;
+            for(;;) {
+                if(size - valid < HEADER_SIZE) return valid;
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if(length < BODY_HEADER_SIZE || length > size - valid - HEADER_SIZE) return valid;
+                if(body.length < length) body = new byte[length];
+                try {
+                    in.readFully(body, 0, length);
+                } catch (EOFException ex) {
+                    return valid;
+                }
+                crc.reset();
+                crc.update(body, 0, length);
+                if((int) crc.getValue() != checksum) return valid;
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body, 0, length));
+                handler.record(record.readLong(), record.readInt(), record.readLong(), record);
+                valid += HEADER_SIZE + length;
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Receives the records of a journal from {@link ChangeJournal#replay(File, Handler)}.
+     */
+    public interface Handler {
+        /**
+         * @param in the value of the record, which is encoded like a value of writeDelta().
+         */
+        void record(long instanceId, int propertyIndex, long timestamp, DataInput in) throws IOException;
+    }
+
+    /**
+     * A growable buffer for encoding records. Values are encoded like {@link DeltaStreams}, but the methods never throw IOException.
+     */
+    public static final class Record {
+        private byte[] bytes = new byte[256];
+        private int count;
+
+        Record() {
+            super();
+        }
+
+        public void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        public void writeByte(int value) {
+            ensure(1);
+            this.bytes[this.count++] = (byte) value;
+        }
+
+        public void writeShort(int value) {
+            ensure(2);
+            this.bytes[this.count++] = (byte) (value >>> 8);
+            this.bytes[this.count++] = (byte) value;
+        }
+
+        public void writeChar(int value) {
+            writeShort(value);
+        }
+
+        public void writeInt(int value) {
+            ensure(4);
+            putInt(this.count, value);
+            this.count += 4;
+        }
+
+        public void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        public void writeFloat(float value) {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        public void writeDouble(double value) {
+            writeLong(Double.doubleToLongBits(value));
+        }
+
+        public void writeString(String value) {
+            if(value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] encoded = DeltaStreams.encode(value);
+            writeVarInt(encoded.length + 1);
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, this.bytes, this.count, encoded.length);
+            this.count += encoded.length;
+        }
+
+        public void writeEnum(Enum<?> value) {
+            writeString(value == null ? null : value.name());
+        }
+
+        private void writeVarInt(int value) {
+            while((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void put(Record record) {
+            ensure(record.count);
+            System.arraycopy(record.bytes, 0, this.bytes, this.count, record.count);
+            this.count += record.count;
+        }
+
+        void putInt(int position, int value) {
+            this.bytes[position] = (byte) (value >>> 24);
+            this.bytes[position + 1] = (byte) (value >>> 16);
+            this.bytes[position + 2] = (byte) (value >>> 8);
+            this.bytes[position + 3] = (byte) value;
+        }
+
+        void ensure(int size) {
+            if(this.count + size > this.bytes.length) {
+                byte[] grown = new byte[Math.max(this.bytes.length << 1, this.count + size)];
+                System.arraycopy(this.bytes, 0, grown, 0, this.count);
+                this.bytes = grown;
+            }
+        }
+
+        void reset() {
+            this.count = 0;
+        }
+    }
+}
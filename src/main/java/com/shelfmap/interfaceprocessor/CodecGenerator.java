@@ -0,0 +1,299 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+import static com.shelfmap.interfaceprocessor.util.Strings.toConstantName;
+
+/**
+ * Generates the codec of a class annotated with {@code @GenerateClass(generateCodec = true)}.
+ *
+ * @author Tsutomu YANO
+ */
+public class CodecGenerator extends CompanionGenerator {
+    private static final String CODEC_SUFFIX = "Codec";
+
+    public CodecGenerator(InterfaceProcessor processor, ProcessingEnvironment processingEnv) {
+        super(processor, processingEnv, CODEC_SUFFIX);
+    }
+
+    /**
+     * Generate a codec which writes the properties into a ByteBuffer without allocation.
+     * The fixed part holds the primitives, the wrappers and the ordinals of enums at offsets computed here, the larger ones first
+     * so that they are aligned to their sizes from the start of an encoded value. The presence flags of the wrappers follow them.
+     * The variable part follows the fixed part, and holds strings and arrays in the order of the constructor parameters.
+     */
+    @Override
+    protected void generate(Writer writer, ClassDefinition definition, String packageName, String className, String codecName) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Attribute> attributes = getSerializedAttributes(definition);
+        String typeName = definition.getPackage() + "." + definition.getClassName();
+        String byteBuffers = ByteBuffers.class.getName();
+
+        List<Attribute> fixed = new ArrayList<Attribute>();
+        List<Attribute> variable = new ArrayList<Attribute>();
+        for (Attribute attribute : attributes) {
+            if(fixedKindOf(attribute.getType()) != null) {
+                fixed.add(attribute);
+            } else {
+                variable.add(attribute);
+            }
+        }
+        Map<String, Integer> offsets = new LinkedHashMap<String, Integer>();
+        int fixedSize = 0;
+        for (int size = 8; size >= 1; size >>= 1) {
+            for (Attribute attribute : fixed) {
+                if(sizeOf(fixedKindOf(attribute.getType())) == size) {
+                    offsets.put(toConstantName(attribute.getName()) + "_OFFSET", fixedSize);
+                    fixedSize += size;
+                }
+            }
+        }
+        for (Attribute attribute : fixed) {
+            if(isWrapper(attribute)) {
+                offsets.put(toConstantName(attribute.getName()) + "_PRESENT_OFFSET", fixedSize++);
+            }
+        }
+
+        generateCompanionHeader(writer, packageName, codecName);
+        int shift = 1;
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * The size of the part of an encoded value which does not depend on the lengths of strings and arrays.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift)).append("public static final int FIXED_SIZE = ").append(String.valueOf(fixedSize)).append(";\n");
+        for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+            writer.append(indent(shift)).append("private static final int ").append(entry.getKey()).append(" = ").append(entry.getValue().toString()).append(";\n");
+        }
+        for (Attribute attribute : fixed) {
+            if(isEnum(attribute)) {
+                String enumName = typeUtils.erasure(attribute.getType()).toString();
+                //values() copies the array for each call.
+                writer.append(indent(shift)).append("private static final ").append(enumName).append("[] ").append(toConstantName(attribute.getName())).append("_VALUES = ").append(enumName).append(".values();\n");
+            }
+        }
+
+        writer.append("\n")
+              .append(indent(shift++)).append("private ").append(codecName).append("() {\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @return the number of bytes which encode() writes for the value.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static int encodedSize(").append(typeName).append(" value) {\n")
+              .append(indent(shift)).append("if(value == null) throw new IllegalArgumentException(\"the argument 'value' should not be null.\");\n")
+              .append(indent(shift)).append("int size = FIXED_SIZE;\n");
+        for (Attribute attribute : variable) {
+            String getter = getterExpression(attribute);
+            TypeMirror type = attribute.getType();
+            if(type.getKind() == TypeKind.ARRAY) {
+                String local = attribute.getName() + "Value";
+                int elementSize = sizeOf(((ArrayType) type).getComponentType().getKind());
+                writer.append(indent(shift)).append(type.toString()).append(" ").append(local).append(" = ").append(getter).append(";\n")
+                      .append(indent(shift)).append("size += ").append(local).append(" == null ? 4 : 4 + ").append(local).append(".length").append(elementSize == 1 ? "" : " * " + elementSize).append(";\n");
+            } else {
+                writer.append(indent(shift)).append("size += ").append(byteBuffers).append(".sizeOf(").append(getter).append(");\n");
+            }
+        }
+        writer.append(indent(shift)).append("return size;\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Write the value at the position of the buffer in the byte order of the buffer, and advance the position.\n")
+              .append(indent(shift)).append(" * The buffer must have encodedSize(value) bytes remaining, or the position is undefined after BufferOverflowException.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static void encode(").append(typeName).append(" value, java.nio.ByteBuffer buffer) {\n")
+              .append(indent(shift)).append("if(value == null) throw new IllegalArgumentException(\"the argument 'value' should not be null.\");\n")
+              .append(indent(shift)).append("if(buffer == null) throw new IllegalArgumentException(\"the argument 'buffer' should not be null.\");\n")
+              .append(indent(shift)).append("if(buffer.remaining() < FIXED_SIZE) throw new java.nio.BufferOverflowException();\n")
+              .append(indent(shift)).append("int base = buffer.position();\n");
+        for (Attribute attribute : fixed) {
+            String getter = getterExpression(attribute);
+            String constant = toConstantName(attribute.getName());
+            String offset = "base + " + constant + "_OFFSET";
+            TypeKind kind = fixedKindOf(attribute.getType());
+            String local = attribute.getName() + "Value";
+            if(isWrapper(attribute)) {
+                String stored = kind == TypeKind.BOOLEAN
+                        ? local + " != null && " + local
+                        : local + " != null ? " + local + " : 0";
+                writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(local).append(" = ").append(getter).append(";\n")
+                      .append(indent(shift)).append("buffer.put(base + ").append(constant).append("_PRESENT_OFFSET, (byte) (").append(local).append(" != null ? 1 : 0));\n")
+                      .append(indent(shift)).append(bufferPutExpression(kind, offset, kind == TypeKind.BOOLEAN ? stored : "(" + stored + ")")).append(";\n");
+            } else if(isEnum(attribute)) {
+                writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(local).append(" = ").append(getter).append(";\n")
+                      .append(indent(shift)).append("buffer.putInt(").append(offset).append(", ").append(local).append(" == null ? -1 : ").append(local).append(".ordinal());\n");
+            } else {
+                writer.append(indent(shift)).append(bufferPutExpression(kind, offset, getter)).append(";\n");
+            }
+        }
+        writer.append(indent(shift)).append("buffer.position(base + FIXED_SIZE);\n");
+        for (Attribute attribute : variable) {
+            String getter = getterExpression(attribute);
+            TypeMirror type = attribute.getType();
+            if(type.getKind() == TypeKind.ARRAY) {
+                String local = attribute.getName() + "Value";
+                TypeKind kind = ((ArrayType) type).getComponentType().getKind();
+                writer.append(indent(shift)).append(type.toString()).append(" ").append(local).append(" = ").append(getter).append(";\n")
+                      .append(indent(shift++)).append("if (").append(local).append(" == null) {\n")
+                      .append(indent(shift)).append("buffer.putInt(-1);\n")
+                      .append(indent(--shift)).append("} else {\n")
+                      .append(indent(++shift)).append("buffer.putInt(").append(local).append(".length);\n");
+                if(kind == TypeKind.BYTE) {
+                    writer.append(indent(shift)).append("buffer.put(").append(local).append(");\n");
+                } else {
+                    writer.append(indent(shift)).append("for (int i = 0; i < ").append(local).append(".length; i++) ").append(bufferPutExpression(kind, null, local + "[i]")).append(";\n");
+                }
+                writer.append(indent(--shift)).append("}\n");
+            } else {
+                writer.append(indent(shift)).append(byteBuffers).append(".putString(buffer, ").append(getter).append(");\n");
+            }
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Read a value written by encode() at the position of the buffer, and advance the position.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static ").append(className).append(" decode(java.nio.ByteBuffer buffer) {\n");
+        shift = generateCodecReads(writer, shift, fixed, variable);
+        writer.append(indent(shift)).append("return new ").append(className).append("(");
+        boolean isFirst = true;
+        for (Attribute attribute : attributes) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(attribute.getName()).append("Value");
+        }
+        writer.append(");\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Read a value written by encode() at the position of the buffer into the target through its setters, and advance the position.\n")
+              .append(indent(shift)).append(" * The properties which have no setter are skipped.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static void decodeInto(java.nio.ByteBuffer buffer, ").append(typeName).append(" target) {\n")
+              .append(indent(shift)).append("if(target == null) throw new IllegalArgumentException(\"the argument 'target' should not be null.\");\n");
+        shift = generateCodecReads(writer, shift, fixed, variable);
+        for (Attribute attribute : attributes) {
+            Property property = (Property) attribute;
+            if(property.isWritable()) {
+                writer.append(indent(shift)).append("target.").append(property.getWriter().getSimpleName()).append("(").append(attribute.getName()).append("Value);\n");
+            }
+        }
+        writer.append(indent(--shift)).append("}\n");
+        writer.append("}");
+    }
+
+    /**
+     * Generate the statements which read all values from 'buffer' into the local variables named by the attributes with the suffix 'Value'.
+     */
+    private int generateCodecReads(Writer writer, int shift, List<Attribute> fixed, List<Attribute> variable) throws IOException {
+        String byteBuffers = ByteBuffers.class.getName();
+        writer.append(indent(shift)).append("if(buffer == null) throw new IllegalArgumentException(\"the argument 'buffer' should not be null.\");\n")
+              .append(indent(shift)).append("if(buffer.remaining() < FIXED_SIZE) throw new java.nio.BufferUnderflowException();\n")
+              .append(indent(shift)).append("int base = buffer.position();\n");
+        for (Attribute attribute : fixed) {
+            String constant = toConstantName(attribute.getName());
+            String offset = "base + " + constant + "_OFFSET";
+            TypeKind kind = fixedKindOf(attribute.getType());
+            String type = attribute.getType().toString();
+            String local = attribute.getName() + "Value";
+            if(isWrapper(attribute)) {
+                writer.append(indent(shift)).append(type).append(" ").append(local).append(" = buffer.get(base + ").append(constant).append("_PRESENT_OFFSET) != 0 ? ")
+                      .append(type).append(".valueOf(").append(bufferGetExpression(kind, offset)).append(") : null;\n");
+            } else if(isEnum(attribute)) {
+                writer.append(indent(shift)).append("int ").append(attribute.getName()).append("Ordinal = buffer.getInt(").append(offset).append(");\n")
+                      .append(indent(shift)).append(type).append(" ").append(local).append(" = ").append(attribute.getName()).append("Ordinal < 0 ? null : ")
+                      .append(constant).append("_VALUES[").append(attribute.getName()).append("Ordinal];\n");
+            } else {
+                writer.append(indent(shift)).append(type).append(" ").append(local).append(" = ").append(bufferGetExpression(kind, offset)).append(";\n");
+            }
+        }
+        writer.append(indent(shift)).append("buffer.position(base + FIXED_SIZE);\n");
+        for (Attribute attribute : variable) {
+            TypeMirror type = attribute.getType();
+            String local = attribute.getName() + "Value";
+            if(type.getKind() == TypeKind.ARRAY) {
+                TypeKind kind = ((ArrayType) type).getComponentType().getKind();
+                String length = attribute.getName() + "Length";
+                writer.append(indent(shift)).append("int ").append(length).append(" = ").append(byteBuffers).append(".getLength(buffer, ").append(String.valueOf(sizeOf(kind))).append(");\n")
+                      .append(indent(shift)).append(type.toString()).append(" ").append(local).append(" = ").append(length).append(" < 0 ? null : new ")
+                      .append(kind.name().toLowerCase()).append("[").append(length).append("];\n");
+                if(kind == TypeKind.BYTE) {
+                    writer.append(indent(shift)).append("if (").append(local).append(" != null) buffer.get(").append(local).append(");\n");
+                } else {
+                    writer.append(indent(shift)).append("for (int i = 0; i < ").append(length).append("; i++) ").append(local).append("[i] = ").append(bufferGetExpression(kind, null)).append(";\n");
+                }
+            } else {
+                writer.append(indent(shift)).append("String ").append(local).append(" = ").append(byteBuffers).append(".getString(buffer);\n");
+            }
+        }
+        return shift;
+    }
+
+    /**
+     * @return the kind of the primitive which holds a value of the type in the fixed part of a codec, or null for a string or an array.
+     */
+    private TypeKind fixedKindOf(TypeMirror type) {
+        if(isPrimitive(type)) return type.getKind();
+        if(type.getKind() != TypeKind.DECLARED) return null;
+        if(processingEnv.getTypeUtils().asElement(type).getKind() == ElementKind.ENUM) return TypeKind.INT;
+        return unboxedKind(type);
+    }
+
+    private int sizeOf(TypeKind kind) {
+        switch(kind) {
+            case BOOLEAN:
+            case BYTE:
+                return 1;
+            case CHAR:
+            case SHORT:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            default:
+                return 8;
+        }
+    }
+
+    /**
+     * @return the name of the method of ByteBuffer for a primitive kind, such as "Int". booleans are stored as bytes.
+     */
+    private String bufferMethodOf(TypeKind kind) {
+        return kind == TypeKind.BOOLEAN || kind == TypeKind.BYTE ? "" : dataMethodOf(kind);
+    }
+
+    private String bufferPutExpression(TypeKind kind, String index, String value) {
+        String stored = kind == TypeKind.BOOLEAN ? "(byte) (" + value + " ? 1 : 0)" : value;
+        return "buffer.put" + bufferMethodOf(kind) + "(" + (index == null ? "" : index + ", ") + stored + ")";
+    }
+
+    private String bufferGetExpression(TypeKind kind, String index) {
+        String read = "buffer.get" + bufferMethodOf(kind) + "(" + (index == null ? "" : index) + ")";
+        return kind == TypeKind.BOOLEAN ? read + " != 0" : read;
+    }
+}
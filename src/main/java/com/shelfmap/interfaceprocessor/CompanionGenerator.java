@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.util.IO;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.JavaFileObject;
+
+/**
+ * The base class of the generators of the companion classes, such as codecs, which are generated in their own source files
+ * beside the implementation of an interface. The helpers of the processor are used through it.
+ *
+ * @author Tsutomu YANO
+ */
+public abstract class CompanionGenerator {
+    protected final InterfaceProcessor processor;
+    protected final ProcessingEnvironment processingEnv;
+    private final String suffix;
+
+    /**
+     * @param suffix the suffix which is appended to the name of the interface to name the companion class.
+     */
+    protected CompanionGenerator(InterfaceProcessor processor, ProcessingEnvironment processingEnv, String suffix) {
+        this.processor = processor;
+        this.processingEnv = processingEnv;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Generate the companion class in its own source file.
+     */
+    public void generate(ClassDefinition definition, String packageName, String className, TypeElement element) {
+        String name = definition.getClassName() + suffix;
+        Writer writer = null;
+        try {
+            JavaFileObject javaFile = processingEnv.getFiler().createSourceFile(packageName + "." + name, element);
+            writer = javaFile.openWriter();
+            generate(writer, definition, packageName, className, name);
+            writer.flush();
+        } catch (IOException ex) {
+            Logger.getLogger(PropertyVisitor.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            IO.close(writer, this);
+        }
+    }
+
+    /**
+     * Generate the source of the companion class.
+     *
+     * @param className the name of the implementation class.
+     * @param name the name of the companion class.
+     */
+    protected abstract void generate(Writer writer, ClassDefinition definition, String packageName, String className, String name) throws IOException;
+
+    /**
+     * Generate the package declaration and the beginning of a companion class, which is final.
+     */
+    protected final void generateCompanionHeader(Writer writer, String packageName, String name) throws IOException {
+        String generationTime = String.format("%1$tFT%1$tH:%1$tM:%1$tS.%1$tL%1$tz", new Date());
+        writer.append("package ").append(packageName).append(";\n\n");
+        writer.append("@javax.annotation.Generated(value = \"" + processor.getClass().getName() + "\", date = \"" + generationTime + "\")\n");
+        writer.append("public final class ").append(name).append(" {\n");
+    }
+
+    protected final String getterExpression(Attribute attribute) {
+        return "value." + ((Property) attribute).getReader().getSimpleName() + "()";
+    }
+
+    protected final boolean isWrapper(Attribute attribute) {
+        return !isPrimitive(attribute.getType()) && attribute.getType().getKind() == TypeKind.DECLARED && unboxedKind(attribute.getType()) != null;
+    }
+
+    protected final boolean isEnum(Attribute attribute) {
+        TypeMirror type = attribute.getType();
+        return type.getKind() == TypeKind.DECLARED && processingEnv.getTypeUtils().asElement(type).getKind() == ElementKind.ENUM;
+    }
+
+    protected final List<Attribute> getSerializedAttributes(ClassDefinition definition) {
+        return processor.getSerializedAttributes(definition);
+    }
+
+    protected final boolean isPrimitive(TypeMirror type) {
+        return processor.isPrimitive(type);
+    }
+
+    protected final TypeKind unboxedKind(TypeMirror type) {
+        return processor.unboxedKind(type);
+    }
+
+    protected final String defaultValueOf(TypeMirror type) {
+        return processor.defaultValueOf(type);
+    }
+
+    protected final String dataMethodOf(TypeKind kind) {
+        return processor.dataMethodOf(kind);
+    }
+
+    protected final String indent(int indent) {
+        return processor.indent(indent);
+    }
+}
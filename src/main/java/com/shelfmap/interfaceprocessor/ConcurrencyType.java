@@ -0,0 +1,45 @@
+package com.shelfmap.interfaceprocessor;
+
+/**
+ * The locking strategy a generated class uses when 'isThreadSafe' of
+ * {@link com.shelfmap.interfaceprocessor.annotation.GenerateClass} is true.
+ *
+ * @author Tsutomu YANO
+ */
+public enum ConcurrencyType {
+    /**
+     * all accessors are guarded by a {@code java.util.concurrent.locks.ReentrantReadWriteLock}.
+     */
+    READ_WRITE_LOCK,
+
+    /**
+     * setters are guarded by the write lock of a {@code java.util.concurrent.locks.StampedLock}.
+     * getters, equals(), hashCode() and toString() read the fields under an optimistic stamp
+     * and fall back to the read lock only when a writer interleaved.
+     */
+    STAMPED_LOCK,
+
+    /**
+     * all fields are declared volatile and no lock is generated.
+     * each property is atomic and visible on its own, but equals(), hashCode() and toString()
+     * may observe values of different concurrent setters, and the old value of a PropertyChangeEvent
+     * is not read atomically with the write.
+     */
+    VOLATILE,
+
+    /**
+     * the values of all properties are held by an immutable nested class 'State' in an AtomicReference.
+     * getters read the current State without any lock, and setters replace it with a modified copy by compare-and-set.
+     * snapshot() returns the current State, which is a consistent view of all properties.
+     * suitable for objects which are read far more often than written.
+     */
+    COPY_ON_WRITE,
+
+    /**
+     * the fields are guarded by a sequence lock. a writer makes the sequence odd before writing and even after it,
+     * and readers retry while the sequence is odd or has changed, so readers never write to the shared memory.
+     * snapshot() returns a consistent State of all properties.
+     * only primitive properties are allowed.
+     */
+    SEQLOCK;
+}
@@ -0,0 +1,445 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A cursor over delimited records, which the generated CSV readers parse with.
+ * Fields are separated by the delimiter and records by LF or CRLF. A field which starts with a quote is quoted like RFC 4180,
+ * and may contain delimiters, line breaks and doubled quotes. Empty lines are skipped.
+ * An unquoted empty field is null, and a quoted empty field is an empty string.
+ * <p>
+ * A cursor reads a CharSequence, such as a CharBuffer decoded from a mapped file, in place, or a Reader through a window
+ * which holds only the current field. Numbers are parsed from the characters without creating a String.
+ * Malformed data is reported by an IllegalArgumentException. An instance is not thread-safe.
+ *
+ * @author Tsutomu YANO
+ */
+public final class CsvCursor {
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] FLOAT_POWERS = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private final char delimiter;
+    private final CharSequence sequence;
+    private final Reader reader;
+    private char[] window;
+    private boolean exhausted;
+    private int position;
+    private int end;
+
+    private int fieldStart;
+    private int fieldEnd;
+    private boolean quoted;
+    private boolean escaped;
+    private boolean endOfRecord = true;
+    private long record;
+    private int column;
+    private final StringBuilder builder = new StringBuilder();
+
+    private long mantissa;
+    private int exponent;
+    private int digits;
+    private boolean negative;
+
+    /**
+     * A cursor over the characters from start to end of the input.
+     */
+    public CsvCursor(char delimiter, CharSequence input, int start, int end) {
+        if(input == null) throw new IllegalArgumentException("the argument 'input' should not be null.");
+        if(start < 0 || start > end || end > input.length()) throw new IndexOutOfBoundsException("start: " + start + ", end: " + end);
+        checkDelimiter(delimiter);
+        this.delimiter = delimiter;
+        this.sequence = input;
+        this.reader = null;
+        this.position = start;
+        this.end = end;
+    }
+
+    public CsvCursor(char delimiter, Reader reader) {
+        if(reader == null) throw new IllegalArgumentException("the argument 'reader' should not be null.");
+        checkDelimiter(delimiter);
+        this.delimiter = delimiter;
+        this.sequence = null;
+        this.reader = reader;
+        this.window = new char[8192];
+    }
+
+    private static void checkDelimiter(char delimiter) {
+        if(delimiter == '"' || delimiter == '\n' || delimiter == '\r') throw new IllegalArgumentException("the delimiter can not be a quote nor a line break.");
+    }
+
+    /**
+     * Move to the next record. the rest of the current record is skipped.
+     *
+     * @return false at the end of the input.
+     */
+    public boolean nextRecord() throws IOException {
+        while(nextField()) {
+            //skip the rest.
+        }
+        fieldStart = position;
+        while(true) {
+            if(position >= end && !fill()) return false;
+            char c = at(position);
+            if(c != '\n' && c != '\r') break;
+            position++;
+            fieldStart = position;
+        }
+        endOfRecord = false;
+        record++;
+        column = -1;
+        return true;
+    }
+
+    /**
+     * Move to the next field of the current record.
+     *
+     * @return false if the current record has no more field.
+     */
+    public boolean nextField() throws IOException {
+        if(endOfRecord) return false;
+        column++;
+        fieldStart = position;
+        quoted = false;
+        escaped = false;
+        if((position < end || fill()) && at(position) == '"') {
+            quoted = true;
+            fieldStart = ++position;
+            while(true) {
+                if(position >= end && !fill()) throw malformed("unterminated quote");
+                if(at(position++) != '"') continue;
+                if((position < end || fill()) && at(position) == '"') {
+                    escaped = true;
+                    position++;
+                } else {
+                    fieldEnd = position - 1;
+                    break;
+                }
+            }
+        } else {
+            while(position < end || fill()) {
+                char c = at(position);
+                if(c == delimiter || c == '\n' || c == '\r') break;
+                position++;
+            }
+            fieldEnd = position;
+        }
+
+        if(position >= end && !fill()) {
+            endOfRecord = true;
+            return true;
+        }
+        char c = at(position);
+        if(c == delimiter) {
+            position++;
+        } else if(c == '\n') {
+            position++;
+            endOfRecord = true;
+        } else if(c == '\r') {
+            position++;
+            if((position < end || fill()) && at(position) == '\n') position++;
+            endOfRecord = true;
+        } else {
+            throw malformed("unexpected character after a quoted field");
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of the current record from 1, including the header.
+     */
+    public long getRecord() {
+        return record;
+    }
+
+    /**
+     * @return the index of the current field in the current record.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the index of the first cursor position after the current record or field, for a cursor over a CharSequence.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isEmpty() {
+        return !quoted && fieldStart == fieldEnd;
+    }
+
+    /**
+     * @return the current field, or null if it is empty and not quoted.
+     */
+    public String text() {
+        if(isEmpty()) return null;
+        if(escaped) {
+            builder.setLength(0);
+            for (int i = fieldStart; i < fieldEnd; i++) {
+                char c = at(i);
+                builder.append(c);
+                if(c == '"') i++;
+            }
+            return builder.toString();
+        }
+        if(window != null) return new String(window, fieldStart, fieldEnd - fieldStart);
+        if(sequence instanceof String) return ((String) sequence).substring(fieldStart, fieldEnd);
+        builder.setLength(0);
+        builder.append(sequence, fieldStart, fieldEnd);
+        return builder.toString();
+    }
+
+    /**
+     * @return true if the current field is equal to the name.
+     */
+    public boolean matches(String name) {
+        if(escaped) return name.equals(text());
+        if(name.length() != fieldEnd - fieldStart) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if(at(fieldStart + i) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the name which is equal to the current field, or -1.
+     */
+    public int indexOf(String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if(matches(names[i])) return i;
+        }
+        return -1;
+    }
+
+    public boolean parseBoolean() {
+        if(matchesIgnoreCase("true")) return true;
+        if(matchesIgnoreCase("false")) return false;
+        throw malformed("expected a boolean");
+    }
+
+    public char parseChar() {
+        if(escaped) {
+            String text = text();
+            if(text.length() == 1) return text.charAt(0);
+        } else if(fieldEnd - fieldStart == 1) {
+            return at(fieldStart);
+        }
+        throw malformed("expected one character");
+    }
+
+    public <E extends Enum<E>> E parseEnum(E[] constants) {
+        if(isEmpty()) return null;
+        for (E constant : constants) {
+            if(matches(constant.name())) return constant;
+        }
+        throw malformed("unknown constant '" + text() + "'");
+    }
+
+    public byte parseByte() {
+        long value = parseLong();
+        if(value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) throw malformed(value + " is out of the range of byte");
+        return (byte) value;
+    }
+
+    public short parseShort() {
+        long value = parseLong();
+        if(value < Short.MIN_VALUE || value > Short.MAX_VALUE) throw malformed(value + " is out of the range of short");
+        return (short) value;
+    }
+
+    public int parseInt() {
+        long value = parseLong();
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw malformed(value + " is out of the range of int");
+        return (int) value;
+    }
+
+    public long parseLong() {
+        int i = fieldStart;
+        boolean negative = false;
+        if(i < fieldEnd && (at(i) == '-' || at(i) == '+')) {
+            negative = at(i) == '-';
+            i++;
+        }
+        if(i == fieldEnd) throw malformed("expected an integer");
+        //accumulate negatively, because the range of negative longs is larger.
+        long value = 0L;
+        for (; i < fieldEnd; i++) {
+            char c = at(i);
+            if(c < '0' || c > '9') throw malformed("expected an integer");
+            if(value < (Long.MIN_VALUE + (c - '0')) / 10L) throw malformed("the integer is out of the range of long");
+            value = value * 10L - (c - '0');
+        }
+        if(negative) return value;
+        if(value == Long.MIN_VALUE) throw malformed("the integer is out of the range of long");
+        return -value;
+    }
+
+    /**
+     * A number of at most 15 significant digits and a decimal exponent within 22 is computed exactly from its digits.
+     * The others are parsed by Double.parseDouble().
+     */
+    public double parseDouble() {
+        if(parseDecimal() && digits <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(checkedText());
+        } catch (NumberFormatException ex) {
+            throw malformed("expected a number");
+        }
+    }
+
+    /**
+     * A number of at most 7 significant digits and a decimal exponent within 10 is computed exactly from its digits.
+     * The others are parsed by Float.parseFloat().
+     */
+    public float parseFloat() {
+        if(parseDecimal() && digits <= 7 && exponent >= -10 && exponent <= 10) {
+            float value = exponent < 0 ? mantissa / FLOAT_POWERS[-exponent] : mantissa * FLOAT_POWERS[exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Float.parseFloat(checkedText());
+        } catch (NumberFormatException ex) {
+            throw malformed("expected a number");
+        }
+    }
+
+    /**
+     * Split the records from start to end of the input into about the number of chunks.
+     * The input is scanned once to find the line breaks outside of quotes.
+     *
+     * @return the boundaries of the chunks, which starts with start and ends with end.
+     */
+    public static int[] split(CharSequence input, int start, int end, int chunks) {
+        if(chunks < 1) throw new IllegalArgumentException("chunks must be positive.");
+        int[] bounds = new int[chunks + 1];
+        bounds[0] = start;
+        int count = 1;
+        long size = end - start;
+        int next = (int) (start + size / chunks);
+        boolean inQuotes = false;
+        for (int i = start; i < end && count < chunks; i++) {
+            char c = input.charAt(i);
+            if(c == '"') {
+                inQuotes = !inQuotes;
+            } else if(c == '\n' && !inQuotes && i >= next) {
+                bounds[count] = i + 1;
+                next = (int) (start + size * ++count / chunks);
+            }
+        }
+        bounds[count] = end;
+        int[] result = new int[count + 1];
+        System.arraycopy(bounds, 0, result, 0, count + 1);
+        return result;
+    }
+
+    /**
+     * Parse the current field into the mantissa, the decimal exponent, the number of the significant digits and the sign.
+     *
+     * @return false if the field is not a plain decimal number.
+     */
+    private boolean parseDecimal() {
+        if(escaped) return false;
+        int i = fieldStart;
+        negative = false;
+        if(i < fieldEnd && (at(i) == '-' || at(i) == '+')) {
+            negative = at(i) == '-';
+            i++;
+        }
+        mantissa = 0L;
+        digits = 0;
+        exponent = 0;
+        boolean any = false;
+        for (; i < fieldEnd && at(i) >= '0' && at(i) <= '9'; i++) {
+            any = true;
+            if(digits < 18) {
+                mantissa = mantissa * 10L + (at(i) - '0');
+                if(mantissa != 0L) digits++;
+            } else {
+                exponent++;
+            }
+        }
+        if(i < fieldEnd && at(i) == '.') {
+            for (i++; i < fieldEnd && at(i) >= '0' && at(i) <= '9'; i++) {
+                any = true;
+                if(digits < 18) {
+                    mantissa = mantissa * 10L + (at(i) - '0');
+                    if(mantissa != 0L) digits++;
+                    exponent--;
+                }
+            }
+        }
+        if(!any) return false;
+        if(i < fieldEnd && (at(i) == 'e' || at(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if(i < fieldEnd && (at(i) == '-' || at(i) == '+')) {
+                negativeExponent = at(i) == '-';
+                i++;
+            }
+            if(i == fieldEnd) return false;
+            int value = 0;
+            for (; i < fieldEnd && at(i) >= '0' && at(i) <= '9'; i++) {
+                if(value < 10000) value = value * 10 + (at(i) - '0');
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        return i == fieldEnd;
+    }
+
+    private String checkedText() {
+        if(isEmpty()) throw malformed("expected a number");
+        return text();
+    }
+
+    private boolean matchesIgnoreCase(String name) {
+        if(escaped || name.length() != fieldEnd - fieldStart) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if(Character.toLowerCase(at(fieldStart + i)) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private char at(int index) {
+        return window != null ? window[index] : sequence.charAt(index);
+    }
+
+    /**
+     * Read more characters from the reader. the characters before the current field are discarded.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean fill() throws IOException {
+        if(reader == null || exhausted) return false;
+        if(fieldStart > 0) {
+            System.arraycopy(window, fieldStart, window, 0, end - fieldStart);
+            position -= fieldStart;
+            fieldEnd -= fieldStart;
+            end -= fieldStart;
+            fieldStart = 0;
+        }
+        if(end == window.length) {
+            char[] grown = new char[window.length << 1];
+            System.arraycopy(window, 0, grown, 0, end);
+            window = grown;
+        }
+        int count = reader.read(window, end, window.length - end);
+        if(count < 0) {
+            exhausted = true;
+            return false;
+        }
+        end += count;
+        return true;
+    }
+
+    private IllegalArgumentException malformed(String message) {
+        return new IllegalArgumentException("malformed record " + record + " at column " + column + ": " + message + ".");
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+import static com.shelfmap.interfaceprocessor.util.Strings.toConstantName;
+
+/**
+ * Generates the CSV reader of a class annotated with {@code @GenerateClass(generateCsvReader = true)}.
+ *
+ * @author Tsutomu YANO
+ */
+public class CsvReaderGenerator extends CompanionGenerator {
+    private static final String CSV_READER_SUFFIX = "CsvReader";
+
+    public CsvReaderGenerator(InterfaceProcessor processor, ProcessingEnvironment processingEnv) {
+        super(processor, processingEnv, CSV_READER_SUFFIX);
+    }
+
+    /**
+     * Generate a CSV reader. The columns of a record are mapped to the indexes of the properties in the order of the constructor parameters,
+     * and each field is parsed by a case of a switch on the index. A record is parsed into local variables, which are passed to the constructor,
+     * or set into a reusable object through its setters directly.
+     */
+    @Override
+    protected void generate(Writer writer, ClassDefinition definition, String packageName, String className, String readerName) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Attribute> attributes = getSerializedAttributes(definition);
+        String typeName = definition.getPackage() + "." + definition.getClassName();
+        String cursorName = CsvCursor.class.getName();
+        String consumer = "java.util.function.Consumer<? super " + className + ">";
+
+        generateCompanionHeader(writer, packageName, readerName);
+        int shift = 1;
+        writer.append(indent(shift)).append("private static final String[] COLUMNS = {");
+        boolean isFirst = true;
+        for (Attribute attribute : attributes) {
+            writer.append(isFirst ? "" : ", ").append("\"").append(attribute.getName()).append("\"");
+            isFirst = false;
+        }
+        writer.append("};\n")
+              .append(indent(shift)).append("private static final int[] DECLARED_ORDER = {");
+        for (int i = 0; i < attributes.size(); i++) {
+            writer.append(i == 0 ? "" : ", ").append(String.valueOf(i));
+        }
+        writer.append("};\n");
+        for (Attribute attribute : attributes) {
+            if(isEnum(attribute)) {
+                String enumName = typeUtils.erasure(attribute.getType()).toString();
+                writer.append(indent(shift)).append("private static final ").append(enumName).append("[] ").append(toConstantName(attribute.getName())).append("_VALUES = ").append(enumName).append(".values();\n");
+            }
+        }
+        writer.append("\n")
+              .append(indent(shift)).append("private final char delimiter;\n")
+              .append(indent(shift)).append("private final boolean header;\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @param delimiter the delimiter of fields, such as ',' or '\\t'.\n")
+              .append(indent(shift)).append(" * @param header if true, the first record is a header, and the columns are mapped to the properties by their names.\n")
+              .append(indent(shift)).append(" * otherwise the columns are in the order of the properties. unknown columns are skipped.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public ").append(readerName).append("(char delimiter, boolean header) {\n")
+              .append(indent(shift)).append("if(delimiter == '\"' || delimiter == '\\n' || delimiter == '\\r') throw new IllegalArgumentException(\"the delimiter can not be a quote nor a line break.\");\n")
+              .append(indent(shift)).append("this.delimiter = delimiter;\n")
+              .append(indent(shift)).append("this.header = header;\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Parse all records of the input, such as a CharBuffer decoded from a mapped file, and pass a new object for each record.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the number of the records.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public long read(CharSequence input, ").append(consumer).append(" consumer) {\n")
+              .append(indent(shift)).append("if(input == null) throw new IllegalArgumentException(\"the argument 'input' should not be null.\");\n")
+              .append(indent(shift)).append("if(consumer == null) throw new IllegalArgumentException(\"the argument 'consumer' should not be null.\");\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append(cursorName).append(" cursor = new ").append(cursorName).append("(this.delimiter, input, 0, input.length());\n")
+              .append(indent(shift)).append("return read(cursor, columns(cursor), consumer);\n")
+              .append(indent(--shift)).append("} catch (java.io.IOException ex) {\n")
+              .append(indent(++shift)).append("//a cursor over a CharSequence reads no Reader.\n")
+              .append(indent(shift)).append("throw new IllegalStateException(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Parse all records of the reader, and pass a new object for each record.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the number of the records.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public long read(java.io.Reader in, ").append(consumer).append(" consumer) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if(in == null) throw new IllegalArgumentException(\"the argument 'in' should not be null.\");\n")
+              .append(indent(shift)).append("if(consumer == null) throw new IllegalArgumentException(\"the argument 'consumer' should not be null.\");\n")
+              .append(indent(shift)).append(cursorName).append(" cursor = new ").append(cursorName).append("(this.delimiter, in);\n")
+              .append(indent(shift)).append("return read(cursor, columns(cursor), consumer);\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Parse all records of the input into the target through its setters, and pass the target for each record.\n")
+              .append(indent(shift)).append(" * The properties which have no setter or no column keep their values.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the number of the records.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public <T extends ").append(typeName).append("> long readInto(CharSequence input, T target, java.util.function.Consumer<? super T> consumer) {\n")
+              .append(indent(shift)).append("if(input == null) throw new IllegalArgumentException(\"the argument 'input' should not be null.\");\n")
+              .append(indent(shift)).append("if(target == null) throw new IllegalArgumentException(\"the argument 'target' should not be null.\");\n")
+              .append(indent(shift)).append("if(consumer == null) throw new IllegalArgumentException(\"the argument 'consumer' should not be null.\");\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append(cursorName).append(" cursor = new ").append(cursorName).append("(this.delimiter, input, 0, input.length());\n")
+              .append(indent(shift)).append("return readInto(cursor, columns(cursor), target, consumer);\n")
+              .append(indent(--shift)).append("} catch (java.io.IOException ex) {\n")
+              .append(indent(++shift)).append("//a cursor over a CharSequence reads no Reader.\n")
+              .append(indent(shift)).append("throw new IllegalStateException(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Parse all records of the reader into the target through its setters, and pass the target for each record.\n")
+              .append(indent(shift)).append(" * The properties which have no setter or no column keep their values.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the number of the records.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public <T extends ").append(typeName).append("> long readInto(java.io.Reader in, T target, java.util.function.Consumer<? super T> consumer) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if(in == null) throw new IllegalArgumentException(\"the argument 'in' should not be null.\");\n")
+              .append(indent(shift)).append("if(target == null) throw new IllegalArgumentException(\"the argument 'target' should not be null.\");\n")
+              .append(indent(shift)).append("if(consumer == null) throw new IllegalArgumentException(\"the argument 'consumer' should not be null.\");\n")
+              .append(indent(shift)).append(cursorName).append(" cursor = new ").append(cursorName).append("(this.delimiter, in);\n")
+              .append(indent(shift)).append("return readInto(cursor, columns(cursor), target, consumer);\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Parse the records of the input in chunks on the common ForkJoinPool, and pass a new object for each record.\n")
+              .append(indent(shift)).append(" * The consumer is called concurrently and in no particular order.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the number of the records.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public long readParallel(CharSequence input, ").append(consumer).append(" consumer) {\n")
+              .append(indent(shift)).append("if(input == null) throw new IllegalArgumentException(\"the argument 'input' should not be null.\");\n")
+              .append(indent(shift)).append("if(consumer == null) throw new IllegalArgumentException(\"the argument 'consumer' should not be null.\");\n")
+              .append(indent(shift)).append(cursorName).append(" cursor = new ").append(cursorName).append("(this.delimiter, input, 0, input.length());\n")
+              .append(indent(shift)).append("int[] columns;\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append("columns = columns(cursor);\n")
+              .append(indent(--shift)).append("} catch (java.io.IOException ex) {\n")
+              .append(indent(++shift)).append("throw new IllegalStateException(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("int[] bounds = ").append(cursorName).append(".split(input, this.header ? cursor.getPosition() : 0, input.length(), java.util.concurrent.ForkJoinPool.getCommonPoolParallelism() * 4);\n")
+              .append(indent(shift++)).append("return java.util.stream.IntStream.range(0, bounds.length - 1).parallel().mapToLong(i -> {\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append("return read(new ").append(cursorName).append("(this.delimiter, input, bounds[i], bounds[i + 1]), columns, consumer);\n")
+              .append(indent(--shift)).append("} catch (java.io.IOException ex) {\n")
+              .append(indent(++shift)).append("throw new IllegalStateException(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}).sum();\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @return the indexes of the properties for the columns, or -1 for the unknown columns.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("private int[] columns(").append(cursorName).append(" cursor) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if (!this.header || !cursor.nextRecord()) return DECLARED_ORDER;\n")
+              .append(indent(shift)).append("int[] columns = new int[COLUMNS.length];\n")
+              .append(indent(shift)).append("int count = 0;\n")
+              .append(indent(shift++)).append("while (cursor.nextField()) {\n")
+              .append(indent(shift)).append("if (count == columns.length) columns = java.util.Arrays.copyOf(columns, count * 2 + 1);\n")
+              .append(indent(shift)).append("columns[count++] = cursor.indexOf(COLUMNS);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return count == columns.length ? columns : java.util.Arrays.copyOf(columns, count);\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private static long read(").append(cursorName).append(" cursor, int[] columns, ").append(consumer).append(" consumer) throws java.io.IOException {\n")
+              .append(indent(shift)).append("long count = 0L;\n")
+              .append(indent(shift++)).append("while (cursor.nextRecord()) {\n");
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(attribute.getName()).append("Value = ").append(defaultValueOf(attribute.getType())).append(";\n");
+        }
+        writer.append(indent(shift++)).append("for (int column = 0; column < columns.length && cursor.nextField(); column++) {\n");
+        if(!attributes.isEmpty()) {
+            writer.append(indent(shift++)).append("switch (columns[column]) {\n");
+            for (int i = 0; i < attributes.size(); i++) {
+                Attribute attribute = attributes.get(i);
+                writer.append(indent(shift++)).append("case ").append(String.valueOf(i)).append(":\n")
+                      .append(indent(shift)).append(attribute.getName()).append("Value = ").append(csvReadExpression(attribute)).append(";\n")
+                      .append(indent(shift--)).append("break;\n");
+            }
+            writer.append(indent(--shift)).append("}\n");
+        }
+        writer.append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("consumer.accept(new ").append(className).append("(");
+        isFirst = true;
+        for (Attribute attribute : attributes) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(attribute.getName()).append("Value");
+        }
+        writer.append("));\n")
+              .append(indent(shift)).append("count++;\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return count;\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private static <T extends ").append(typeName).append("> long readInto(").append(cursorName).append(" cursor, int[] columns, T target, java.util.function.Consumer<? super T> consumer) throws java.io.IOException {\n")
+              .append(indent(shift)).append("long count = 0L;\n")
+              .append(indent(shift++)).append("while (cursor.nextRecord()) {\n")
+              .append(indent(shift++)).append("for (int column = 0; column < columns.length && cursor.nextField(); column++) {\n");
+        boolean anyWritable = false;
+        for (Attribute attribute : attributes) {
+            if(((Property) attribute).isWritable()) anyWritable = true;
+        }
+        if(anyWritable) {
+            writer.append(indent(shift++)).append("switch (columns[column]) {\n");
+            for (int i = 0; i < attributes.size(); i++) {
+                Property property = (Property) attributes.get(i);
+                if(!property.isWritable()) continue;
+                writer.append(indent(shift++)).append("case ").append(String.valueOf(i)).append(":\n")
+                      .append(indent(shift)).append("target.").append(property.getWriter().getSimpleName()).append("(").append(csvReadExpression(property)).append(");\n")
+                      .append(indent(shift--)).append("break;\n");
+            }
+            writer.append(indent(--shift)).append("}\n");
+        }
+        writer.append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("consumer.accept(target);\n")
+              .append(indent(shift)).append("count++;\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return count;\n")
+              .append(indent(--shift)).append("}\n");
+        writer.append("}");
+    }
+
+    private String csvReadExpression(Attribute attribute) {
+        TypeMirror type = attribute.getType();
+        if(isEnum(attribute)) {
+            return "cursor.parseEnum(" + toConstantName(attribute.getName()) + "_VALUES)";
+        } else if(isPrimitive(type)) {
+            return "cursor.parse" + dataMethodOf(type.getKind()) + "()";
+        } else if(isWrapper(attribute)) {
+            return "cursor.isEmpty() ? null : " + type.toString() + ".valueOf(cursor.parse" + dataMethodOf(unboxedKind(type)) + "())";
+        }
+        return "cursor.text()";
+    }
+}
@@ -0,0 +1,108 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Encoding helpers for the generated writeDelta() and applyDelta().
+ * A delta starts with a bitmap of the indexes of the included properties in (size + 7) / 8 bytes,
+ * and is followed by the values of the included properties in the order of their indexes.
+ * Strings are written as a variable-length length and UTF-8 bytes, so they are not limited to 64KB like writeUTF().
+ *
+ * @author Tsutomu YANO
+ */
+public final class DeltaStreams {
+    private static final String UTF_8 = "UTF-8";
+
+    private DeltaStreams() {
+        super();
+    }
+
+    public static void writeBitmap(DataOutput out, long[] words, int size) throws IOException {
+        for (int i = 0; i < size; i += 8) {
+            out.writeByte((int) (words[i >>> 6] >>> (i & 63)));
+        }
+    }
+
+    public static long[] readBitmap(DataInput in, int size) throws IOException {
+        long[] words = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i += 8) {
+            words[i >>> 6] |= (in.readByte() & 0xFFL) << (i & 63);
+        }
+        return words;
+    }
+
+    public static boolean isSet(long[] words, int index) {
+        return (words[index >>> 6] & (1L << index)) != 0L;
+    }
+
+    /**
+     * Write a non-negative int in 7-bit groups, the lowest group first.
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("malformed variable-length int.");
+    }
+
+    /**
+     * Write a string which can be null. the length is written as length + 1, and 0 means null.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if(value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = encode(value);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if(length == 0) return null;
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Enums are written by their names, so a delta survives reordering of the constants.
+     */
+    public static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    public static <E extends Enum<E>> E readEnum(DataInput in, Class<E> type) throws IOException {
+        String name = readString(in);
+        if(name == null) return null;
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("unknown constant '" + name + "' of " + type.getName() + ".");
+        }
+    }
+
+    static byte[] encode(String value) {
+        try {
+            return value.getBytes(UTF_8);
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported.
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The versions of modified properties, which generated classes use when 'generateDelta' of
+ * {@link com.shelfmap.interfaceprocessor.annotation.GenerateClass} is true.
+ * It is independent of {@link DirtyBits}, so writing a delta does not make an object clean for its persistence,
+ * and clearing the dirty bits does not drop a change from the next delta.
+ * <p>
+ * Each call of {@link #advance()} starts a new epoch and returns its number, which a writer of deltas keeps as
+ * the baseline for the next delta. A modifier stamps its property with the current epoch, so the properties modified
+ * after a baseline are the properties whose versions are not older than it. Nothing is consumed by a delta,
+ * so each peer can keep its own baseline, and a lost delta can be written again from an older baseline.
+ * The epoch 0 is older than any modification, so a delta since 0 contains all properties.
+ *
+ * @author Tsutomu YANO
+ */
+public final class DeltaVersions implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLongArray versions;
+
+    /**
+     * @param size the number of the properties.
+     */
+    public DeltaVersions(int size) {
+        if(size < 0) throw new IllegalArgumentException("the size must not be negative.");
+        this.versions = new AtomicLongArray(size);
+    }
+
+    /**
+     * Stamp the property with the current epoch. It must be called after the new value is written.
+     * The stamp is retried until the epoch does not move during it, so a delta which starts after this call
+     * either includes the property or reads the value after it is written.
+     * A version which is already current is not written again.
+     */
+    public void touch(int index) {
+        long current;
+        do {
+            current = this.epoch.get();
+            long version;
+            do {
+                version = this.versions.get(index);
+                if(version >= current) break;
+            } while (!this.versions.compareAndSet(index, version, current));
+        } while (this.epoch.get() != current);
+    }
+
+    /**
+     * Start a new epoch. It must be called before the versions and the values are read for a delta.
+     *
+     * @return the baseline for the next delta.
+     */
+    public long advance() {
+        return this.epoch.incrementAndGet();
+    }
+
+    /**
+     * @return the bits of the properties modified in or after the epoch, in the same layout as
+     * {@link DeltaStreams#writeBitmap(java.io.DataOutput, long[], int)}.
+     */
+    public long[] since(long since) {
+        int size = this.versions.length();
+        long[] bits = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            if(this.versions.get(i) >= since) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        return bits;
+    }
+
+    public DeltaVersions copy() {
+        DeltaVersions copy = new DeltaVersions(this.versions.length());
+        copy.epoch.set(this.epoch.get());
+        for (int i = 0; i < this.versions.length(); i++) {
+            copy.versions.set(i, this.versions.get(i));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,128 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of the indexes of modified properties, which generated classes use when 'trackDirty' of
+ * {@link com.shelfmap.interfaceprocessor.annotation.GenerateClass} is true.
+ * The bits are packed into longs and set by compare-and-set, so modifiers which do not share a lock can mark
+ * their properties concurrently. A bit which is already set is not written again.
+ *
+ * @author Tsutomu YANO
+ */
+public final class DirtyBits implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicLongArray words;
+
+    /**
+     * @param size the number of the properties.
+     */
+    public DirtyBits(int size) {
+        if(size < 0) throw new IllegalArgumentException("the size must not be negative.");
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    public void set(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long current;
+        do {
+            current = this.words.get(word);
+            if((current & bit) != 0L) return;
+        } while (!this.words.compareAndSet(word, current, current | bit));
+    }
+
+    public boolean get(int index) {
+        return (this.words.get(index >>> 6) & (1L << index)) != 0L;
+    }
+
+    /**
+     * @return true if the property of the name is modified. false for an unknown name.
+     */
+    public boolean get(String[] propertyNames, String propertyName) {
+        for (int i = 0; i < propertyNames.length; i++) {
+            if(propertyNames[i].equals(propertyName)) return get(i);
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < this.words.length(); i++) {
+            if(this.words.get(i) != 0L) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the names of the modified properties in the order of their indexes.
+     */
+    public Set<String> names(String[] propertyNames) {
+        Set<String> names = new LinkedHashSet<String>();
+        for (int i = 0; i < this.words.length(); i++) {
+            addNames(names, propertyNames, i, this.words.get(i));
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Clear all bits. each word is cleared atomically, so a modification concurrent with this call
+     * is either returned by this call or remains set.
+     *
+     * @return the names of the properties which were modified.
+     */
+    public Set<String> clear(String[] propertyNames) {
+        long[] cleared = clear();
+        Set<String> names = new LinkedHashSet<String>();
+        for (int i = 0; i < cleared.length; i++) {
+            addNames(names, propertyNames, i, cleared[i]);
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Clear all bits like {@link #clear(String[])}.
+     *
+     * @return the bits which were set, in the same layout as {@link DeltaStreams#writeBitmap(java.io.DataOutput, long[], int)}.
+     */
+    public long[] clear() {
+        long[] cleared = new long[this.words.length()];
+        for (int i = 0; i < cleared.length; i++) {
+            cleared[i] = this.words.getAndSet(i, 0L);
+        }
+        return cleared;
+    }
+
+    /**
+     * Set the bits again which are returned by {@link #clear()}, when they could not be processed.
+     */
+    public void restore(long[] bits) {
+        for (int i = 0; i < bits.length; i++) {
+            if(bits[i] == 0L) continue;
+            long current;
+            do {
+                current = this.words.get(i);
+            } while (!this.words.compareAndSet(i, current, current | bits[i]));
+        }
+    }
+
+    public DirtyBits copy() {
+        DirtyBits copy = new DirtyBits(this.words.length() << 6);
+        for (int i = 0; i < this.words.length(); i++) {
+            copy.words.set(i, this.words.get(i));
+        }
+        return copy;
+    }
+
+    private static void addNames(Set<String> names, String[] propertyNames, int word, long bits) {
+        while(bits != 0L) {
+            int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+            names.add(propertyNames[index]);
+            bits &= bits - 1L;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.shelfmap.interfaceprocessor;
+
+/**
+ * A listener for a double property, which receives the values without boxing them nor creating a PropertyChangeEvent.
+ * It is registered by the generated method on&lt;Property&gt;Changed(). float properties are widened to double.
+ *
+ * @author Tsutomu YANO
+ */
+public interface DoubleChangeListener {
+    void valueChanged(double oldValue, double newValue);
+}
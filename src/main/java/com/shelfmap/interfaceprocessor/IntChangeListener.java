@@ -0,0 +1,11 @@
+package com.shelfmap.interfaceprocessor;
+
+/**
+ * A listener for an int property, which receives the values without boxing them nor creating a PropertyChangeEvent.
+ * It is registered by the generated method on&lt;Property&gt;Changed(). byte, short and char properties are widened to int.
+ *
+ * @author Tsutomu YANO
+ */
+public interface IntChangeListener {
+    void valueChanged(int oldValue, int newValue);
+}
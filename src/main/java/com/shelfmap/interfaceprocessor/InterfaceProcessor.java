@@ -31,27 +31,66 @@ import javax.lang.model.SourceVersion;
 import javax.tools.JavaFileObject;
 
 import static com.shelfmap.interfaceprocessor.util.Strings.capitalize;
+import static com.shelfmap.interfaceprocessor.util.Strings.toConstantName;
 
-import java.beans.PropertyChangeSupport;
 import java.util.*;
 import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.PrimitiveType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
 
 /**
  *
  * @author Tsutomu YANO
  */
-@SupportedSourceVersion(SourceVersion.RELEASE_6)
+@SupportedSourceVersion(SourceVersion.RELEASE_9)
 @SupportedAnnotationTypes({"com.shelfmap.interfaceprocessor.annotation.GenerateClass"})
 public class InterfaceProcessor extends AbstractProcessor {
 
     private static final String INSTANCE_LOCK = "instanceLock";
+    private static final String INSTANCE_LOCKS = "instanceLocks";
     private static final String IS_PACKAGE_NAME_RELATIVE = "isPackageNameRelative";
     private static final String PACKAGE_NAME = "packageName";
     private static final String IS_THREAD_SAFE = "isThreadSafe";
+    private static final String CONCURRENCY = "concurrency";
+    private static final String ELIDE_LOCK_IF_IMMUTABLE = "elideLockIfImmutable";
+    private static final String GENERATE_ATOMIC_OPERATIONS = "generateAtomicOperations";
+    private static final String LAZY_INFRASTRUCTURE = "lazyInfrastructure";
+    private static final String PROPERTY_SUPPORT = "propertySupport";
+    private static final String PROPERTY_NAMES = "PROPERTY_NAMES";
+    private static final String STATE = "state";
+    private static final String STATE_CLASS = "State";
+    private static final String IS_FREEZABLE = "isFreezable";
+    private static final String FROZEN = "frozen";
+    private static final String LOCK_STRIPES = "lockStripes";
+    private static final String SEQUENCE = "sequence";
+    private static final String GENERATE_BATCH_UPDATE = "generateBatchUpdate";
+    private static final String MUTATOR_CLASS = "Mutator";
+    private static final String GENERATE_TYPED_LISTENERS = "generateTypedListeners";
+    private static final String ASYNC_EVENTS = "asyncEvents";
+    private static final String EVENT_QUEUE_CAPACITY = "eventQueueCapacity";
+    private static final String EVENT_OVERFLOW_POLICY = "eventOverflowPolicy";
+    private static final String GENERATE_FLOW_PUBLISHERS = "generateFlowPublishers";
+    private static final String PUBLISHER_CLASS = "PropertyPublisher";
+    private static final String SUBSCRIPTION_CLASS = "PropertySubscription";
+    private static final String GENERATE_AWAIT_METHODS = "generateAwaitMethods";
+    private static final String WAITERS = "waiters";
+    private static final String TRACK_DIRTY = "trackDirty";
+    private static final String DIRTY = "dirty";
+    private static final String GENERATE_DELTA = "generateDelta";
+    private static final String DELTA_VERSIONS = "deltaVersions";
+    private static final String JOURNAL = "journal";
+    private static final String JOURNAL_ID = "journalId";
+    private static final String COMPACT_SERIALIZATION = "compactSerialization";
+    private static final String SERIALIZED_FORM_CLASS = "SerializedForm";
+    private static final String GENERATE_CODEC = "generateCodec";
+    private static final String GENERATE_JSON = "generateJson";
+    private static final String GENERATE_CSV_READER = "generateCsvReader";
+    private static final String GENERATE_ROW_BINDER = "generateRowBinder";
     private static final String IS_CLONEABLE = "isCloneable";
     private static final String IS_SERIALIZABLE = "isSerializable";
     private static final String IS_ABSTRACT = "isAbstract";
@@ -92,6 +131,10 @@ public class InterfaceProcessor extends AbstractProcessor {
                     continue;
                 }
 
+                if(!checkDefinition(definition, generateClassAnnotation, element)) {
+                    continue;
+                }
+
                 Writer writer = null;
                 try {
                     Filer filer = processingEnv.getFiler();
@@ -105,17 +148,27 @@ public class InterfaceProcessor extends AbstractProcessor {
                     int shift = 1;
                     shift = generateFields(writer, shift, generateClassAnnotation, definition, targetInterface, modifier);
                     shift = generateConstructors(writer, shift, generateClassAnnotation, definition, className, targetInterface);
+                    if(isLazyInfrastructure(generateClassAnnotation)) {
+                        shift = generateLazyInfrastructureAccessors(writer, shift, generateClassAnnotation, definition, className, targetInterface);
+                    }
+                    if(isSequenceLock(generateClassAnnotation, definition)) {
+                        shift = generateBeginSequenceWrite(writer, shift);
+                    }
                     shift = generatePropertyAccessors(writer, shift, generateClassAnnotation, definition, targetInterface);
                     shift = generateHashCode(writer, shift, generateClassAnnotation, definition, className, isHavingSuperClass, targetInterface);
                     shift = generateEquals(writer, shift, generateClassAnnotation, definition, className, isHavingSuperClass, targetInterface);
                     shift = generateToString(writer, shift, generateClassAnnotation, definition, className, isHavingSuperClass, targetInterface);
 
                     if(isCloneable(generateClassAnnotation)) {
-                        shift = generateClone(writer, shift, generateClassAnnotation, definition, className);
+                        shift = generateClone(writer, shift, generateClassAnnotation, definition, className, targetInterface);
+                    }
+
+                    if(isCompactSerialization(generateClassAnnotation)) {
+                        shift = generateSerializedForm(writer, shift, generateClassAnnotation, definition, className);
                     }
 
                     if(isPropertyChangeEventAware(targetInterface)) {
-                        shift = generatePropertyListenerAccessors(writer, shift, definition, targetInterface);
+                        shift = generatePropertyListenerAccessors(writer, shift, generateClassAnnotation, definition, targetInterface);
                     }
 
                     shift = generateOthers(writer, shift, generateClassAnnotation, definition, className, isHavingSuperClass, targetInterface);
@@ -127,6 +180,19 @@ public class InterfaceProcessor extends AbstractProcessor {
                 } finally {
                     IO.close(writer, this);
                 }
+
+                if(isGeneratingCodec(generateClassAnnotation)) {
+                    createCodecGenerator().generate(definition, packageName, className, targetInterface);
+                }
+                if(isGeneratingJson(generateClassAnnotation)) {
+                    createJsonGenerator().generate(definition, packageName, className, targetInterface);
+                }
+                if(isGeneratingCsvReader(generateClassAnnotation)) {
+                    createCsvReaderGenerator().generate(definition, packageName, className, targetInterface);
+                }
+                if(isGeneratingRowBinder(generateClassAnnotation)) {
+                    createRowBinderGenerator().generate(definition, packageName, className, targetInterface);
+                }
                 processed = true;
             }
         }
@@ -145,6 +211,22 @@ public class InterfaceProcessor extends AbstractProcessor {
         return new PropertyVisitor(filter);
     }
 
+    protected CompanionGenerator createCodecGenerator() {
+        return new CodecGenerator(this, processingEnv);
+    }
+
+    protected CompanionGenerator createJsonGenerator() {
+        return new JsonGenerator(this, processingEnv);
+    }
+
+    protected CompanionGenerator createCsvReaderGenerator() {
+        return new CsvReaderGenerator(this, processingEnv);
+    }
+
+    protected CompanionGenerator createRowBinderGenerator() {
+        return new RowBinderGenerator(this, processingEnv);
+    }
+
     protected InterfaceFilter createInterfaceFilter(boolean ignoreSuperInterfaces) {
         Elements elementUtils = processingEnv.getElementUtils();
         Types typeUtils = processingEnv.getTypeUtils();
@@ -154,86 +236,319 @@ public class InterfaceProcessor extends AbstractProcessor {
     }
 
     protected int generateField(Property property, Writer writer, final int shift, Modifier modifier) throws IOException {
+        return generateField(property, writer, shift, modifier, "");
+    }
+
+    /**
+     * @param qualifier modifiers placed between the access modifier and the type, such as "volatile ". it must end with a space if not empty.
+     */
+    protected int generateField(Property property, Writer writer, final int shift, Modifier modifier, String qualifier) throws IOException {
         String typeName = property.getType().toString();
-        writer.append(indent(shift)).append(modifier.getModifier()).append((modifier == Modifier.DEFAULT ? "" : " ")).append(typeName).append(" ").append(toSafeName(property.getName())).append(";\n");
+        writer.append(indent(shift)).append(modifier.getModifier()).append((modifier == Modifier.DEFAULT ? "" : " ")).append(qualifier).append(typeName).append(" ").append(toSafeName(property.getName())).append(";\n");
         return shift;
     }
 
     protected int generateGetter(Writer writer, int shift, TypeElement element, AnnotationMirror generateClassAnnotation, Attribute attribute, ClassDefinition definition, Modifier modifier) throws IOException {
         Types typeUtils = processingEnv.getTypeUtils();
         String propertyType = attribute.getType().toString();
-        boolean threadSafe = isThreadSafe(generateClassAnnotation);
+        boolean threadSafe = isUsingInstanceLock(generateClassAnnotation) && isGuardingRead(generateClassAnnotation, definition);
 
         if(definition.getElementType() == ElementType.INTERFACE) {
             writer.append(indent(shift)).append("@Override\n");
         }
-        writer.append(indent(shift)).append(modifier.getModifier()).append(" ").append(propertyType).append(isBoolean(attribute.getType(), typeUtils) ? " is" : " get").append(capitalize(attribute.getName())).append("() {\n");
-        if(threadSafe) {
-            writer.append(indent(++shift)).append(INSTANCE_LOCK).append(".readLock().lock();\n")
-                  .append(indent(shift)).append("try {\n");
-        }
-        writer.append(indent(++shift)).append("return ").append(retain(attribute, "this.")).append(";\n");
-        if(threadSafe) {
-            writer.append(indent(--shift)).append("} finally {\n")
-                  .append(indent(++shift)).append(INSTANCE_LOCK).append(".readLock().unlock();\n")
-                  .append(indent(--shift)).append("}\n");
+        writer.append(indent(shift++)).append(modifier.getModifier()).append(" ").append(propertyType).append(isBoolean(attribute.getType(), typeUtils) ? " is" : " get").append(capitalize(attribute.getName())).append("() {\n");
+        if(isCounter(attribute)) {
+            //a LongAdder is thread-safe by itself.
+            writer.append(indent(shift)).append("return ").append(valueExpression(attribute, "this.")).append(";\n");
+        } else if(isCopyOnWrite(generateClassAnnotation, definition)) {
+            writer.append(indent(shift)).append("return ").append(retain(attribute, "this." + STATE + ".get().")).append(";\n");
+        } else if(isSequenceLock(generateClassAnnotation, definition)) {
+            shift = generateSequenceRead(writer, shift, Collections.<Attribute>singletonList(attribute));
+            writer.append(indent(shift)).append("return ").append(toSafeName(attribute.getName())).append(";\n");
+        } else if(threadSafe && isOptimisticRead(generateClassAnnotation)) {
+            shift = generateFrozenReturn(writer, shift, generateClassAnnotation, attribute, definition);
+            shift = generateOptimisticRead(writer, shift, generateClassAnnotation, Collections.<Attribute>singletonList(attribute));
+            writer.append(indent(shift)).append("return ").append(retain(attribute)).append(";\n");
+        } else {
+            if(threadSafe) {
+                shift = generateFrozenReturn(writer, shift, generateClassAnnotation, attribute, definition);
+                shift = generateReadLock(writer, shift, generateClassAnnotation, lockOf(generateClassAnnotation, definition, attribute));
+            }
+            writer.append(indent(shift)).append("return ").append(retain(attribute, "this.")).append(";\n");
+            if(threadSafe) {
+                shift = generateReadUnlock(writer, shift, generateClassAnnotation, lockOf(generateClassAnnotation, definition, attribute));
+            }
         }
         writer.append(indent(--shift)).append("}\n\n");
         return shift;
     }
 
     protected int generateSetter(Writer writer, int shift, TypeElement element, AnnotationMirror generateClassAnnotation, Attribute attribute, ClassDefinition definition, Modifier modifier) throws IOException {
-        boolean threadSafe = isThreadSafe(generateClassAnnotation);
+        boolean threadSafe = isLockingWrite(generateClassAnnotation);
         String fieldName = toSafeName(attribute.getName());
         String propertyType = attribute.getType().toString();
 
-        boolean propertySupport = isPropertyChangeEventAware(element);
+        boolean detectingChange = isDetectingChange(element, generateClassAnnotation);
         
         if(definition.getElementType() == ElementType.INTERFACE) {
             writer.append(indent(shift)).append("@Override\n");
         }
         
         writer.append(indent(shift++)).append(modifier.getModifier()).append(" void set").append(capitalize(attribute.getName())).append("(").append(propertyType).append(" ").append(fieldName).append(") {\n");
+        if(isCounter(attribute)) {
+            shift = generateFrozenCheck(writer, shift, generateClassAnnotation, definition);
+            shift = generateCounterSetterBody(writer, shift, element, generateClassAnnotation, attribute, definition);
+            writer.append(indent(--shift)).append("}\n\n");
+            return shift;
+        }
+        if(isCopyOnWrite(generateClassAnnotation, definition)) {
+            shift = generateFrozenCheck(writer, shift, generateClassAnnotation, definition);
+            shift = generateCopyOnWriteSetterBody(writer, shift, element, generateClassAnnotation, attribute, definition);
+            writer.append(indent(--shift)).append("}\n\n");
+            return shift;
+        }
         boolean isPrimitive = isPrimitive(attribute.getType());
         String valueType = attribute.getType().toString();
-        if(propertySupport) {
+        if(detectingChange) {
             writer.append(indent(shift)).append(valueType).append(" newValue").append(isPrimitive ? "" : " = null").append(";\n");
             writer.append(indent(shift)).append(valueType).append(" oldValue").append(isPrimitive ? "" : " = null").append(";\n");
-            writer.append(indent(shift)).append("boolean isPropertyChanged = false;\n");
         }
         if(threadSafe) {
-            writer.append(indent(shift)).append(INSTANCE_LOCK).append(".writeLock().lock();\n")
-                  .append(indent(shift++)).append("try {\n");
+            shift = generateWriteLock(writer, shift, generateClassAnnotation, lockOf(generateClassAnnotation, definition, attribute));
         }
-        if(propertySupport) {
+        shift = generateFrozenCheck(writer, shift, generateClassAnnotation, definition);
+        if(detectingChange) {
             writer.append(indent(shift)).append("newValue = ").append(retain(attribute)).append(";\n");
             writer.append(indent(shift)).append("oldValue = this.").append(fieldName).append(";\n");
             writer.append(indent(shift)).append("this.").append(fieldName).append(" = newValue;\n");
         } else {
             writer.append(indent(shift)).append("this.").append(fieldName).append(" = ").append(retain(attribute)).append(";\n");
         }
-        if(propertySupport) {
-            writer.append(indent(shift)).append("isPropertyChanged = (oldValue != newValue");
-            if(!isPrimitive(attribute.getType())) {
-                writer.append(" && (").append("oldValue != null && !oldValue.equals(newValue))");
+        //the record is appended under the lock, so the records of a property are in the order of the writes.
+        shift = generateJournalRecord(writer, shift, generateClassAnnotation, definition, attribute, "this." + fieldName);
+        if(threadSafe) {
+            shift = generateWriteUnlock(writer, shift, generateClassAnnotation, lockOf(generateClassAnnotation, definition, attribute));
+        }
+        //generate code for marking the property dirty and firing PropertyChangeEvent
+        if(detectingChange) {
+            shift = generateModified(writer, shift, element, generateClassAnnotation, definition, attribute, changedExpression(attribute, "oldValue", "newValue"), "oldValue", "newValue");
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate the fast path of a getter which returns the value without the lock if the object is frozen.
+     * The volatile read of the 'frozen' flag makes all writes before freeze() visible.
+     */
+    protected int generateFrozenReturn(Writer writer, int shift, AnnotationMirror annotation, Attribute attribute, ClassDefinition definition) throws IOException {
+        if(!isReadingFrozenFields(annotation, definition)) return shift;
+        writer.append(indent(shift++)).append("if (this.").append(FROZEN).append(") {\n")
+              .append(indent(shift)).append("return ").append(retain(attribute, "this.")).append(";\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate the check which rejects a modification after freeze().
+     */
+    protected int generateFrozenCheck(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        if(!isHavingFrozenFlag(annotation, definition)) return shift;
+        writer.append(indent(shift)).append("if (this.").append(FROZEN).append(") throw new IllegalStateException(\"this object is frozen.\");\n");
+        return shift;
+    }
+
+    /**
+     * Generate freeze() and isFrozen().
+     * freeze() sets the flag under the write lock, so a setter which holds the lock completes before it.
+     * Without the lock, a setter racing with freeze() may still complete.
+     */
+    protected int generateFreeze(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        boolean flag = isHavingFrozenFlag(annotation, definition);
+        boolean locking = flag && isLockingWrite(annotation);
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Make this object unmodifiable. setters throw an IllegalStateException after this call.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void freeze() {\n");
+        if(flag) {
+            if(locking) {
+                shift = generateWriteLock(writer, shift, annotation);
+            }
+            writer.append(indent(shift)).append("this.").append(FROZEN).append(" = true;\n");
+            if(locking) {
+                shift = generateWriteUnlock(writer, shift, annotation);
             }
-            writer.append(");\n");
         }
-        if(threadSafe) {
-            writer.append(indent(--shift)).append("} finally {\n")
-                .append(indent(++shift)).append(INSTANCE_LOCK).append(".writeLock().unlock();\n")
-                .append(indent(--shift)).append("}\n");
+        writer.append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("public boolean isFrozen() {\n")
+              .append(indent(shift)).append("return ").append(flag ? "this." + FROZEN : "true").append(";\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate the body of a setter for a counter.
+     * A LongAdder can not be set atomically, so increments by other threads during reset() and add() may be lost.
+     */
+    protected int generateCounterSetterBody(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, Attribute attribute, ClassDefinition definition) throws IOException {
+        String fieldName = toSafeName(attribute.getName());
+        boolean detectingChange = isDetectingChange(element, annotation);
+        if(detectingChange) {
+            writer.append(indent(shift)).append(attribute.getType().toString()).append(" oldValue = ").append(valueExpression(attribute, "this.")).append(";\n");
         }
-        //generate code for firing PropertyChangeEvent
-        if(propertySupport) {
-            writer.append(indent(shift)).append("if (isPropertyChanged) {\n")
-                  .append(indent(++shift)).append("this.propertySupport.firePropertyChange(\"").append(attribute.getName()).append("\", oldValue, newValue);\n")
-                  .append(indent(--shift)).append("}\n");
+        writer.append(indent(shift)).append("this.").append(fieldName).append(".reset();\n")
+              .append(indent(shift)).append("this.").append(fieldName).append(".add(").append(fieldName).append(");\n");
+        shift = generateJournalRecord(writer, shift, annotation, definition, attribute, fieldName);
+        if(detectingChange) {
+            shift = generateModified(writer, shift, element, annotation, definition, attribute, changedExpression(attribute, "oldValue", fieldName), "oldValue", fieldName);
+        }
+        return shift;
+    }
+
+    protected int generateCounterOperations(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, Property property) throws IOException {
+        String name = capitalize(property.getName());
+        String field = "this." + toSafeName(property.getName());
+        String typeName = property.getType().toString();
+
+        //the operations of a counter do not fire events, but they modify the value.
+        //the journal records the sum after the operation, which may include concurrent operations.
+        boolean marking = isTrackingDirty(annotation) || isGeneratingDelta(annotation);
+
+        writer.append(indent(shift++)).append("public void increment").append(name).append("() {\n");
+        shift = generateFrozenCheck(writer, shift, annotation, definition);
+        writer.append(indent(shift)).append(field).append(".increment();\n");
+        if(marking) shift = generateMarkModified(writer, shift, annotation, definition, property, true);
+        shift = generateJournalRecord(writer, shift, annotation, definition, property, valueExpression(property, "this."));
+        writer.append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("public void decrement").append(name).append("() {\n");
+        shift = generateFrozenCheck(writer, shift, annotation, definition);
+        writer.append(indent(shift)).append(field).append(".decrement();\n");
+        if(marking) shift = generateMarkModified(writer, shift, annotation, definition, property, true);
+        shift = generateJournalRecord(writer, shift, annotation, definition, property, valueExpression(property, "this."));
+        writer.append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("public void add").append(name).append("(").append(typeName).append(" x) {\n");
+        shift = generateFrozenCheck(writer, shift, annotation, definition);
+        writer.append(indent(shift)).append(field).append(".add(x);\n");
+        if(marking) {
+            writer.append(indent(shift++)).append("if (x != 0) {\n");
+            shift = generateMarkModified(writer, shift, annotation, definition, property, true);
+            writer.append(indent(--shift)).append("}\n");
         }
+        shift = generateJournalRecord(writer, shift, annotation, definition, property, valueExpression(property, "this."));
         writer.append(indent(--shift)).append("}\n\n");
         return shift;
     }
 
+    protected int generateFirePropertyChange(Writer writer, int shift, Attribute attribute, String oldValue, String newValue) throws IOException {
+        return generateFirePropertyChange(writer, shift, null, attribute, oldValue, newValue);
+    }
+
+    /**
+     * Generate the code which fires a PropertyChangeEvent by the name of the property.
+     * If the listener registry is created lazily, no event is fired until a listener is registered.
+     */
+    protected int generateFirePropertyChange(Writer writer, int shift, AnnotationMirror annotation, Attribute attribute, String oldValue, String newValue) throws IOException {
+        boolean lazy = annotation != null && isLazyInfrastructure(annotation);
+        if(lazy) {
+            writer.append(indent(shift++)).append("if (this.propertySupport != null) {\n");
+        }
+        writer.append(indent(shift)).append("this.propertySupport.firePropertyChange(\"").append(attribute.getName()).append("\", ").append(oldValue).append(", ").append(newValue).append(");\n");
+        if(lazy) {
+            writer.append(indent(--shift)).append("}\n");
+        }
+        return shift;
+    }
+
+    /**
+     * Generate the code which fires a PropertyChangeEvent only if some listeners are registered and the condition is true.
+     * The registry is checked first, so an unobserved modification does not evaluate the condition,
+     * box the values nor create an event.
+     *
+     * @param condition a boolean expression which is true if the value was changed.
+     */
+    protected int generatePropertyChangeEvent(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, Attribute attribute, String condition, String oldValue, String newValue) throws IOException {
+        int index = propertyIndexOf(definition, attribute);
+        writer.append(indent(shift++)).append("if (");
+        if(isLazyInfrastructure(annotation)) {
+            writer.append("this.").append(PROPERTY_SUPPORT).append(" != null && ");
+        }
+        writer.append("this.").append(PROPERTY_SUPPORT).append(".hasListeners(").append(String.valueOf(index)).append(") && ").append(condition).append(") {\n")
+              .append(indent(shift)).append("this.").append(PROPERTY_SUPPORT).append(".firePropertyChange(").append(String.valueOf(index)).append(", ").append(oldValue).append(", ").append(newValue).append(");\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate the code which follows a modification of the attribute: marking it dirty, stamping its version for deltas
+     * and firing a PropertyChangeEvent.
+     * It is placed after the write lock is released.
+     *
+     * @param condition a boolean expression which is true if the value was changed.
+     */
+    protected int generateModified(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition, Attribute attribute, String condition, String oldValue, String newValue) throws IOException {
+        return generateModified(writer, shift, element, annotation, definition, attribute, true, condition, oldValue, newValue);
+    }
+
+    /**
+     * @param versioning false if the modification must not be written in the next delta, like the values applied by applyDelta().
+     */
+    protected int generateModified(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition, Attribute attribute, boolean versioning, String condition, String oldValue, String newValue) throws IOException {
+        if(isTrackingDirty(annotation) || (versioning && isGeneratingDelta(annotation))) {
+            writer.append(indent(shift++)).append("if (").append(condition).append(") {\n");
+            shift = generateMarkModified(writer, shift, annotation, definition, attribute, versioning);
+            writer.append(indent(--shift)).append("}\n");
+        }
+        if(isPropertyChangeEventAware(element)) {
+            shift = generatePropertyChangeEvent(writer, shift, annotation, definition, attribute, condition, oldValue, newValue);
+            if(isHavingWaiters(annotation, definition)) {
+                String index = String.valueOf(propertyIndexOf(definition, attribute));
+                writer.append(indent(shift++)).append("if (this.").append(WAITERS).append(" != null && this.").append(WAITERS).append(".hasWaiters(").append(index).append(") && ").append(condition).append(") {\n")
+                      .append(indent(shift)).append("this.").append(WAITERS).append(".test(").append(index).append(", ").append(newValue).append(");\n")
+                      .append(indent(--shift)).append("}\n");
+            }
+        }
+        return shift;
+    }
+
+    /**
+     * Generate the code which marks the attribute dirty and stamps its version for deltas. It must follow the write of the value.
+     */
+    protected int generateMarkModified(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, Attribute attribute, boolean versioning) throws IOException {
+        String index = String.valueOf(propertyIndexOf(definition, attribute));
+        if(isTrackingDirty(annotation)) {
+            writer.append(indent(shift)).append("this.").append(DIRTY).append(".set(").append(index).append(");\n");
+        }
+        if(versioning && isGeneratingDelta(annotation)) {
+            writer.append(indent(shift)).append("this.").append(DELTA_VERSIONS).append(".touch(").append(index).append(");\n");
+        }
+        return shift;
+    }
+
+    /**
+     * @return the index of the attribute in PROPERTY_NAMES of the generated class.
+     */
+    protected final int propertyIndexOf(ClassDefinition definition, Attribute attribute) {
+        List<Attribute> attributes = getValueAttributes(definition);
+        for (int i = 0; i < attributes.size(); i++) {
+            if(attributes.get(i).getName().equals(attribute.getName())) return i;
+        }
+        throw new IllegalArgumentException("the attribute '" + attribute.getName() + "' is not a property of " + definition.getClassName());
+    }
+
+    /**
+     * @return a boolean expression which is true if the value of newValue is not same with the value of oldValue.
+     */
+    protected final String changedExpression(Attribute attribute, String oldValue, String newValue) {
+        if(isPrimitive(attribute.getType())) {
+            return oldValue + " != " + newValue;
+        }
+        return "(" + oldValue + " != " + newValue + " && (" + oldValue + " == null || !" + oldValue + ".equals(" + newValue + ")))";
+    }
+
     protected final boolean isPackageNameRelative(AnnotationMirror annotation) {
         Elements elementUtils = processingEnv.getElementUtils();
         Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
@@ -255,6 +570,132 @@ public class InterfaceProcessor extends AbstractProcessor {
         return ((Boolean)threadSafeValue.getValue()).booleanValue();
     }
 
+    protected final ConcurrencyType getConcurrencyType(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue concurrencyValue = getValueOfAnnotation(annotationValueMap, CONCURRENCY);
+
+        //an enum value is only manageable as a VariableElement in annotation-processing time.
+        VariableElement type = (VariableElement) concurrencyValue.getValue();
+        return ConcurrencyType.valueOf(type.getSimpleName().toString());
+    }
+
+    /**
+     * @return true if getters, equals(), hashCode() and toString() should read fields under an optimistic stamp.
+     */
+    protected final boolean isOptimisticRead(AnnotationMirror annotation) {
+        return getConcurrencyType(annotation) == ConcurrencyType.STAMPED_LOCK;
+    }
+
+    /**
+     * @return true if the generated class guards its fields with the 'instanceLock'.
+     */
+    protected final boolean isUsingInstanceLock(AnnotationMirror annotation) {
+        ConcurrencyType type = getConcurrencyType(annotation);
+        return isThreadSafe(annotation) && (type == ConcurrencyType.READ_WRITE_LOCK || type == ConcurrencyType.STAMPED_LOCK);
+    }
+
+    /**
+     * @return true if the fields for properties must be declared as volatile.
+     */
+    protected final boolean isVolatileField(AnnotationMirror annotation) {
+        return isThreadSafe(annotation) && getConcurrencyType(annotation) == ConcurrencyType.VOLATILE;
+    }
+
+    /**
+     * @return true if equals(), hashCode() and toString() read the values from local copies of the fields
+     * which are made by {@link #generateBeginRead(Writer, int, AnnotationMirror, Collection)}.
+     */
+    protected final boolean isReadingLocalCopies(AnnotationMirror annotation) {
+        return isThreadSafe(annotation) && getConcurrencyType(annotation) != ConcurrencyType.READ_WRITE_LOCK;
+    }
+
+    /**
+     * A class is immutable if 'elideLockIfImmutable' is true, it has no setter, no counter and no writable inner field,
+     * and the generated class is not abstract.
+     * The fields of an immutable class are never changed after construction,
+     * so the class does not need any lock even if 'isThreadSafe' is true.
+     * Without the option the instanceLock is kept, because a subclass may use it.
+     *
+     * @return true if the class for the definition is effectively immutable.
+     */
+    protected final boolean isImmutable(AnnotationMirror annotation, ClassDefinition definition) {
+        if(!isElidingLockIfImmutable(annotation) || isAbstract(annotation, definition)) return false;
+
+        Types typeUtils = processingEnv.getTypeUtils();
+        for (Field field : definition.getInnerFields(typeUtils)) {
+            if(!field.isReadOnly()) return false;
+        }
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored() && (property.isWritable() || property.isCounter())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the accessors, equals(), hashCode() and toString() must read the fields through the concurrency strategy of the class.
+     */
+    protected final boolean isGuardingRead(AnnotationMirror annotation, ClassDefinition definition) {
+        return isThreadSafe(annotation) && !isImmutable(annotation, definition);
+    }
+
+    /**
+     * An immutable class does not need the copy-on-write state, so it is generated with final fields instead.
+     *
+     * @return true if all properties are stored in an immutable State object which is swapped by compare-and-set.
+     */
+    protected final boolean isCopyOnWrite(AnnotationMirror annotation, ClassDefinition definition) {
+        return isThreadSafe(annotation) && getConcurrencyType(annotation) == ConcurrencyType.COPY_ON_WRITE && !isImmutable(annotation, definition);
+    }
+
+    /**
+     * An immutable class does not need the sequence, so it is generated with final fields instead.
+     *
+     * @return true if the fields are guarded by a sequence lock.
+     */
+    protected final boolean isSequenceLock(AnnotationMirror annotation, ClassDefinition definition) {
+        return isThreadSafe(annotation) && getConcurrencyType(annotation) == ConcurrencyType.SEQLOCK && !isImmutable(annotation, definition);
+    }
+
+    /**
+     * @return true if modifiers must be executed in a critical section, guarded by the instanceLock or by the sequence lock.
+     */
+    protected final boolean isLockingWrite(AnnotationMirror annotation) {
+        return isUsingInstanceLock(annotation) || (isThreadSafe(annotation) && getConcurrencyType(annotation) == ConcurrencyType.SEQLOCK);
+    }
+
+    /**
+     * @return the prefix for reading the values in equals(), hashCode() and toString().
+     * the block which is started by {@link #generateBeginRead(Writer, int, AnnotationMirror, Collection)} defines local variables for it.
+     */
+    protected final String getReadPrefix(AnnotationMirror annotation, ClassDefinition definition) {
+        if(isCopyOnWrite(annotation, definition)) return "current.";
+        return isGuardingRead(annotation, definition) && isReadingLocalCopies(annotation) ? "" : "this.";
+    }
+
+    protected final boolean isFreezable(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue freezableValue = getValueOfAnnotation(annotationValueMap, IS_FREEZABLE);
+        return ((Boolean)freezableValue.getValue()).booleanValue();
+    }
+
+    /**
+     * An immutable class is frozen from the beginning, so it does not need the 'frozen' flag.
+     *
+     * @return true if the class has the 'frozen' flag and its modifiers check it.
+     */
+    protected final boolean isHavingFrozenFlag(AnnotationMirror annotation, ClassDefinition definition) {
+        return isFreezable(annotation) && !isImmutable(annotation, definition);
+    }
+
+    /**
+     * @return true if getters, equals(), hashCode() and toString() read the fields without the instanceLock after freeze().
+     */
+    protected final boolean isReadingFrozenFields(AnnotationMirror annotation, ClassDefinition definition) {
+        return isHavingFrozenFlag(annotation, definition) && isUsingInstanceLock(annotation);
+    }
+
     protected final boolean isCloneable(AnnotationMirror annotation) {
         Elements elementUtils = processingEnv.getElementUtils();
         Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
@@ -269,68 +710,555 @@ public class InterfaceProcessor extends AbstractProcessor {
         return ((Boolean)serializableValue.getValue()).booleanValue();
     }
 
-    protected final boolean isHavingSuperClass(AnnotationMirror annotation) {
+    protected final boolean isCompactSerialization(AnnotationMirror annotation) {
         Elements elementUtils = processingEnv.getElementUtils();
-        boolean havingSuperClass = !getSuperClassValue(elementUtils.getElementValuesWithDefaults(annotation)).isEmpty();
-        return havingSuperClass || isHavingSuperClassName(annotation);
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue compactValue = getValueOfAnnotation(annotationValueMap, COMPACT_SERIALIZATION);
+        return ((Boolean)compactValue.getValue()).booleanValue() && isSerializable(annotation);
     }
 
-    protected final boolean isHavingSuperClassName(AnnotationMirror annotation) {
+    protected final boolean isGeneratingCodec(AnnotationMirror annotation) {
         Elements elementUtils = processingEnv.getElementUtils();
-        return !getSuperClassNameValue(elementUtils.getElementValuesWithDefaults(annotation)).isEmpty();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue codecValue = getValueOfAnnotation(annotationValueMap, GENERATE_CODEC);
+        return ((Boolean)codecValue.getValue()).booleanValue();
     }
 
-    protected final boolean isPropertyChangeEventAware(TypeElement element) {
+    protected final boolean isGeneratingJson(AnnotationMirror annotation) {
         Elements elementUtils = processingEnv.getElementUtils();
-        Types typeUtils = processingEnv.getTypeUtils();
-        TypeElement propertyAware = elementUtils.getTypeElement(PropertyChangeEventAware.class.getName());
-        for (TypeMirror intrface : element.getInterfaces()) {
-            if(typeUtils.isSubtype(intrface, propertyAware.asType())) {
-                return true;
-            }
-        }
-        return false;
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue jsonValue = getValueOfAnnotation(annotationValueMap, GENERATE_JSON);
+        return ((Boolean)jsonValue.getValue()).booleanValue();
     }
 
-    protected final boolean isAbstract(AnnotationMirror annotation, ClassDefinition definition) {
+    protected final boolean isGeneratingCsvReader(AnnotationMirror annotation) {
         Elements elementUtils = processingEnv.getElementUtils();
         Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
-        AnnotationValue isAbstractAttribute = getValueOfAnnotation(annotationValueMap, IS_ABSTRACT);
-        assert isAbstractAttribute != null;
+        AnnotationValue csvValue = getValueOfAnnotation(annotationValueMap, GENERATE_CSV_READER);
+        return ((Boolean)csvValue.getValue()).booleanValue();
+    }
 
-        Object isAbstractValue = isAbstractAttribute.getValue();
-        assert isAbstractValue != null;
+    protected final boolean isGeneratingRowBinder(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue binderValue = getValueOfAnnotation(annotationValueMap, GENERATE_ROW_BINDER);
+        return ((Boolean)binderValue.getValue()).booleanValue();
+    }
 
-        boolean isAbstract = (isAbstractValue instanceof Boolean) && ((Boolean)isAbstractValue).booleanValue();
+    protected final boolean isGeneratingAtomicOperations(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue atomicValue = getValueOfAnnotation(annotationValueMap, GENERATE_ATOMIC_OPERATIONS);
+        return ((Boolean)atomicValue.getValue()).booleanValue();
+    }
 
-        return isAbstract || !(definition.getMethods().isEmpty() && !definition.isHavingIgnoredProperty());
+    protected final boolean isGeneratingBatchUpdate(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue batchValue = getValueOfAnnotation(annotationValueMap, GENERATE_BATCH_UPDATE);
+        return ((Boolean)batchValue.getValue()).booleanValue();
     }
 
-    protected boolean precheck(ClassDefinition definition, AnnotationMirror annotation, String className, Element element) {
-        return true;
+    protected final boolean isGeneratingTypedListeners(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue typedValue = getValueOfAnnotation(annotationValueMap, GENERATE_TYPED_LISTENERS);
+        return ((Boolean)typedValue.getValue()).booleanValue();
     }
-    
-    protected void generateClassDefinition(Writer writer, AnnotationMirror annotation, ClassDefinition definition, String className, Element element) throws IOException {
+
+    protected final boolean isGeneratingFlowPublishers(AnnotationMirror annotation) {
         Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue publishersValue = getValueOfAnnotation(annotationValueMap, GENERATE_FLOW_PUBLISHERS);
+        return ((Boolean)publishersValue.getValue()).booleanValue();
+    }
 
-        String packageName = resolvePackageName(annotation, definition);
-        String generationTime = String.format("%1$tFT%1$tH:%1$tM:%1$tS.%1$tL%1$tz", new Date()); //%1$tY%1$tm%1$td-%1$tH%1$tk%1$tS-%1$tN%1$tz
+    /**
+     * @return true if the class has await&lt;Property&gt;() methods, whose waiters are held in 'waiters'.
+     */
+    protected final boolean isHavingWaiters(AnnotationMirror annotation, ClassDefinition definition) {
+        return isGeneratingAwaitMethods(annotation) && !getListenableAttributes(definition).isEmpty();
+    }
 
-        writer.append("package ").append(packageName).append(";\n\n");
-        writer.append("@javax.annotation.Generated(value = \"" + this.getClass().getName() + "\", date = \"" + generationTime + "\")\n");
-        writer.append("public ").append(isAbstract(annotation, definition) ? "abstract " : "").append("class ").append(className);
+    protected final boolean isGeneratingAwaitMethods(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue awaitValue = getValueOfAnnotation(annotationValueMap, GENERATE_AWAIT_METHODS);
+        return ((Boolean)awaitValue.getValue()).booleanValue();
+    }
 
-        boolean extended = false;
-        boolean implemented = false;
-        
+    protected final boolean isElidingLockIfImmutable(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
         Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
-        String superClassName = getSuperClassValue(annotationValueMap);
-        if(!superClassName.isEmpty()) {
-            writer.append(" extends ").append(superClassName);
-            extended = true;
-        }
-        
-        switch(definition.getElementType()) {
+        AnnotationValue elideValue = getValueOfAnnotation(annotationValueMap, ELIDE_LOCK_IF_IMMUTABLE);
+        return ((Boolean)elideValue.getValue()).booleanValue();
+    }
+
+    protected final boolean isTrackingDirty(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue dirtyValue = getValueOfAnnotation(annotationValueMap, TRACK_DIRTY);
+        return ((Boolean)dirtyValue.getValue()).booleanValue();
+    }
+
+    protected final boolean isGeneratingDelta(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue deltaValue = getValueOfAnnotation(annotationValueMap, GENERATE_DELTA);
+        return ((Boolean)deltaValue.getValue()).booleanValue();
+    }
+
+    /**
+     * @return true if modifiers must compare the old and new values, for PropertyChangeEvents, the dirty bits or the versions of deltas.
+     */
+    protected final boolean isDetectingChange(TypeElement element, AnnotationMirror annotation) {
+        return isPropertyChangeEventAware(element) || isTrackingDirty(annotation) || isGeneratingDelta(annotation);
+    }
+
+    protected final boolean isJournaling(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue journalValue = getValueOfAnnotation(annotationValueMap, JOURNAL);
+        return ((Boolean)journalValue.getValue()).booleanValue();
+    }
+
+    protected final boolean isAsyncEvents(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue asyncValue = getValueOfAnnotation(annotationValueMap, ASYNC_EVENTS);
+        return ((Boolean)asyncValue.getValue()).booleanValue();
+    }
+
+    protected final int getEventQueueCapacity(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue capacityValue = getValueOfAnnotation(annotationValueMap, EVENT_QUEUE_CAPACITY);
+        return ((Integer)capacityValue.getValue()).intValue();
+    }
+
+    protected final OverflowPolicy getEventOverflowPolicy(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue policyValue = getValueOfAnnotation(annotationValueMap, EVENT_OVERFLOW_POLICY);
+
+        //an enum value is only manageable as a VariableElement in annotation-processing time.
+        VariableElement policy = (VariableElement) policyValue.getValue();
+        return OverflowPolicy.valueOf(policy.getSimpleName().toString());
+    }
+
+    /**
+     * @return an expression for creating the PropertyChangeListenerRegistry of the generated class.
+     */
+    protected final String newPropertySupport(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        String supportClass = elementUtils.getTypeElement(PropertyChangeListenerRegistry.class.getName()).asType().toString();
+        if(annotation == null || !isAsyncEvents(annotation)) {
+            return "new " + supportClass + "(this, " + PROPERTY_NAMES + ")";
+        }
+        return "new " + supportClass + "(this, " + PROPERTY_NAMES + ", null, " + getEventQueueCapacity(annotation) + ", "
+             + OverflowPolicy.class.getName() + "." + getEventOverflowPolicy(annotation).name() + ")";
+    }
+
+    protected final boolean isLazyInfrastructure(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue lazyValue = getValueOfAnnotation(annotationValueMap, LAZY_INFRASTRUCTURE);
+        return ((Boolean)lazyValue.getValue()).booleanValue();
+    }
+
+    protected final int getLockStripes(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue stripesValue = getValueOfAnnotation(annotationValueMap, LOCK_STRIPES);
+        return ((Integer)stripesValue.getValue()).intValue();
+    }
+
+    /**
+     * @return true if the fields are guarded by the array of ReadWriteLocks 'instanceLocks' instead of one 'instanceLock'.
+     */
+    protected final boolean isStripedLock(AnnotationMirror annotation) {
+        return isUsingInstanceLock(annotation) && getConcurrencyType(annotation) == ConcurrencyType.READ_WRITE_LOCK && getLockStripes(annotation) > 1;
+    }
+
+    /**
+     * @return true if this class declares the 'instanceLock' field by itself.
+     * if the class has a super class, the lock is inherited from it.
+     */
+    protected final boolean isDeclaringInstanceLock(AnnotationMirror annotation, ClassDefinition definition) {
+        return isUsingInstanceLock(annotation) && !isStripedLock(annotation) && !isHavingSuperClass(annotation) && !isImmutable(annotation, definition);
+    }
+
+    /**
+     * @return true if this class declares the 'instanceLocks' field by itself.
+     */
+    protected final boolean isDeclaringLockStripes(AnnotationMirror annotation, ClassDefinition definition) {
+        return isStripedLock(annotation) && !isHavingSuperClass(annotation) && !isImmutable(annotation, definition);
+    }
+
+    /**
+     * Properties which have the same lockGroup are assigned to the same stripe by the hash of the group name.
+     * The others are assigned round-robin in the order of their declarations, so they are spread evenly over the stripes.
+     *
+     * @return the index of the stripe which guards the attribute.
+     */
+    protected int stripeOf(ClassDefinition definition, Attribute attribute, int stripes) {
+        if(attribute instanceof Property && !((Property) attribute).getLockGroup().isEmpty()) {
+            return (((Property) attribute).getLockGroup().hashCode() & 0x7fffffff) % stripes;
+        }
+        int ordinal = 0;
+        for (Attribute other : getValueAttributes(definition)) {
+            if(other.getName().equals(attribute.getName())) break;
+            //counters are not guarded by the stripes.
+            if(!isCounter(other) && (!(other instanceof Property) || ((Property) other).getLockGroup().isEmpty())) ordinal++;
+        }
+        return ordinal % stripes;
+    }
+
+    /**
+     * @return an expression for referring the lock which guards the attribute.
+     */
+    protected final String lockOf(AnnotationMirror annotation, ClassDefinition definition, Attribute attribute) {
+        if(isStripedLock(annotation)) {
+            return INSTANCE_LOCKS + "[" + stripeOf(definition, attribute, getLockStripes(annotation)) + "]";
+        }
+        return INSTANCE_LOCK;
+    }
+
+    protected final boolean isHavingSuperClass(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        boolean havingSuperClass = !getSuperClassValue(elementUtils.getElementValuesWithDefaults(annotation)).isEmpty();
+        return havingSuperClass || isHavingSuperClassName(annotation);
+    }
+
+    protected final boolean isHavingSuperClassName(AnnotationMirror annotation) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        return !getSuperClassNameValue(elementUtils.getElementValuesWithDefaults(annotation)).isEmpty();
+    }
+
+    protected final boolean isPropertyChangeEventAware(TypeElement element) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Types typeUtils = processingEnv.getTypeUtils();
+        TypeElement propertyAware = elementUtils.getTypeElement(PropertyChangeEventAware.class.getName());
+        for (TypeMirror intrface : element.getInterfaces()) {
+            if(typeUtils.isSubtype(intrface, propertyAware.asType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected final boolean isAbstract(AnnotationMirror annotation, ClassDefinition definition) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        AnnotationValue isAbstractAttribute = getValueOfAnnotation(annotationValueMap, IS_ABSTRACT);
+        assert isAbstractAttribute != null;
+
+        Object isAbstractValue = isAbstractAttribute.getValue();
+        assert isAbstractValue != null;
+
+        boolean isAbstract = (isAbstractValue instanceof Boolean) && ((Boolean)isAbstractValue).booleanValue();
+
+        return isAbstract || !(definition.getMethods().isEmpty() && !definition.isHavingIgnoredProperty());
+    }
+
+    protected boolean precheck(ClassDefinition definition, AnnotationMirror annotation, String className, Element element) {
+        return true;
+    }
+
+    /**
+     * Check that the options of @GenerateClass can be applied to the definition.
+     * Problems are reported through the Messager of the current ProcessingEnvironment.
+     *
+     * @return false if the class must not be generated.
+     */
+    protected final boolean checkDefinition(ClassDefinition definition, AnnotationMirror annotation, Element element) {
+        Messager messager = processingEnv.getMessager();
+        Types typeUtils = processingEnv.getTypeUtils();
+        boolean valid = true;
+
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored() && property.isCounter()) {
+                TypeKind kind = property.getType().getKind();
+                if(kind != TypeKind.INT && kind != TypeKind.LONG) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the counter property '" + property.getName() + "' must be an int or a long.", element);
+                    valid = false;
+                }
+                if(property.isFieldDefined()) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the counter property '" + property.getName() + "' must not have a field defined by hand.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        int stripes = getLockStripes(annotation);
+        if(stripes < 1) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "lockStripes must be 1 or more.", element);
+            valid = false;
+        } else if(stripes > 1 && isThreadSafe(annotation) && getConcurrencyType(annotation) != ConcurrencyType.READ_WRITE_LOCK) {
+            messager.printMessage(Diagnostic.Kind.WARNING, "lockStripes is supported only by ConcurrencyType.READ_WRITE_LOCK. it is ignored.", element);
+        }
+
+        if(isAsyncEvents(annotation) && getEventQueueCapacity(annotation) < 1) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "eventQueueCapacity must be 1 or more.", element);
+            valid = false;
+        }
+
+        if(!isPropertyChangeEventAware((TypeElement) element)) {
+            //these options only concern the PropertyChangeEvents and their listeners.
+            if(isGeneratingTypedListeners(annotation)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "generateTypedListeners is supported only by an interface extending PropertyChangeEventAware. it is ignored.", element);
+            }
+            if(isAsyncEvents(annotation)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "asyncEvents is supported only by an interface extending PropertyChangeEventAware. it is ignored.", element);
+            }
+            if(isGeneratingFlowPublishers(annotation)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "generateFlowPublishers is supported only by an interface extending PropertyChangeEventAware. it is ignored.", element);
+            }
+            if(isGeneratingAwaitMethods(annotation)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "generateAwaitMethods is supported only by an interface extending PropertyChangeEventAware. it is ignored.", element);
+            }
+            if(isLazyInfrastructure(annotation)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "lazyInfrastructure is supported only by an interface extending PropertyChangeEventAware. it is ignored.", element);
+            }
+        }
+
+        if(isGuardingRead(annotation, definition) && isReadingLocalCopies(annotation) && !isCopyOnWrite(annotation, definition)) {
+            //equals() and hashCode() copy the values into local variables having the same names with the fields.
+            boolean stamped = getConcurrencyType(annotation) == ConcurrencyType.STAMPED_LOCK;
+            for (Attribute attribute : getValueAttributes(definition)) {
+                String name = attribute.getName();
+                if(name.equals("obj") || name.equals("other") || name.equals("result")) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + name + "' conflicts with a local variable of equals() or hashCode() of ConcurrencyType." + getConcurrencyType(annotation) + ".", element);
+                    valid = false;
+                }
+                if(stamped && name.equals("stamp")) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name 'stamp' conflicts with the stamp of ConcurrencyType.STAMPED_LOCK.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isSequenceLock(annotation, definition)) {
+            for (Attribute attribute : getValueAttributes(definition)) {
+                if(!isPrimitive(attribute.getType())) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "ConcurrencyType.SEQLOCK can be used only with primitive properties, but '" + attribute.getName() + "' is not a primitive.", element);
+                    valid = false;
+                }
+                if(attribute.getName().equals(SEQUENCE) || attribute.getName().equals("current")) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + attribute.getName() + "' conflicts with the sequence of ConcurrencyType.SEQLOCK.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isFreezable(annotation)) {
+            for (Property property : definition.getProperties()) {
+                if(property.getName().equals(FROZEN)) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the property '" + FROZEN + "' conflicts with isFrozen() of isFreezable.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isTrackingDirty(annotation)) {
+            for (Attribute attribute : getValueAttributes(definition)) {
+                if(attribute.getName().equals(DIRTY)) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + DIRTY + "' conflicts with the dirty bits of trackDirty.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isPropertyChangeEventAware((TypeElement) element) && isHavingWaiters(annotation, definition)) {
+            for (Attribute attribute : getValueAttributes(definition)) {
+                if(attribute.getName().equals(WAITERS)) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + WAITERS + "' conflicts with the waiters of generateAwaitMethods.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isGeneratingDelta(annotation)) {
+            for (Attribute attribute : getDeltaAttributes(definition)) {
+                if(!isDeltaEncodable(attribute.getType())) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the property '" + attribute.getName() + "' can not be written in a delta. only primitives, their wrappers, String and enums are supported.", element);
+                    valid = false;
+                }
+            }
+            for (Attribute attribute : getValueAttributes(definition)) {
+                String name = attribute.getName();
+                if(name.equals("in") || name.equals("out") || name.equals("since") || name.equals("version") || name.equals("changed") || name.equals("present")) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + name + "' conflicts with a local variable of writeDelta() or applyDelta().", element);
+                    valid = false;
+                }
+                if(name.equals(DELTA_VERSIONS)) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + DELTA_VERSIONS + "' conflicts with the versions of generateDelta.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isJournaling(annotation)) {
+            for (Attribute attribute : getDeltaAttributes(definition)) {
+                if(!isDeltaEncodable(attribute.getType())) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the property '" + attribute.getName() + "' can not be recorded in a journal. only primitives, their wrappers, String and enums are supported.", element);
+                    valid = false;
+                }
+            }
+            for (Attribute attribute : getValueAttributes(definition)) {
+                String name = attribute.getName();
+                if(name.equals(JOURNAL) || name.equals(JOURNAL_ID) || name.equals("record") || name.equals("changeJournal")) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + name + "' conflicts with the journal.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isCompactSerialization(annotation)) {
+            if(isHavingSuperClass(annotation) || definition.getElementType() == ElementType.CLASS) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "compactSerialization can not be used with a superclass, because the state of the superclass is not written.", element);
+                valid = false;
+            } else if(isAbstract(annotation, definition)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "compactSerialization can not be used with an abstract class, because a deserialized object is created by the constructor.", element);
+                valid = false;
+            }
+            Set<String> serialized = new HashSet<String>();
+            for (Attribute attribute : getSerializedAttributes(definition)) {
+                serialized.add(attribute.getName());
+            }
+            for (Attribute attribute : getValueAttributes(definition)) {
+                if(!serialized.contains(attribute.getName())) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the property '" + attribute.getName() + "' is not a parameter of the full-arg constructor. it can not be restored by compactSerialization.", element);
+                    valid = false;
+                }
+            }
+        }
+
+        if(isGeneratingCodec(annotation)) {
+            valid &= checkCompanionDefinition(definition, annotation, element, GENERATE_CODEC);
+        }
+
+        if(isGeneratingJson(annotation)) {
+            valid &= checkCompanionDefinition(definition, annotation, element, GENERATE_JSON);
+        }
+
+        if(isGeneratingCsvReader(annotation)) {
+            valid &= checkCompanionDefinition(definition, annotation, element, GENERATE_CSV_READER);
+        }
+
+        if(isGeneratingRowBinder(annotation)) {
+            valid &= checkCompanionDefinition(definition, annotation, element, GENERATE_ROW_BINDER);
+        }
+
+        if(isCopyOnWrite(annotation, definition)) {
+            for (Field field : definition.getInnerFields(typeUtils)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "the field '" + field.getName() + "' can not be stored in the state of ConcurrencyType.COPY_ON_WRITE.", element);
+                valid = false;
+            }
+            for (Property property : definition.getProperties()) {
+                if(property.isIgnored()) continue;
+                if(property.isFieldDefined()) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the property '" + property.getName() + "' has a field defined by hand. it can not be stored in the state of ConcurrencyType.COPY_ON_WRITE.", element);
+                    valid = false;
+                }
+                if(property.isCounter()) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the counter property '" + property.getName() + "' is not supported by ConcurrencyType.COPY_ON_WRITE.", element);
+                    valid = false;
+                }
+                //setters declare 'current' and 'newValue', and the State is held by the field 'state'.
+                String name = property.getName();
+                if(name.equals("current") || name.equals("newValue") || name.equals(STATE)) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "the name '" + name + "' conflicts with the state of ConcurrencyType.COPY_ON_WRITE.", element);
+                    valid = false;
+                }
+            }
+            if(isGeneratingAtomicOperations(annotation)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "generateAtomicOperations is ignored by ConcurrencyType.COPY_ON_WRITE.", element);
+            }
+        }
+
+        if(isVolatileField(annotation)) {
+            for (Field field : definition.getInnerFields(typeUtils)) {
+                if(!field.isIgnored()) {
+                    messager.printMessage(Diagnostic.Kind.WARNING, "the field '" + field.getName() + "' is not generated by the processor. declare it as volatile for ConcurrencyType.VOLATILE.", element);
+                }
+            }
+            for (Property property : definition.getProperties()) {
+                if(!property.isIgnored() && property.isFieldDefined()) {
+                    messager.printMessage(Diagnostic.Kind.WARNING, "the field for the property '" + property.getName() + "' is not generated by the processor. declare it as volatile for ConcurrencyType.VOLATILE.", element);
+                }
+            }
+        }
+        return valid;
+    }
+    
+    /**
+     * Check a definition for a companion class, such as a codec, which creates an object by the full-arg constructor.
+     * The codec and the JSON class read the properties through the getters.
+     */
+    private boolean checkCompanionDefinition(ClassDefinition definition, AnnotationMirror annotation, Element element, String option) {
+        Messager messager = processingEnv.getMessager();
+        boolean codec = option.equals(GENERATE_CODEC);
+        boolean binder = option.equals(GENERATE_ROW_BINDER);
+        boolean reading = codec || option.equals(GENERATE_JSON);
+        boolean valid = true;
+        if(!definition.getTypeParameterElements().isEmpty()) {
+            messager.printMessage(Diagnostic.Kind.ERROR, option + " can not be used with a generic type.", element);
+            valid = false;
+        }
+        if(isAbstract(annotation, definition)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, option + " can not be used with an abstract class, because an object is created by the constructor.", element);
+            valid = false;
+        }
+        Set<String> encoded = new HashSet<String>();
+        for (Attribute attribute : getSerializedAttributes(definition)) {
+            encoded.add(attribute.getName());
+            if(attribute instanceof Field) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "the field '" + attribute.getName() + "' has no getter. it can not be encoded by " + option + ".", element);
+                valid = false;
+            } else if(reading && !((Property) attribute).isReadable()) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "the property '" + attribute.getName() + "' is not readable. it can not be encoded by " + option + ".", element);
+                valid = false;
+            }
+            boolean supported = codec ? isCodecEncodable(attribute.getType())
+                    : binder ? isRowBindable(attribute.getType())
+                    : isDeltaEncodable(attribute.getType());
+            if(!supported) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "the type of the property '" + attribute.getName() + "' is not supported by " + option + ". only primitives, their wrappers, String"
+                        + (codec ? ", enums and primitive arrays" : binder ? ", enums, BigDecimal, byte arrays and the date types of java.sql" : " and enums") + " are supported.", element);
+                valid = false;
+            }
+        }
+        for (Attribute attribute : getValueAttributes(definition)) {
+            if(!encoded.contains(attribute.getName())) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "the property '" + attribute.getName() + "' is not a parameter of the full-arg constructor. it can not be decoded by " + option + ".", element);
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    protected void generateClassDefinition(Writer writer, AnnotationMirror annotation, ClassDefinition definition, String className, Element element) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+
+        String packageName = resolvePackageName(annotation, definition);
+        String generationTime = String.format("%1$tFT%1$tH:%1$tM:%1$tS.%1$tL%1$tz", new Date()); //%1$tY%1$tm%1$td-%1$tH%1$tk%1$tS-%1$tN%1$tz
+
+        writer.append("package ").append(packageName).append(";\n\n");
+        writer.append("@javax.annotation.Generated(value = \"" + this.getClass().getName() + "\", date = \"" + generationTime + "\")\n");
+        writer.append("public ").append(isAbstract(annotation, definition) ? "abstract " : "").append("class ").append(className);
+
+        boolean extended = false;
+        boolean implemented = false;
+        
+        Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
+        String superClassName = getSuperClassValue(annotationValueMap);
+        if(!superClassName.isEmpty()) {
+            writer.append(" extends ").append(superClassName);
+            extended = true;
+        }
+        
+        switch(definition.getElementType()) {
             case CLASS:
                 extended = true;
                 break;
@@ -339,92 +1267,1512 @@ public class InterfaceProcessor extends AbstractProcessor {
                 break;
         }
 
-        writer.append(" ").append(definition.getElementType().getExtendString()).append(" ").append(definition.getPackage() + "." + definition.getClassName());
+        writer.append(" ").append(definition.getElementType().getExtendString()).append(" ").append(definition.getPackage() + "." + definition.getClassName());
+
+        boolean isSerializable = isSerializable(annotation);
+        if(isSerializable) {
+            writer.append(getBindString(implemented)).append("java.io.Serializable");
+            implemented = true;
+        }
+
+        if(isCloneable(annotation)) {
+            writer.append(getBindString(implemented)).append("java.lang.Cloneable");
+            implemented = true;
+        }
+
+        writer.append(" {\n");
+
+        if(isSerializable) {
+            AnnotationValue serialVersionValue = getValueOfAnnotation(annotationValueMap, SERIAL_VERSION);
+            Long version = (Long)serialVersionValue.getValue();
+            writer.append(indent(1)).append("private static final long serialVersionUID = ").append(version.toString()).append("L;\n");
+        }
+    }
+    
+    private String getBindString(boolean implemented) {
+        return implemented ? ", " : " implements ";
+    }
+
+    protected int generateFields(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface, Modifier modifier) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+
+        boolean immutable = isImmutable(annotation, definition);
+        String qualifier = isVolatileField(annotation) ? "volatile " : "";
+        if(isCopyOnWrite(annotation, definition)) {
+            shift = generateStateField(writer, shift, annotation, definition);
+        }
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored() && !property.isFieldDefined() && !isCopyOnWrite(annotation, definition)) {
+                if(property.isCounter()) {
+                    shift = generateCounterField(property, writer, shift, modifier, annotation);
+                } else if(immutable && canInitializeField(property, ConstructorGenerationType.FULL_ARG_CONSTRUCTOR, ConstructorGenerationPhase.FIELD_INITALIZATION)) {
+                    //the field is assigned only once in the constructor.
+                    shift = generateField(property, writer, shift, modifier, "final ");
+                } else {
+                    shift = generateField(property, writer, shift, modifier, qualifier);
+                }
+            }
+        }
+
+        if(isGeneratingAtomicOperations(annotation) && isVolatileField(annotation)) {
+            shift = generateVarHandleFields(writer, shift, definition, targetInterface);
+        }
+
+        if(isHavingFrozenFlag(annotation, definition)) {
+            writer.append("\n");
+            writer.append(indent(shift)).append("private volatile boolean ").append(FROZEN).append(";\n");
+        }
+
+        if(isPropertyChangeEventAware(targetInterface) || isTrackingDirty(annotation) || isGeneratingDelta(annotation)) {
+            writer.append("\n");
+            shift = generatePropertyNamesField(writer, shift, definition);
+        }
+
+        if(isTrackingDirty(annotation)) {
+            writer.append(indent(shift)).append("private ").append(isCloneable(annotation) ? "" : "final ").append(DirtyBits.class.getName()).append(" ").append(DIRTY)
+                  .append(" = new ").append(DirtyBits.class.getName()).append("(").append(PROPERTY_NAMES).append(".length);\n");
+        }
+
+        if(isGeneratingDelta(annotation)) {
+            writer.append(indent(shift)).append("private ").append(isCloneable(annotation) ? "" : "final ").append(DeltaVersions.class.getName()).append(" ").append(DELTA_VERSIONS)
+                  .append(" = new ").append(DeltaVersions.class.getName()).append("(").append(PROPERTY_NAMES).append(".length);\n");
+        }
+
+        if(isJournaling(annotation)) {
+            shift = generateJournalFields(writer, shift, annotation, definition, targetInterface);
+        }
+
+        if(isPropertyChangeEventAware(targetInterface) && isHavingWaiters(annotation, definition)) {
+            shift = generateWaitersField(writer, shift, annotation, definition, targetInterface);
+        }
+
+        if(isLazyInfrastructure(annotation)) {
+            shift = generateLazyInfrastructureFields(writer, shift, annotation, definition, targetInterface);
+        } else if(isPropertyChangeEventAware(targetInterface)) {
+            writer.append("\n");
+            generatePropertySupportField(elementUtils, writer, shift);
+        }
+
+
+        if(isDeclaringInstanceLock(annotation, definition)) {
+            writer.append("\n");
+            shift = generateLockField(writer, shift, annotation);
+        }
+
+        if(isDeclaringLockStripes(annotation, definition)) {
+            writer.append("\n");
+            shift = generateLockStripesField(writer, shift, annotation);
+        }
+
+        if(isSequenceLock(annotation, definition)) {
+            shift = generateSequenceField(writer, shift, annotation, definition, targetInterface);
+        }
+
+        writer.append("\n");
+        return shift;
+    }
+
+    /**
+     * Generate a LongAdder field for a counter property.
+     * the field is not final if the class is cloneable, because clone() must replace it with a new LongAdder.
+     */
+    protected int generateCounterField(Property property, Writer writer, int shift, Modifier modifier, AnnotationMirror annotation) throws IOException {
+        writer.append(indent(shift)).append(modifier.getModifier()).append((modifier == Modifier.DEFAULT ? "" : " ")).append(isCloneable(annotation) ? "" : "final ")
+              .append("java.util.concurrent.atomic.LongAdder ").append(toSafeName(property.getName())).append(" = new java.util.concurrent.atomic.LongAdder();\n");
+        return shift;
+    }
+
+    /**
+     * @return the properties which are stored in the State object of a copy-on-write class, in the order of the arguments of its constructor.
+     */
+    protected final List<Property> getStateProperties(ClassDefinition definition) {
+        List<Property> properties = new ArrayList<Property>();
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored()) {
+                properties.add(property);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Generate the field holding the current State, and the immutable nested class State which holds the values of all properties.
+     * The field is not final if the class is cloneable, because clone() must give the copy its own AtomicReference.
+     */
+    protected int generateStateField(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Property> properties = getStateProperties(definition);
+
+        writer.append(indent(shift)).append("private ").append(isCloneable(annotation) ? "" : "final ").append("java.util.concurrent.atomic.AtomicReference<").append(STATE_CLASS).append("> ").append(STATE).append(";\n\n");
+        return generateStateClass(writer, shift, annotation, properties);
+    }
+
+    /**
+     * Generate the immutable nested class State which holds the values of the properties.
+     */
+    protected int generateStateClass(Writer writer, int shift, AnnotationMirror annotation, List<Property> properties) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * An immutable set of the values of all properties.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static final class ").append(STATE_CLASS).append(isSerializable(annotation) ? " implements java.io.Serializable" : "").append(" {\n");
+        if(isSerializable(annotation)) {
+            writer.append(indent(shift)).append("private static final long serialVersionUID = 1L;\n");
+        }
+        for (Property property : properties) {
+            writer.append(indent(shift)).append("private final ").append(property.getType().toString()).append(" ").append(toSafeName(property.getName())).append(";\n");
+        }
+        writer.append("\n");
+
+        writer.append(indent(shift)).append(STATE_CLASS).append("(");
+        boolean isFirst = true;
+        for (Property property : properties) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(property.getType().toString()).append(" ").append(toSafeName(property.getName()));
+        }
+        writer.append(") {\n");
+        shift++;
+        for (Property property : properties) {
+            writer.append(indent(shift)).append("this.").append(toSafeName(property.getName())).append(" = ").append(toSafeName(property.getName())).append(";\n");
+        }
+        writer.append(indent(--shift)).append("}\n");
+
+        for (Property property : properties) {
+            writer.append("\n")
+                  .append(indent(shift++)).append("public ").append(property.getType().toString()).append(isBoolean(property.getType(), typeUtils) ? " is" : " get").append(capitalize(property.getName())).append("() {\n")
+                  .append(indent(shift)).append("return ").append(retain(property, "this.")).append(";\n")
+                  .append(indent(--shift)).append("}\n");
+        }
+        writer.append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate the initialization of the state in a constructor.
+     * The properties which are not initialized by the constructor have the default values of their types.
+     */
+    protected int generateStateInitializer(Writer writer, int shift, ClassDefinition definition, Collection<Property> initialized) throws IOException {
+        writer.append(indent(shift)).append("this.").append(STATE).append(" = new java.util.concurrent.atomic.AtomicReference<").append(STATE_CLASS).append(">(new ").append(STATE_CLASS).append("(");
+        boolean isFirst = true;
+        for (Property property : getStateProperties(definition)) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(initialized.contains(property) ? retain(property) : defaultValueOf(property.getType()));
+        }
+        writer.append("));\n");
+        return shift;
+    }
+
+    /**
+     * Generate the body of a setter which replaces the current State with a modified copy.
+     */
+    protected int generateCopyOnWriteSetterBody(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, Attribute attribute, ClassDefinition definition) throws IOException {
+        String fieldName = toSafeName(attribute.getName());
+        writer.append(indent(shift)).append(attribute.getType().toString()).append(" newValue = ").append(retain(attribute)).append(";\n")
+              .append(indent(shift)).append(STATE_CLASS).append(" current;\n")
+              .append(indent(shift++)).append("do {\n")
+              .append(indent(shift)).append("current = this.").append(STATE).append(".get();\n");
+        writer.append(indent(--shift)).append("} while (!this.").append(STATE).append(".compareAndSet(current, new ").append(STATE_CLASS).append("(");
+        boolean isFirst = true;
+        for (Property property : getStateProperties(definition)) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            String name = toSafeName(property.getName());
+            writer.append(name.equals(fieldName) ? "newValue" : "current." + name);
+        }
+        writer.append(")));\n");
+        shift = generateJournalRecord(writer, shift, annotation, definition, attribute, "newValue");
+        shift = generateModified(writer, shift, element, annotation, definition, attribute, changedExpression(attribute, "current." + fieldName, "newValue"), "current." + fieldName, "newValue");
+        return shift;
+    }
+
+    protected int generateSnapshot(Writer writer, int shift) throws IOException {
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @return the values of all properties at one moment.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public ").append(STATE_CLASS).append(" snapshot() {\n")
+              .append(indent(shift)).append("return this.").append(STATE).append(".get();\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate the sequence of the sequence lock, the VarHandle for it and the nested class State for snapshot().
+     * The sequence is transient, so a deserialized object never starts in the middle of a write.
+     */
+    protected int generateSequenceField(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+        writer.append("\n")
+              .append(indent(shift)).append("private transient volatile long ").append(SEQUENCE).append(";\n")
+              .append(indent(shift)).append("private static final java.lang.invoke.VarHandle ").append(toConstantName(SEQUENCE)).append("_HANDLE;\n\n");
+
+        String className = resolveImplementationClassName(targetInterface.getAnnotation(GenerateClass.class), annotation, definition);
+        writer.append(indent(shift++)).append("static {\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append(toConstantName(SEQUENCE)).append("_HANDLE = java.lang.invoke.MethodHandles.lookup().findVarHandle(").append(className).append(".class, \"").append(SEQUENCE).append("\", long.class);\n")
+              .append(indent(--shift)).append("} catch (ReflectiveOperationException ex) {\n")
+              .append(indent(++shift)).append("throw new ExceptionInInitializerError(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+        return generateStateClass(writer, shift, annotation, getStateProperties(definition));
+    }
+
+    /**
+     * Generate the method which starts a write by making the sequence odd.
+     * Writers exclude each other by compare-and-set on the sequence, so readers never write to the shared memory.
+     */
+    protected int generateBeginSequenceWrite(Writer writer, int shift) throws IOException {
+        writer.append(indent(shift++)).append("private long beginSequenceWrite() {\n")
+              .append(indent(shift)).append("long current;\n")
+              .append(indent(shift++)).append("do {\n")
+              .append(indent(shift)).append("current = this.").append(SEQUENCE).append(";\n")
+              .append(indent(--shift)).append("} while ((current & 1L) != 0L || !").append(toConstantName(SEQUENCE)).append("_HANDLE.compareAndSet(this, current, current + 1L));\n")
+              .append(indent(shift)).append("java.lang.invoke.VarHandle.storeStoreFence();\n")
+              .append(indent(shift)).append("return current + 1L;\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate local variables having same names with the fields, and a loop which reads the values of the fields into them
+     * until no write overlaps the reads.
+     */
+    protected int generateSequenceRead(Writer writer, int shift, Collection<? extends Attribute> attributes) throws IOException {
+        writer.append(indent(shift)).append("long ").append(SEQUENCE).append(";\n");
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(toSafeName(attribute.getName())).append(";\n");
+        }
+        writer.append(indent(shift++)).append("do {\n")
+              .append(indent(shift)).append(SEQUENCE).append(" = this.").append(SEQUENCE).append(";\n");
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift)).append(toSafeName(attribute.getName())).append(" = ").append(valueExpression(attribute, "this.")).append(";\n");
+        }
+        writer.append(indent(shift)).append("java.lang.invoke.VarHandle.acquireFence();\n")
+              .append(indent(--shift)).append("} while ((").append(SEQUENCE).append(" & 1L) != 0L || ").append(SEQUENCE).append(" != this.").append(SEQUENCE).append(");\n");
+        return shift;
+    }
+
+    protected int generateSequenceSnapshot(Writer writer, int shift, ClassDefinition definition) throws IOException {
+        List<Property> properties = getStateProperties(definition);
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @return the values of all properties at one moment.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public ").append(STATE_CLASS).append(" snapshot() {\n");
+        shift = generateSequenceRead(writer, shift, properties);
+        writer.append(indent(shift)).append("return new ").append(STATE_CLASS).append("(");
+        boolean isFirst = true;
+        for (Property property : properties) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(toSafeName(property.getName()));
+        }
+        writer.append(");\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    protected int generateLockField(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        switch(getConcurrencyType(annotation)) {
+            case STAMPED_LOCK:
+                writer.append(indent(shift)).append("protected final java.util.concurrent.locks.StampedLock ").append(INSTANCE_LOCK).append(" = new java.util.concurrent.locks.StampedLock();\n");
+                break;
+            default:
+                writer.append(indent(shift)).append("protected final java.util.concurrent.locks.ReadWriteLock ").append(INSTANCE_LOCK).append(" = new java.util.concurrent.locks.ReentrantReadWriteLock();\n");
+        }
+        return shift;
+    }
+
+    protected final String getLockTypeName(AnnotationMirror annotation) {
+        return getConcurrencyType(annotation) == ConcurrencyType.STAMPED_LOCK
+                ? "java.util.concurrent.locks.StampedLock"
+                : "java.util.concurrent.locks.ReadWriteLock";
+    }
+
+    protected final String getLockImplementationName(AnnotationMirror annotation) {
+        return getConcurrencyType(annotation) == ConcurrencyType.STAMPED_LOCK
+                ? "java.util.concurrent.locks.StampedLock"
+                : "java.util.concurrent.locks.ReentrantReadWriteLock";
+    }
+
+    /**
+     * Generate the field for the PropertyChangeListenerRegistry which is created lazily,
+     * and a static VarHandle for installing it by compare-and-set.
+     */
+    protected int generateLazyInfrastructureFields(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+        if(!isPropertyChangeEventAware(targetInterface)) return shift;
+
+        String supportClass = elementUtils.getTypeElement(PropertyChangeListenerRegistry.class.getName()).asType().toString();
+        writer.append("\n");
+        writer.append(indent(shift)).append("protected volatile ").append(supportClass).append(" ").append(PROPERTY_SUPPORT).append(";\n");
+
+        writer.append("\n");
+        writer.append(indent(shift)).append("private static final java.lang.invoke.VarHandle ").append(toConstantName(PROPERTY_SUPPORT)).append("_HANDLE;\n");
+
+        GenerateClass generateAnnotation = targetInterface.getAnnotation(GenerateClass.class);
+        String className = resolveImplementationClassName(generateAnnotation, annotation, definition);
+        writer.append("\n");
+        writer.append(indent(shift++)).append("static {\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append(toConstantName(PROPERTY_SUPPORT)).append("_HANDLE = java.lang.invoke.MethodHandles.lookup().findVarHandle(").append(className).append(".class, \"").append(PROPERTY_SUPPORT).append("\", ").append(supportClass).append(".class);\n");
+        writer.append(indent(--shift)).append("} catch (ReflectiveOperationException ex) {\n")
+              .append(indent(++shift)).append("throw new ExceptionInInitializerError(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate the accessor method which creates the PropertyChangeListenerRegistry at the first registration of a listener.
+     * A new registry is installed by compare-and-set, so all threads see the same instance even if they race on the first use.
+     * The instanceLock is always created eagerly: a lock created at the first locked access would not save anything for
+     * an instance which is used at all, and a lock created only on contention could not exclude the thread which is
+     * already inside the critical section.
+     */
+    protected int generateLazyInfrastructureAccessors(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className, TypeElement targetInterface) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+        if(isPropertyChangeEventAware(targetInterface)) {
+            String supportClass = elementUtils.getTypeElement(PropertyChangeListenerRegistry.class.getName()).asType().toString();
+            shift = generateLazyAccessor(writer, shift, supportClass, PROPERTY_SUPPORT, newPropertySupport(annotation));
+        }
+        return shift;
+    }
+
+    private int generateLazyAccessor(Writer writer, int shift, String typeName, String fieldName, String creation) throws IOException {
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @return the ").append(fieldName).append(", which is created at the first call.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("protected final ").append(typeName).append(" ").append(fieldName).append("() {\n")
+              .append(indent(shift)).append(typeName).append(" value = this.").append(fieldName).append(";\n")
+              .append(indent(shift++)).append("if (value == null) {\n")
+              .append(indent(shift)).append("value = ").append(creation).append(";\n")
+              .append(indent(shift++)).append("if (!").append(toConstantName(fieldName)).append("_HANDLE.compareAndSet(this, null, value)) {\n")
+              .append(indent(shift)).append("value = this.").append(fieldName).append(";\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return value;\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    protected int generateLockStripesField(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        writer.append(indent(shift)).append("protected final java.util.concurrent.locks.ReadWriteLock[] ").append(INSTANCE_LOCKS).append(" = {");
+        int stripes = getLockStripes(annotation);
+        for(int i = 0; i < stripes; i++) {
+            if(i > 0) writer.append(",");
+            writer.append("\n").append(indent(shift + 1)).append("new java.util.concurrent.locks.ReentrantReadWriteLock()");
+        }
+        writer.append("\n").append(indent(shift)).append("};\n");
+        return shift;
+    }
+
+    /**
+     * Generate the code for acquiring the read or write locks of all stripes in the order of their indexes, and opening a try-block.
+     * @param lockName "readLock" or "writeLock"
+     * @return the indent-count inside the try-block.
+     */
+    protected int generateLockAllStripes(Writer writer, int shift, String lockName) throws IOException {
+        writer.append(indent(shift++)).append("for (java.util.concurrent.locks.ReadWriteLock lock : ").append(INSTANCE_LOCKS).append(") {\n")
+              .append(indent(shift)).append("lock.").append(lockName).append("().lock();\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift++)).append("try {\n");
+        return shift;
+    }
+
+    /**
+     * Generate the finally-block which releases the locks acquired by {@link #generateLockAllStripes(Writer, int, String)} in the reverse order.
+     * @return the indent-count outside of the try-block.
+     */
+    protected int generateUnlockAllStripes(Writer writer, int shift, String lockName) throws IOException {
+        writer.append(indent(--shift)).append("} finally {\n")
+              .append(indent(++shift)).append("for (int i = ").append(INSTANCE_LOCKS).append(".length - 1; i >= 0; i--) {\n")
+              .append(indent(++shift)).append(INSTANCE_LOCKS).append("[i].").append(lockName).append("().unlock();\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate the code for acquiring the read lock of the instanceLock and opening a try-block.
+     * If the lock is striped, the read locks of all stripes are acquired.
+     * @return the indent-count inside the try-block.
+     */
+    protected int generateReadLock(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        if(isStripedLock(annotation)) return generateLockAllStripes(writer, shift, "readLock");
+        return generateReadLock(writer, shift, annotation, INSTANCE_LOCK);
+    }
+
+    /**
+     * @param lock an expression for referring the lock.
+     */
+    protected int generateReadLock(Writer writer, int shift, AnnotationMirror annotation, String lock) throws IOException {
+        switch(getConcurrencyType(annotation)) {
+            case STAMPED_LOCK:
+                writer.append(indent(shift)).append("long stamp = ").append(lock).append(".readLock();\n");
+                break;
+            default:
+                writer.append(indent(shift)).append(lock).append(".readLock().lock();\n");
+        }
+        writer.append(indent(shift++)).append("try {\n");
+        return shift;
+    }
+
+    /**
+     * Generate the finally-block which releases the lock acquired by {@link #generateReadLock(Writer, int, AnnotationMirror)}.
+     * @return the indent-count outside of the try-block.
+     */
+    protected int generateReadUnlock(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        if(isStripedLock(annotation)) return generateUnlockAllStripes(writer, shift, "readLock");
+        return generateReadUnlock(writer, shift, annotation, INSTANCE_LOCK);
+    }
+
+    protected int generateReadUnlock(Writer writer, int shift, AnnotationMirror annotation, String lock) throws IOException {
+        writer.append(indent(--shift)).append("} finally {\n");
+        switch(getConcurrencyType(annotation)) {
+            case STAMPED_LOCK:
+                writer.append(indent(++shift)).append(lock).append(".unlockRead(stamp);\n");
+                break;
+            default:
+                writer.append(indent(++shift)).append(lock).append(".readLock().unlock();\n");
+        }
+        writer.append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate the code for acquiring the write lock of the instanceLock and opening a try-block.
+     * If the lock is striped, the write locks of all stripes are acquired.
+     * @return the indent-count inside the try-block.
+     */
+    protected int generateWriteLock(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        if(isStripedLock(annotation)) return generateLockAllStripes(writer, shift, "writeLock");
+        return generateWriteLock(writer, shift, annotation, INSTANCE_LOCK);
+    }
+
+    /**
+     * @param lock an expression for referring the lock.
+     */
+    protected int generateWriteLock(Writer writer, int shift, AnnotationMirror annotation, String lock) throws IOException {
+        switch(getConcurrencyType(annotation)) {
+            case STAMPED_LOCK:
+                writer.append(indent(shift)).append("long stamp = ").append(lock).append(".writeLock();\n");
+                break;
+            case SEQLOCK:
+                writer.append(indent(shift)).append("long ").append(SEQUENCE).append(" = beginSequenceWrite();\n");
+                break;
+            default:
+                writer.append(indent(shift)).append(lock).append(".writeLock().lock();\n");
+        }
+        writer.append(indent(shift++)).append("try {\n");
+        return shift;
+    }
+
+    /**
+     * Generate the finally-block which releases the lock acquired by {@link #generateWriteLock(Writer, int, AnnotationMirror)}.
+     * @return the indent-count outside of the try-block.
+     */
+    protected int generateWriteUnlock(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        if(isStripedLock(annotation)) return generateUnlockAllStripes(writer, shift, "writeLock");
+        return generateWriteUnlock(writer, shift, annotation, INSTANCE_LOCK);
+    }
+
+    protected int generateWriteUnlock(Writer writer, int shift, AnnotationMirror annotation, String lock) throws IOException {
+        writer.append(indent(--shift)).append("} finally {\n");
+        switch(getConcurrencyType(annotation)) {
+            case STAMPED_LOCK:
+                writer.append(indent(++shift)).append(lock).append(".unlockWrite(stamp);\n");
+                break;
+            case SEQLOCK:
+                writer.append(indent(++shift)).append("this.").append(SEQUENCE).append(" = ").append(SEQUENCE).append(" + 1L;\n");
+                break;
+            default:
+                writer.append(indent(++shift)).append(lock).append(".writeLock().unlock();\n");
+        }
+        writer.append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate code which copies the values of attributes into local variables having same names with the fields.
+     * The values are read under an optimistic stamp of a StampedLock, and are read again under the read lock
+     * only when a writer acquired the lock meanwhile.
+     * Code following this block must refer to the local variables, not to the fields.
+     *
+     * @param writer source-writer
+     * @param shift current count of indents.
+     * @param attributes attributes to be copied.
+     * @return last indent-count
+     * @throws IOException occurs when this method could not write to a writer.
+     */
+    protected int generateOptimisticRead(Writer writer, int shift, AnnotationMirror annotation, Collection<? extends Attribute> attributes) throws IOException {
+        String lock = INSTANCE_LOCK;
+        writer.append(indent(shift)).append("long stamp = ").append(lock).append(".tryOptimisticRead();\n");
+        shift = generateLocalCopies(writer, shift, attributes);
+        writer.append(indent(shift++)).append("if (!").append(lock).append(".validate(stamp)) {\n")
+              .append(indent(shift)).append("stamp = ").append(lock).append(".readLock();\n")
+              .append(indent(shift++)).append("try {\n");
+        for (Attribute attribute : attributes) {
+            String fieldName = toSafeName(attribute.getName());
+            writer.append(indent(shift)).append(fieldName).append(" = ").append(valueExpression(attribute, "this.")).append(";\n");
+        }
+        writer.append(indent(--shift)).append("} finally {\n")
+              .append(indent(++shift)).append(lock).append(".unlockRead(stamp);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate local variables having same names with the fields, and initialize them by the values of the fields.
+     */
+    protected int generateLocalCopies(Writer writer, int shift, Collection<? extends Attribute> attributes) throws IOException {
+        for (Attribute attribute : attributes) {
+            String fieldName = toSafeName(attribute.getName());
+            writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(fieldName).append(" = ").append(valueExpression(attribute, "this.")).append(";\n");
+        }
+        return shift;
+    }
+
+    /**
+     * Generate the beginning of a block in which the values of attributes are read consistently
+     * by the concurrency strategy of the class.
+     * If {@link #isReadingLocalCopies(AnnotationMirror)} is true, the code in the block must refer to the local copies of the values.
+     *
+     * @return the indent-count inside the block.
+     */
+    protected int generateBeginRead(Writer writer, int shift, AnnotationMirror annotation, Collection<? extends Attribute> attributes) throws IOException {
+        if(!isThreadSafe(annotation)) return shift;
+        switch(getConcurrencyType(annotation)) {
+            case STAMPED_LOCK:
+                return attributes.isEmpty() ? shift : generateOptimisticRead(writer, shift, annotation, attributes);
+            case VOLATILE:
+                return generateLocalCopies(writer, shift, attributes);
+            case COPY_ON_WRITE:
+                writer.append(indent(shift)).append("final ").append(STATE_CLASS).append(" current = this.").append(STATE).append(".get();\n");
+                return shift;
+            case SEQLOCK:
+                return generateSequenceRead(writer, shift, attributes);
+            default:
+                return generateReadLock(writer, shift, annotation);
+        }
+    }
+
+    /**
+     * Generate the end of a block which is started by {@link #generateBeginRead(Writer, int, AnnotationMirror, Collection)}.
+     *
+     * @return the indent-count outside of the block.
+     */
+    protected int generateEndRead(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        if(isThreadSafe(annotation) && !isReadingLocalCopies(annotation)) {
+            return generateReadUnlock(writer, shift, annotation);
+        }
+        return shift;
+    }
+
+    /**
+     * @return all attributes which take part in equals(), hashCode() and toString().
+     * all inner fields are included even if they are 'ignore=true'.
+     */
+    protected final List<Attribute> getValueAttributes(ClassDefinition definition) {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.addAll(definition.getInnerFields(typeUtils));
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored()) {
+                attributes.add(property);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Generate static VarHandles for the fields of properties which have atomic operations, and the static initializer for them.
+     */
+    protected int generateVarHandleFields(Writer writer, int shift, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Property> targets = new ArrayList<Property>();
+        for (Property property : definition.getProperties()) {
+            if(canGenerateAtomicOperations(property)) {
+                targets.add(property);
+            }
+        }
+        if(targets.isEmpty()) return shift;
+
+        GenerateClass generateAnnotation = targetInterface.getAnnotation(GenerateClass.class);
+        String className = resolveImplementationClassName(generateAnnotation, findAnnotation(targetInterface, GenerateClass.class, elementUtils, typeUtils), definition);
+        writer.append("\n");
+        for (Property property : targets) {
+            writer.append(indent(shift)).append("private static final java.lang.invoke.VarHandle ").append(varHandleNameOf(property)).append(";\n");
+        }
+        writer.append("\n");
+        writer.append(indent(shift++)).append("static {\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append("java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.lookup();\n");
+        for (Property property : targets) {
+            writer.append(indent(shift)).append(varHandleNameOf(property)).append(" = lookup.findVarHandle(").append(className).append(".class, \"").append(toSafeName(property.getName())).append("\", ").append(typeUtils.erasure(property.getType()).toString()).append(".class);\n");
+        }
+        writer.append(indent(--shift)).append("} catch (ReflectiveOperationException ex) {\n")
+              .append(indent(++shift)).append("throw new ExceptionInInitializerError(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    protected final String varHandleNameOf(Attribute attribute) {
+        return toConstantName(attribute.getName()) + "_HANDLE";
+    }
+
+    protected final RetainType getRetainTypeOf(Property property) {
+        return RetainType.valueOf(property.getRetainType());
+    }
+
+    protected void generatePropertySupportField(Elements elementUtils, Writer writer, int shift) throws IOException {
+        TypeMirror supportClass = elementUtils.getTypeElement(PropertyChangeListenerRegistry.class.getName()).asType();
+        writer.append(indent(shift)).append("protected final ").append(supportClass.toString()).append(" propertySupport;\n");
+    }
+
+    /**
+     * Generate the names of the properties, shared by all PropertyChangeListenerRegistries of the class.
+     * A property is identified by the index of its name in the registry.
+     */
+    protected int generatePropertyNamesField(Writer writer, int shift, ClassDefinition definition) throws IOException {
+        writer.append(indent(shift)).append("private static final String[] ").append(PROPERTY_NAMES).append(" = {");
+        boolean isFirst = true;
+        for (Attribute attribute : getValueAttributes(definition)) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append("\"").append(attribute.getName()).append("\"");
+        }
+        writer.append("};\n");
+        return shift;
+    }
+
+    protected int generatePropertyAccessors(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        
+        for (Field field : definition.getInnerFields(typeUtils)) {
+            if(!field.isIgnored()) {
+                Modifier methodModifier = Modifier.valueOf(field.getMethodModifier());
+                shift = generateGetter(writer, shift, targetInterface, annotation, field, definition, methodModifier);
+                if(!field.isReadOnly()) {
+                    shift = generateSetter(writer, shift, targetInterface, annotation, field, definition, methodModifier);
+                }
+            }
+        }
+        
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored()) {
+                if(property.isReadable()) {
+                    shift = generateGetter(writer, shift, targetInterface, annotation, property, definition, Modifier.PUBLIC);
+                }
+
+                if(property.isWritable()) {
+                    shift = generateSetter(writer, shift, targetInterface, annotation, property, definition, Modifier.PUBLIC);
+                }
+
+                if(isGeneratingAtomicOperations(annotation) && !isCopyOnWrite(annotation, definition) && canGenerateAtomicOperations(property)) {
+                    shift = generateAtomicOperations(writer, shift, targetInterface, annotation, definition, property);
+                }
+
+                if(property.isCounter()) {
+                    shift = generateCounterOperations(writer, shift, annotation, definition, property);
+                }
+            }
+        }
+
+        if(isCopyOnWrite(annotation, definition)) {
+            shift = generateSnapshot(writer, shift);
+        }
+
+        if(isSequenceLock(annotation, definition)) {
+            shift = generateSequenceSnapshot(writer, shift, definition);
+        }
+
+        if(isTrackingDirty(annotation)) {
+            shift = generateDirtyAccessors(writer, shift);
+        }
+
+        if(isGeneratingDelta(annotation) && !getDeltaAttributes(definition).isEmpty()) {
+            shift = generateWriteDelta(writer, shift, annotation, definition);
+            shift = generateApplyDelta(writer, shift, targetInterface, annotation, definition);
+        }
+
+        if(isJournaling(annotation)) {
+            shift = generateJournalAccessors(writer, shift, targetInterface, annotation, definition);
+        }
+
+        if(isGeneratingBatchUpdate(annotation) && !getMutableProperties(definition).isEmpty()) {
+            shift = generateBatchUpdate(writer, shift, targetInterface, annotation, definition);
+        }
+
+        if(isFreezable(annotation)) {
+            shift = generateFreeze(writer, shift, annotation, definition);
+        }
+        return shift;
+    }
+
+    /**
+     * @return the properties which can be modified through the Mutator of update().
+     * counters are excluded because they have their own operations.
+     */
+    protected int generateDirtyAccessors(Writer writer, int shift) throws IOException {
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @return the names of the properties modified since the creation or the last clearDirty().\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public java.util.Set<String> dirtyProperties() {\n")
+              .append(indent(shift)).append("return this.").append(DIRTY).append(".names(").append(PROPERTY_NAMES).append(");\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("public boolean isDirty(String propertyName) {\n")
+              .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n")
+              .append(indent(shift)).append("return this.").append(DIRTY).append(".get(").append(PROPERTY_NAMES).append(", propertyName);\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Mark all properties clean. read the values after this call, so that a concurrent modification is not lost.\n")
+              .append(indent(shift)).append(" * @return the names of the properties which were dirty.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public java.util.Set<String> clearDirty() {\n")
+              .append(indent(shift)).append("return this.").append(DIRTY).append(".clear(").append(PROPERTY_NAMES).append(");\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * @return the attributes which can be modified after construction, in the order of their indexes.
+     */
+    protected final List<Attribute> getDeltaAttributes(ClassDefinition definition) {
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (Attribute attribute : getValueAttributes(definition)) {
+            if(attribute instanceof Field ? !((Field) attribute).isReadOnly() : ((Property) attribute).isWritable() || isCounter(attribute)) {
+                attributes.add(attribute);
+            }
+        }
+        return attributes;
+    }
+
+    protected final boolean isDeltaEncodable(TypeMirror type) {
+        if(isPrimitive(type)) return true;
+        if(type.getKind() != TypeKind.DECLARED) return false;
+        Types typeUtils = processingEnv.getTypeUtils();
+        Element element = typeUtils.asElement(type);
+        if(element.getKind() == ElementKind.ENUM) return true;
+        String name = ((TypeElement) element).getQualifiedName().toString();
+        return name.equals("java.lang.String") || unboxedKind(type) != null;
+    }
+
+    /**
+     * @return the name of the method of DataOutput and DataInput for a primitive kind, such as "Int".
+     */
+    protected final String dataMethodOf(TypeKind kind) {
+        String name = kind.name().toLowerCase();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Generate the statement which writes the value to 'out'.
+     */
+    protected void generateDeltaWrite(Writer writer, int shift, Attribute attribute, String value) throws IOException {
+        TypeMirror type = attribute.getType();
+        String deltaStreams = DeltaStreams.class.getName();
+        if(isPrimitive(type)) {
+            writer.append(indent(shift)).append("out.write").append(dataMethodOf(type.getKind())).append("(").append(value).append(");\n");
+        } else if(processingEnv.getTypeUtils().asElement(type).getKind() == ElementKind.ENUM) {
+            writer.append(indent(shift)).append(deltaStreams).append(".writeEnum(out, ").append(value).append(");\n");
+        } else if(unboxedKind(type) != null) {
+            writer.append(indent(shift)).append("out.writeBoolean(").append(value).append(" != null);\n")
+                  .append(indent(shift)).append("if (").append(value).append(" != null) out.write").append(dataMethodOf(unboxedKind(type))).append("(").append(value).append(");\n");
+        } else {
+            writer.append(indent(shift)).append(deltaStreams).append(".writeString(out, ").append(value).append(");\n");
+        }
+    }
+
+    /**
+     * @return the expression which reads a value of the attribute from 'in'.
+     */
+    protected String deltaReadExpression(Attribute attribute) {
+        TypeMirror type = attribute.getType();
+        String deltaStreams = DeltaStreams.class.getName();
+        if(isPrimitive(type)) {
+            return "in.read" + dataMethodOf(type.getKind()) + "()";
+        }
+        Types typeUtils = processingEnv.getTypeUtils();
+        if(typeUtils.asElement(type).getKind() == ElementKind.ENUM) {
+            return deltaStreams + ".readEnum(in, " + typeUtils.erasure(type).toString() + ".class)";
+        }
+        TypeKind kind = unboxedKind(type);
+        if(kind != null) {
+            return "(in.readBoolean() ? " + type.toString() + ".valueOf(in.read" + dataMethodOf(kind) + "()) : null)";
+        }
+        return deltaStreams + ".readString(in)";
+    }
+
+    /**
+     * Generate writeDelta(), which writes the properties modified since a version returned by a former writeDelta().
+     * A new version is started before the values are read, so a concurrent modification is written by this call or by the next one.
+     * The versions are not consumed, so the dirty bits are not touched and a failed delta can be written again from the same version.
+     */
+    protected int generateWriteDelta(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        boolean guarded = isGuardingRead(annotation, definition);
+        String prefix = getReadPrefix(annotation, definition);
+        List<Attribute> attributes = getDeltaAttributes(definition);
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Write the properties modified since the version returned by a former call of this method, and their values.\n")
+              .append(indent(shift)).append(" * A delta since 0 contains all properties. The dirty bits are not changed, and the values applied by applyDelta() are not written.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @param since a version returned by this method, or 0.\n")
+              .append(indent(shift)).append(" * @return the version to be passed to the next call for the same receiver.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public long writeDelta(java.io.DataOutput out, long since) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if(out == null) throw new IllegalArgumentException(\"the argument 'out' should not be null.\");\n")
+              .append(indent(shift)).append("if(since < 0L) throw new IllegalArgumentException(\"the argument 'since' should not be negative.\");\n")
+              .append(indent(shift)).append("long version = this.").append(DELTA_VERSIONS).append(".advance();\n")
+              .append(indent(shift)).append("long[] changed = this.").append(DELTA_VERSIONS).append(".since(since);\n");
+        if(guarded) {
+            shift = generateBeginRead(writer, shift, annotation, attributes);
+        }
+        writer.append(indent(shift)).append(DeltaStreams.class.getName()).append(".writeBitmap(out, changed, ").append(PROPERTY_NAMES).append(".length);\n");
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift++)).append("if (").append(DeltaStreams.class.getName()).append(".isSet(changed, ").append(String.valueOf(propertyIndexOf(definition, attribute))).append(")) {\n");
+            generateDeltaWrite(writer, shift, attribute, valueExpression(attribute, prefix));
+            writer.append(indent(--shift)).append("}\n");
+        }
+        if(guarded) {
+            shift = generateEndRead(writer, shift, annotation);
+        }
+        writer.append(indent(shift)).append("return version;\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate applyDelta(), which reads a delta and applies all of its values at once, like update().
+     * The values are read before the lock is acquired.
+     */
+    protected int generateApplyDelta(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        List<Attribute> attributes = getDeltaAttributes(definition);
+        boolean copyOnWrite = isCopyOnWrite(annotation, definition);
+        boolean locking = isLockingWrite(annotation);
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Apply a delta written by writeDelta() of another instance of this class.\n")
+              .append(indent(shift)).append(" * The applied values are not written in the deltas of this instance.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void applyDelta(java.io.DataInput in) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if(in == null) throw new IllegalArgumentException(\"the argument 'in' should not be null.\");\n")
+              .append(indent(shift)).append("long[] present = ").append(DeltaStreams.class.getName()).append(".readBitmap(in, ").append(PROPERTY_NAMES).append(".length);\n");
+        for (Attribute attribute : attributes) {
+            String name = toSafeName(attribute.getName());
+            writer.append(indent(shift)).append("boolean ").append(name).append("Present = ").append(DeltaStreams.class.getName()).append(".isSet(present, ").append(String.valueOf(propertyIndexOf(definition, attribute))).append(");\n")
+                  .append(indent(shift)).append(attribute.getType().toString()).append(" ").append(name).append("Value = ").append(name).append("Present ? ").append(deltaReadExpression(attribute)).append(" : ").append(defaultValueOf(attribute.getType())).append(";\n");
+        }
+
+        if(copyOnWrite) {
+            writer.append(indent(shift)).append(STATE_CLASS).append(" current;\n")
+                  .append(indent(shift)).append(STATE_CLASS).append(" next;\n")
+                  .append(indent(shift++)).append("do {\n");
+            shift = generateFrozenCheck(writer, shift, annotation, definition);
+            writer.append(indent(shift)).append("current = this.").append(STATE).append(".get();\n")
+                  .append(indent(shift)).append("next = new ").append(STATE_CLASS).append("(");
+            boolean isFirst = true;
+            for (Property property : getStateProperties(definition)) {
+                if(!isFirst) writer.append(", ");
+                isFirst = false;
+                String name = toSafeName(property.getName());
+                writer.append(attributes.contains(property) ? name + "Present ? " + name + "Value : current." + name : "current." + name);
+            }
+            writer.append(");\n")
+                  .append(indent(--shift)).append("} while (!this.").append(STATE).append(".compareAndSet(current, next));\n");
+            for (Attribute attribute : attributes) {
+                String name = toSafeName(attribute.getName());
+                shift = generateJournalRecord(writer, shift, annotation, definition, attribute, name + "Present", "next." + name);
+            }
+            for (Attribute attribute : attributes) {
+                String name = toSafeName(attribute.getName());
+                shift = generateModified(writer, shift, element, annotation, definition, attribute, false, name + "Present && " + changedExpression(attribute, "current." + name, "next." + name), "current." + name, "next." + name);
+            }
+        } else {
+            for (Attribute attribute : attributes) {
+                String name = toSafeName(attribute.getName());
+                writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(name).append("Old = ").append(defaultValueOf(attribute.getType())).append(";\n");
+            }
+            if(locking) {
+                shift = generateWriteLock(writer, shift, annotation);
+            }
+            shift = generateFrozenCheck(writer, shift, annotation, definition);
+            for (Attribute attribute : attributes) {
+                String name = toSafeName(attribute.getName());
+                writer.append(indent(shift++)).append("if (").append(name).append("Present) {\n")
+                      .append(indent(shift)).append(name).append("Old = ").append(valueExpression(attribute, "this.")).append(";\n");
+                if(isCounter(attribute)) {
+                    writer.append(indent(shift)).append("this.").append(name).append(".reset();\n")
+                          .append(indent(shift)).append("this.").append(name).append(".add(").append(name).append("Value);\n");
+                } else {
+                    writer.append(indent(shift)).append("this.").append(name).append(" = ").append(name).append("Value;\n");
+                }
+                shift = generateJournalRecord(writer, shift, annotation, definition, attribute, valueExpression(attribute, "this."));
+                writer.append(indent(--shift)).append("}\n");
+            }
+            if(locking) {
+                shift = generateWriteUnlock(writer, shift, annotation);
+            }
+            for (Attribute attribute : attributes) {
+                String name = toSafeName(attribute.getName());
+                shift = generateModified(writer, shift, element, annotation, definition, attribute, false, name + "Present && " + changedExpression(attribute, name + "Old", name + "Value"), name + "Old", name + "Value");
+            }
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate the static journal of the class, the id of the instance in the journal and the VarHandle for assigning the id.
+     * The id is transient, so a deserialized object is recorded as a new instance.
+     */
+    protected int generateJournalFields(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        String className = resolveImplementationClassName(targetInterface.getAnnotation(GenerateClass.class), annotation, definition);
+        writer.append("\n")
+              .append(indent(shift)).append("private static volatile ").append(ChangeJournal.class.getName()).append(" ").append(toConstantName(JOURNAL)).append(";\n")
+              .append(indent(shift)).append("private transient volatile long ").append(JOURNAL_ID).append(";\n")
+              .append(indent(shift)).append("private static final java.lang.invoke.VarHandle ").append(toConstantName(JOURNAL_ID)).append("_HANDLE;\n\n");
+
+        writer.append(indent(shift++)).append("static {\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append(toConstantName(JOURNAL_ID)).append("_HANDLE = java.lang.invoke.MethodHandles.lookup().findVarHandle(").append(className).append(".class, \"").append(JOURNAL_ID).append("\", long.class);\n")
+              .append(indent(--shift)).append("} catch (ReflectiveOperationException ex) {\n")
+              .append(indent(++shift)).append("throw new ExceptionInInitializerError(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
 
-        boolean isSerializable = isSerializable(annotation);
-        if(isSerializable) {
-            writer.append(getBindString(implemented)).append("java.io.Serializable");
-            implemented = true;
-        }
+    /**
+     * Generate the code which appends the value of the attribute to the journal of the class, if it is set and the condition is true.
+     */
+    protected int generateJournalRecord(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, Attribute attribute, String condition, String value) throws IOException {
+        if(!isJournaling(annotation)) return shift;
+        writer.append(indent(shift++)).append("if (").append(condition).append(") {\n");
+        shift = generateJournalRecord(writer, shift, annotation, definition, attribute, value);
+        writer.append(indent(--shift)).append("}\n");
+        return shift;
+    }
 
-        if(isCloneable(annotation)) {
-            writer.append(getBindString(implemented)).append("java.lang.Cloneable");
-            implemented = true;
+    /**
+     * Generate the code which appends the value of the attribute to the journal of the class, if it is set.
+     */
+    protected int generateJournalRecord(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, Attribute attribute, String value) throws IOException {
+        if(!isJournaling(annotation)) return shift;
+        String journalClass = ChangeJournal.class.getName();
+        writer.append(indent(shift)).append(journalClass).append(" journal = ").append(toConstantName(JOURNAL)).append(";\n")
+              .append(indent(shift++)).append("if (journal != null) {\n")
+              .append(indent(shift)).append(journalClass).append(".Record record = journal.begin(").append(JOURNAL_ID).append("(journal), ").append(String.valueOf(propertyIndexOf(definition, attribute))).append(");\n");
+        TypeMirror type = attribute.getType();
+        if(isPrimitive(type)) {
+            writer.append(indent(shift)).append("record.write").append(dataMethodOf(type.getKind())).append("(").append(value).append(");\n");
+        } else if(processingEnv.getTypeUtils().asElement(type).getKind() == ElementKind.ENUM) {
+            writer.append(indent(shift)).append("record.writeEnum(").append(value).append(");\n");
+        } else if(unboxedKind(type) != null) {
+            writer.append(indent(shift)).append("record.writeBoolean(").append(value).append(" != null);\n")
+                  .append(indent(shift)).append("if (").append(value).append(" != null) record.write").append(dataMethodOf(unboxedKind(type))).append("(").append(value).append(");\n");
+        } else {
+            writer.append(indent(shift)).append("record.writeString(").append(value).append(");\n");
         }
+        writer.append(indent(shift)).append("journal.append(record);\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
 
-        writer.append(" {\n");
+    /**
+     * Generate the static accessors of the journal, the method which assigns the id of an instance at its first record,
+     * and replayJournal().
+     */
+    protected int generateJournalAccessors(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        String className = resolveImplementationClassName(element.getAnnotation(GenerateClass.class), annotation, definition);
+        String journalClass = ChangeJournal.class.getName();
+        String journalField = toConstantName(JOURNAL);
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Set the journal which records the modifications of all instances of this class, or null for stopping the recording.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static void setChangeJournal(").append(journalClass).append(" journal) {\n")
+              .append(indent(shift)).append(journalField).append(" = journal;\n")
+              .append(indent(--shift)).append("}\n\n");
 
-        if(isSerializable) {
-            AnnotationValue serialVersionValue = getValueOfAnnotation(annotationValueMap, SERIAL_VERSION);
-            Long version = (Long)serialVersionValue.getValue();
-            writer.append(indent(1)).append("private static final long serialVersionUID = ").append(version.toString()).append("L;\n");
+        writer.append(indent(shift++)).append("public static ").append(journalClass).append(" getChangeJournal() {\n")
+              .append(indent(shift)).append("return ").append(journalField).append(";\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private long ").append(JOURNAL_ID).append("(").append(journalClass).append(" journal) {\n")
+              .append(indent(shift)).append("long id = this.").append(JOURNAL_ID).append(";\n")
+              .append(indent(shift++)).append("if (id == 0L) {\n")
+              .append(indent(shift)).append("id = journal.nextInstanceId();\n")
+              .append(indent(shift++)).append("if (!").append(toConstantName(JOURNAL_ID)).append("_HANDLE.compareAndSet(this, 0L, id)) {\n")
+              .append(indent(shift)).append("id = this.").append(JOURNAL_ID).append(";\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return id;\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Rebuild the instances recorded in a journal file by applying the records to the instances created by the factory.\n")
+              .append(indent(shift)).append(" * The instances keep their ids, so their following modifications are recorded as the modifications of the same instances.\n")
+              .append(indent(shift)).append(" * It must be called before setChangeJournal(), because the replayed values would be recorded again.\n")
+              .append(indent(shift)).append(" * @return the instances by their ids, in the order of their first records.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static java.util.Map<Long, ").append(className).append("> replayJournal(java.io.File file, final java.util.function.Supplier<? extends ").append(className).append("> factory) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if(file == null) throw new IllegalArgumentException(\"the argument 'file' should not be null.\");\n")
+              .append(indent(shift)).append("if(factory == null) throw new IllegalArgumentException(\"the argument 'factory' should not be null.\");\n")
+              .append(indent(shift)).append("if(").append(journalField).append(" != null) throw new IllegalStateException(\"the journal must be replayed before setChangeJournal().\");\n")
+              .append(indent(shift)).append("final java.util.Map<Long, ").append(className).append("> instances = new java.util.LinkedHashMap<Long, ").append(className).append(">();\n")
+              .append(indent(shift++)).append(journalClass).append(".replay(file, new ").append(journalClass).append(".Handler() {\n")
+              .append(indent(shift)).append("@Override\n")
+              .append(indent(shift++)).append("public void record(long instanceId, int propertyIndex, long timestamp, java.io.DataInput in) throws java.io.IOException {\n")
+              .append(indent(shift)).append(className).append(" instance = instances.get(instanceId);\n")
+              .append(indent(shift++)).append("if (instance == null) {\n")
+              .append(indent(shift)).append("instance = factory.get();\n")
+              .append(indent(shift)).append("instance.").append(JOURNAL_ID).append(" = instanceId;\n")
+              .append(indent(shift)).append("instances.put(instanceId, instance);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift++)).append("switch (propertyIndex) {\n");
+        for (Attribute attribute : getDeltaAttributes(definition)) {
+            String name = toSafeName(attribute.getName());
+            writer.append(indent(shift++)).append("case ").append(String.valueOf(propertyIndexOf(definition, attribute))).append(":\n");
+            if(isCounter(attribute)) {
+                writer.append(indent(shift)).append("instance.").append(name).append(".reset();\n")
+                      .append(indent(shift)).append("instance.").append(name).append(".add(").append(deltaReadExpression(attribute)).append(");\n");
+            } else {
+                writer.append(indent(shift)).append("instance.set").append(capitalize(attribute.getName())).append("(").append(deltaReadExpression(attribute)).append(");\n");
+            }
+            writer.append(indent(shift--)).append("break;\n");
         }
+        writer.append(indent(shift++)).append("default:\n")
+              .append(indent(shift--)).append("throw new java.io.IOException(\"unknown property index \" + propertyIndex + \" in the journal.\");\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("});\n")
+              .append(indent(shift)).append("return instances;\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
     }
-    
-    private String getBindString(boolean implemented) {
-        return implemented ? ", " : " implements ";
+
+    protected final List<Property> getMutableProperties(ClassDefinition definition) {
+        List<Property> properties = new ArrayList<Property>();
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored() && property.isWritable() && !property.isCounter()) {
+                properties.add(property);
+            }
+        }
+        return properties;
     }
 
-    protected int generateFields(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface, Modifier modifier) throws IOException {
-        Elements elementUtils = processingEnv.getElementUtils();
+    /**
+     * Generate the nested class Mutator and update(Consumer).
+     * update() applies all modifications made through the Mutator in one critical section,
+     * and fires at most one PropertyChangeEvent for each property after the critical section.
+     * The event has the value before update() as the old value and the last assigned value as the new value.
+     */
+    protected int generateBatchUpdate(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        if(isCopyOnWrite(annotation, definition)) {
+            shift = generateCopyOnWriteMutator(writer, shift, annotation, definition);
+            return generateCopyOnWriteUpdate(writer, shift, element, annotation, definition);
+        }
+        shift = generateMutator(writer, shift, element, annotation, definition);
+        return generateUpdate(writer, shift, element, annotation, definition);
+    }
 
-        for (Property property : definition.getProperties()) {
-            if(!property.isIgnored() && !property.isFieldDefined()) {
-                shift = generateField(property, writer, shift, modifier);
+    /**
+     * Generate the Mutator which writes the fields of the enclosing object directly.
+     * It is used only while update() is in the critical section, and it records the old and new values for the events.
+     */
+    protected int generateMutator(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        boolean detectingChange = isDetectingChange(element, annotation);
+        String outer = resolveImplementationClassName(element.getAnnotation(GenerateClass.class), annotation, definition) + ".this.";
+        List<Property> properties = getMutableProperties(definition);
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Modifies the properties in update(). it can not be used after update() returns.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public final class ").append(MUTATOR_CLASS).append(" {\n")
+              .append(indent(shift)).append("private boolean closed;\n");
+        if(detectingChange) {
+            for (Property property : properties) {
+                String name = toSafeName(property.getName());
+                String typeName = property.getType().toString();
+                writer.append(indent(shift)).append("private boolean ").append(name).append("Assigned;\n")
+                      .append(indent(shift)).append("private ").append(typeName).append(" ").append(name).append("OldValue;\n")
+                      .append(indent(shift)).append("private ").append(typeName).append(" ").append(name).append("NewValue;\n");
+            }
+        }
+        writer.append("\n")
+              .append(indent(shift)).append(MUTATOR_CLASS).append("() {\n")
+              .append(indent(shift)).append("}\n\n");
+
+        for (Property property : properties) {
+            String name = toSafeName(property.getName());
+            String typeName = property.getType().toString();
+            if(property.isReadable()) {
+                writer.append(indent(shift++)).append("public ").append(typeName).append(isBoolean(property.getType(), typeUtils) ? " is" : " get").append(capitalize(property.getName())).append("() {\n")
+                      .append(indent(shift)).append("checkOpen();\n")
+                      .append(indent(shift)).append("return ").append(retain(property, outer)).append(";\n")
+                      .append(indent(--shift)).append("}\n\n");
+            }
+            writer.append(indent(shift++)).append("public ").append(MUTATOR_CLASS).append(" set").append(capitalize(property.getName())).append("(").append(typeName).append(" ").append(name).append(") {\n")
+                  .append(indent(shift)).append("checkOpen();\n");
+            if(detectingChange) {
+                writer.append(indent(shift++)).append("if (!this.").append(name).append("Assigned) {\n")
+                      .append(indent(shift)).append("this.").append(name).append("OldValue = ").append(outer).append(name).append(";\n")
+                      .append(indent(shift)).append("this.").append(name).append("Assigned = true;\n")
+                      .append(indent(--shift)).append("}\n")
+                      .append(indent(shift)).append("this.").append(name).append("NewValue = ").append(retain(property)).append(";\n")
+                      .append(indent(shift)).append(outer).append(name).append(" = this.").append(name).append("NewValue;\n");
+            } else {
+                writer.append(indent(shift)).append(outer).append(name).append(" = ").append(retain(property)).append(";\n");
             }
+            //update() holds the lock, so the record is appended in the order of the writes like a setter.
+            shift = generateJournalRecord(writer, shift, annotation, definition, property, outer + name);
+            writer.append(indent(shift)).append("return this;\n")
+                  .append(indent(--shift)).append("}\n\n");
         }
 
-        if(isPropertyChangeEventAware(targetInterface)) {
-            writer.append("\n");
-            generatePropertySupportField(elementUtils, writer, shift);
+        writer.append(indent(shift++)).append("private void checkOpen() {\n")
+              .append(indent(shift)).append("if (this.closed) throw new IllegalStateException(\"the mutator can be used only in update().\");\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    protected int generateUpdate(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        boolean locking = isLockingWrite(annotation);
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Modify the properties through the Mutator at once.\n")
+              .append(indent(shift)).append(" * the updater is called while this object is locked, so it should not block.\n")
+              .append(indent(shift)).append(" * if the updater throws an exception, the modifications made before it remain and no event is fired.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void update(java.util.function.Consumer<? super ").append(MUTATOR_CLASS).append("> updater) {\n")
+              .append(indent(shift)).append("if(updater == null) throw new IllegalArgumentException(\"the argument 'updater' should not be null.\");\n")
+              .append(indent(shift)).append(MUTATOR_CLASS).append(" mutator = new ").append(MUTATOR_CLASS).append("();\n")
+              .append(indent(shift++)).append("try {\n");
+        if(locking) {
+            shift = generateWriteLock(writer, shift, annotation);
+        }
+        shift = generateFrozenCheck(writer, shift, annotation, definition);
+        writer.append(indent(shift)).append("updater.accept(mutator);\n");
+        if(locking) {
+            shift = generateWriteUnlock(writer, shift, annotation);
+        }
+        writer.append(indent(--shift)).append("} finally {\n")
+              .append(indent(++shift)).append("mutator.closed = true;\n")
+              .append(indent(--shift)).append("}\n");
+        if(isDetectingChange(element, annotation)) {
+            for (Property property : getMutableProperties(definition)) {
+                String name = toSafeName(property.getName());
+                String oldValue = "mutator." + name + "OldValue";
+                String newValue = "mutator." + name + "NewValue";
+                shift = generateModified(writer, shift, element, annotation, definition, property, "mutator." + name + "Assigned && " + changedExpression(property, oldValue, newValue), oldValue, newValue);
+            }
         }
+        writer.append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
 
+    /**
+     * Generate the Mutator which holds a modified copy of a State.
+     */
+    protected int generateCopyOnWriteMutator(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Property> properties = getStateProperties(definition);
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Modifies a copy of the State in update(). it can not be used after the updater returns.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static final class ").append(MUTATOR_CLASS).append(" {\n")
+              .append(indent(shift)).append("private boolean closed;\n");
+        for (Property property : properties) {
+            writer.append(indent(shift)).append("private ").append(property.getType().toString()).append(" ").append(toSafeName(property.getName())).append(";\n");
+        }
+        writer.append("\n")
+              .append(indent(shift++)).append(MUTATOR_CLASS).append("(").append(STATE_CLASS).append(" state) {\n");
+        for (Property property : properties) {
+            String name = toSafeName(property.getName());
+            writer.append(indent(shift)).append("this.").append(name).append(" = state.").append(name).append(";\n");
+        }
+        writer.append(indent(--shift)).append("}\n\n");
 
-        if(isThreadSafe(annotation) && !isHavingSuperClass(annotation)) {
-            writer.append("\n");
-            writer.append(indent(shift)).append("protected final java.util.concurrent.locks.ReadWriteLock ").append(INSTANCE_LOCK).append(" = new java.util.concurrent.locks.ReentrantReadWriteLock();\n");
+        for (Property property : properties) {
+            String name = toSafeName(property.getName());
+            String typeName = property.getType().toString();
+            if(property.isReadable()) {
+                writer.append(indent(shift++)).append("public ").append(typeName).append(isBoolean(property.getType(), typeUtils) ? " is" : " get").append(capitalize(property.getName())).append("() {\n")
+                      .append(indent(shift)).append("checkOpen();\n")
+                      .append(indent(shift)).append("return ").append(retain(property, "this.")).append(";\n")
+                      .append(indent(--shift)).append("}\n\n");
+            }
+            if(property.isWritable()) {
+                writer.append(indent(shift++)).append("public ").append(MUTATOR_CLASS).append(" set").append(capitalize(property.getName())).append("(").append(typeName).append(" ").append(name).append(") {\n")
+                      .append(indent(shift)).append("checkOpen();\n")
+                      .append(indent(shift)).append("this.").append(name).append(" = ").append(retain(property)).append(";\n")
+                      .append(indent(shift)).append("return this;\n")
+                      .append(indent(--shift)).append("}\n\n");
+            }
         }
 
-        writer.append("\n");
+        writer.append(indent(shift++)).append(STATE_CLASS).append(" toState() {\n")
+              .append(indent(shift)).append("return new ").append(STATE_CLASS).append("(");
+        boolean isFirst = true;
+        for (Property property : properties) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append("this.").append(toSafeName(property.getName()));
+        }
+        writer.append(");\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private void checkOpen() {\n")
+              .append(indent(shift)).append("if (this.closed) throw new IllegalStateException(\"the mutator can be used only in update().\");\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
         return shift;
     }
 
-    protected final RetainType getRetainTypeOf(Property property) {
-        return RetainType.valueOf(property.getRetainType());
+    /**
+     * update() of COPY_ON_WRITE replaces the State once by compare-and-set.
+     * the updater is called again with a fresh Mutator when another thread replaced the State meanwhile.
+     */
+    protected int generateCopyOnWriteUpdate(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Modify the properties through the Mutator at once.\n")
+              .append(indent(shift)).append(" * the updater may be called more than once if other threads modify this object concurrently.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void update(java.util.function.Consumer<? super ").append(MUTATOR_CLASS).append("> updater) {\n")
+              .append(indent(shift)).append("if(updater == null) throw new IllegalArgumentException(\"the argument 'updater' should not be null.\");\n")
+              .append(indent(shift)).append(STATE_CLASS).append(" current;\n")
+              .append(indent(shift)).append(STATE_CLASS).append(" next;\n")
+              .append(indent(shift++)).append("do {\n");
+        shift = generateFrozenCheck(writer, shift, annotation, definition);
+        writer.append(indent(shift)).append("current = this.").append(STATE).append(".get();\n")
+              .append(indent(shift)).append(MUTATOR_CLASS).append(" mutator = new ").append(MUTATOR_CLASS).append("(current);\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append("updater.accept(mutator);\n")
+              .append(indent(--shift)).append("} finally {\n")
+              .append(indent(++shift)).append("mutator.closed = true;\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("next = mutator.toState();\n")
+              .append(indent(--shift)).append("} while (!this.").append(STATE).append(".compareAndSet(current, next));\n");
+        for (Property property : getMutableProperties(definition)) {
+            String name = toSafeName(property.getName());
+            shift = generateJournalRecord(writer, shift, annotation, definition, property, changedExpression(property, "current." + name, "next." + name), "next." + name);
+        }
+        for (Property property : getMutableProperties(definition)) {
+            String name = toSafeName(property.getName());
+            shift = generateModified(writer, shift, element, annotation, definition, property, changedExpression(property, "current." + name, "next." + name), "current." + name, "next." + name);
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+        return shift;
     }
 
-    protected void generatePropertySupportField(Elements elementUtils, Writer writer, int shift) throws IOException {
-        TypeMirror supportClass = elementUtils.getTypeElement(PropertyChangeSupport.class.getName()).asType();
-        writer.append(indent(shift)).append("protected final ").append(supportClass.toString()).append(" propertySupport;\n");
+    /**
+     * @return true if the atomic operations can be generated for the property.
+     * they are generated only for writable properties which have a generated field.
+     * reference values other than wrappers and strings are compared by identity, so a property of a reference type must be retained as it is.
+     */
+    protected boolean canGenerateAtomicOperations(Property property) {
+        if(property.isIgnored() || !property.isWritable() || property.isFieldDefined() || property.isCounter()) return false;
+        return isPrimitive(property.getType()) || RetainType.valueOf(property.getRetainType()) == RetainType.HOLD;
     }
 
-    protected int generatePropertyAccessors(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+    protected int generateAtomicOperations(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition, Property property) throws IOException {
         Types typeUtils = processingEnv.getTypeUtils();
-        
-        for (Field field : definition.getInnerFields(typeUtils)) {
-            if(!field.isIgnored()) {
-                Modifier methodModifier = Modifier.valueOf(field.getMethodModifier());
-                shift = generateGetter(writer, shift, targetInterface, annotation, field, definition, methodModifier);
-                if(!field.isReadOnly()) {
-                    shift = generateSetter(writer, shift, targetInterface, annotation, field, definition, methodModifier);
-                }
-            }
+        TypeMirror type = property.getType();
+        String typeName = type.toString();
+        String name = capitalize(property.getName());
+        String field = "this." + toSafeName(property.getName());
+        String handle = varHandleNameOf(property);
+        String cast = "(" + typeName + ") ";
+
+        //the functional interfaces for int, long and double are specialized for avoiding boxing.
+        String unaryOperator;
+        String binaryOperator;
+        String apply;
+        boolean isNumeric = false;
+        switch(type.getKind()) {
+            case INT:
+                unaryOperator = "java.util.function.IntUnaryOperator";
+                binaryOperator = "java.util.function.IntBinaryOperator";
+                apply = "applyAsInt";
+                isNumeric = true;
+                break;
+            case LONG:
+                unaryOperator = "java.util.function.LongUnaryOperator";
+                binaryOperator = "java.util.function.LongBinaryOperator";
+                apply = "applyAsLong";
+                isNumeric = true;
+                break;
+            case DOUBLE:
+                unaryOperator = "java.util.function.DoubleUnaryOperator";
+                binaryOperator = "java.util.function.DoubleBinaryOperator";
+                apply = "applyAsDouble";
+                isNumeric = true;
+                break;
+            default:
+                String objectType = isPrimitive(type) ? typeUtils.boxedClass((PrimitiveType) type).getQualifiedName().toString() : typeName;
+                unaryOperator = "java.util.function.UnaryOperator<" + objectType + ">";
+                binaryOperator = "java.util.function.BinaryOperator<" + objectType + ">";
+                apply = "apply";
         }
-        
-        for (Property property : definition.getProperties()) {
-            if(!property.isIgnored()) {
-                if(property.isReadable()) {
-                    shift = generateGetter(writer, shift, targetInterface, annotation, property, definition, Modifier.PUBLIC);
-                }
 
-                if(property.isWritable()) {
-                    shift = generateSetter(writer, shift, targetInterface, annotation, property, definition, Modifier.PUBLIC);
-                }
+        //floating point values are compared by their bits, as VarHandle does, both for compare-and-set and for detecting a change.
+        //wrappers and strings are compared by equals(), because equal values are not always identical.
+        String sameAsExpected;
+        boolean comparingByEquals = false;
+        switch(type.getKind()) {
+            case FLOAT:
+                sameAsExpected = "Float.floatToRawIntBits(" + field + ") == Float.floatToRawIntBits(expect)";
+                break;
+            case DOUBLE:
+                sameAsExpected = "Double.doubleToRawLongBits(" + field + ") == Double.doubleToRawLongBits(expect)";
+                break;
+            default:
+                comparingByEquals = !isPrimitive(type) && (unboxedKind(type) != null || typeName.equals("java.lang.String"));
+                sameAsExpected = comparingByEquals ? "(" + field + " == expect || (" + field + " != null && " + field + ".equals(expect)))" : field + " == expect";
+        }
+
+        boolean unchecked = isPrimitive(type) ? false : !typeUtils.isSameType(type, typeUtils.erasure(type));
+        String[] oldAndNew = new String[]{typeName + " oldValue;", typeName + " newValue;"};
+
+        //a VarHandle compares references by identity, so the current value equal to the expected one is swapped instead.
+        String[] varHandleCompareAndSet = comparingByEquals
+                ? new String[]{"while (true) {", "\t" + typeName + " witness = " + field + ";", "\tif (witness != expect && (witness == null || !witness.equals(expect))) break;",
+                               "\tif (" + handle + ".compareAndSet(this, witness, update)) {", "\t\tupdated = true;", "\t\tbreak;", "\t}", "}"}
+                : new String[]{"updated = " + handle + ".compareAndSet(this, expect, update);"};
+
+        shift = generateAtomicMethod(writer, shift, element, annotation, definition, property, false,
+                "boolean compareAndSet" + name + "(" + typeName + " expect, " + typeName + " update)",
+                new String[]{"boolean updated = false;"},
+                new String[]{"if (" + sameAsExpected + ") {", "\t" + field + " = update;", "\tupdated = true;", "}"},
+                varHandleCompareAndSet,
+                "updated && " + atomicChangedExpression(property, "expect", "update"), "expect", "update", "updated");
+
+        shift = generateAtomicMethod(writer, shift, element, annotation, definition, property, unchecked,
+                typeName + " getAndSet" + name + "(" + typeName + " value)",
+                new String[]{typeName + " oldValue;"},
+                new String[]{"oldValue = " + field + ";", field + " = value;"},
+                new String[]{"oldValue = " + cast + handle + ".getAndSet(this, value);"},
+                atomicChangedExpression(property, "oldValue", "value"), "oldValue", "value", "oldValue");
+
+        shift = generateAtomicMethod(writer, shift, element, annotation, definition, property, false,
+                typeName + " update" + name + "(" + unaryOperator + " operator)",
+                oldAndNew,
+                new String[]{"oldValue = " + field + ";", "newValue = operator." + apply + "(oldValue);", field + " = newValue;"},
+                new String[]{"do {", "\toldValue = " + field + ";", "\tnewValue = operator." + apply + "(oldValue);", "} while (!" + handle + ".weakCompareAndSet(this, oldValue, newValue));"},
+                atomicChangedExpression(property, "oldValue", "newValue"), "oldValue", "newValue", "newValue");
+
+        shift = generateAtomicMethod(writer, shift, element, annotation, definition, property, false,
+                typeName + " accumulate" + name + "(" + typeName + " x, " + binaryOperator + " operator)",
+                oldAndNew,
+                new String[]{"oldValue = " + field + ";", "newValue = operator." + apply + "(oldValue, x);", field + " = newValue;"},
+                new String[]{"do {", "\toldValue = " + field + ";", "\tnewValue = operator." + apply + "(oldValue, x);", "} while (!" + handle + ".weakCompareAndSet(this, oldValue, newValue));"},
+                atomicChangedExpression(property, "oldValue", "newValue"), "oldValue", "newValue", "newValue");
+
+        if(isNumeric) {
+            String[] lockedAdd = new String[]{"oldValue = " + field + ";", "newValue = oldValue + delta;", field + " = newValue;"};
+            String[] varHandleAdd = new String[]{"oldValue = " + cast + handle + ".getAndAdd(this, delta);", "newValue = oldValue + delta;"};
+
+            shift = generateAtomicMethod(writer, shift, element, annotation, definition, property, false,
+                    typeName + " getAndAdd" + name + "(" + typeName + " delta)",
+                    oldAndNew, lockedAdd, varHandleAdd,
+                    atomicChangedExpression(property, "oldValue", "newValue"), "oldValue", "newValue", "oldValue");
+
+            shift = generateAtomicMethod(writer, shift, element, annotation, definition, property, false,
+                    typeName + " addAndGet" + name + "(" + typeName + " delta)",
+                    oldAndNew, lockedAdd, varHandleAdd,
+                    atomicChangedExpression(property, "oldValue", "newValue"), "oldValue", "newValue", "newValue");
+        }
+        return shift;
+    }
+
+    /**
+     * @return a boolean expression which is true if an atomic operation changed the value.
+     * floating point values are compared by their bits like compare-and-set, so NaN is not a change and 0.0 to -0.0 is.
+     */
+    private String atomicChangedExpression(Attribute attribute, String oldValue, String newValue) {
+        switch(attribute.getType().getKind()) {
+            case FLOAT:
+                return "Float.floatToRawIntBits(" + oldValue + ") != Float.floatToRawIntBits(" + newValue + ")";
+            case DOUBLE:
+                return "Double.doubleToRawLongBits(" + oldValue + ") != Double.doubleToRawLongBits(" + newValue + ")";
+            default:
+                return changedExpression(attribute, oldValue, newValue);
+        }
+    }
+
+    /**
+     * @return the kind of the primitive type for a wrapper type, or null if the type is not a wrapper.
+     */
+    protected final TypeKind unboxedKind(TypeMirror type) {
+        try {
+            return processingEnv.getTypeUtils().unboxedType(type).getKind();
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Generate one atomic operation.
+     * The lines of code can have leading tab characters, each of them is converted into one indent.
+     *
+     * @param signature the signature of the method without the access modifier.
+     * @param declarations lines for declaring local variables.
+     * @param lockedBody lines executed under the write lock, or without any lock if the class is not thread-safe.
+     * @param varHandleBody lines executed instead of lockedBody if the fields are accessed through VarHandles.
+     * @param changedCondition a boolean expression which is true if a PropertyChangeEvent must be fired.
+     * @param returnValue the expression for the returned value.
+     */
+    private int generateAtomicMethod(Writer writer, int shift, TypeElement element, AnnotationMirror annotation, ClassDefinition definition, Property property, boolean unchecked,
+                                     String signature, String[] declarations, String[] lockedBody, String[] varHandleBody,
+                                     String changedCondition, String oldValue, String newValue, String returnValue) throws IOException {
+        boolean useVarHandle = isVolatileField(annotation);
+        boolean locking = isLockingWrite(annotation);
+
+        if(unchecked && useVarHandle) {
+            writer.append(indent(shift)).append("@SuppressWarnings(\"unchecked\")\n");
+        }
+        writer.append(indent(shift++)).append("public ").append(signature).append(" {\n");
+        generateLines(writer, shift, declarations);
+        if(useVarHandle) {
+            shift = generateFrozenCheck(writer, shift, annotation, definition);
+            generateLines(writer, shift, varHandleBody);
+            shift = generateJournalRecord(writer, shift, annotation, definition, property, changedCondition, newValue);
+        } else {
+            if(locking) {
+                shift = generateWriteLock(writer, shift, annotation, lockOf(annotation, definition, property));
+            }
+            shift = generateFrozenCheck(writer, shift, annotation, definition);
+            generateLines(writer, shift, lockedBody);
+            shift = generateJournalRecord(writer, shift, annotation, definition, property, changedCondition, newValue);
+            if(locking) {
+                shift = generateWriteUnlock(writer, shift, annotation, lockOf(annotation, definition, property));
             }
         }
+        shift = generateModified(writer, shift, element, annotation, definition, property, changedCondition, oldValue, newValue);
+        writer.append(indent(shift)).append("return ").append(returnValue).append(";\n");
+        writer.append(indent(--shift)).append("}\n\n");
         return shift;
     }
 
+    private void generateLines(Writer writer, int shift, String[] lines) throws IOException {
+        for (String line : lines) {
+            int tabs = 0;
+            while(tabs < line.length() && line.charAt(tabs) == '\t') {
+                tabs++;
+            }
+            writer.append(indent(shift + tabs)).append(line.substring(tabs)).append("\n");
+        }
+    }
+
     protected int generateConstructors(Writer writer, int shift, AnnotationMirror generateClassAnnotation, ClassDefinition definition, String className, TypeElement targetInterface) throws IOException {
         shift = generateFullArgConstructor(writer, shift, className, definition, targetInterface);
 
@@ -451,12 +2799,19 @@ public class InterfaceProcessor extends AbstractProcessor {
     }
 
     protected int generatePropertySupport(Writer writer, int shift, Elements elementUtils) throws IOException {
-        TypeMirror type = elementUtils.getTypeElement(PropertyChangeSupport.class.getName()).asType();
-        writer.append(indent(shift)).append("this.propertySupport = ").append("new ").append(type.toString()).append("(this);\n");
+        return generatePropertySupport(writer, shift, (AnnotationMirror) null);
+    }
+
+    protected int generatePropertySupport(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        writer.append(indent(shift)).append("this.propertySupport = ").append(newPropertySupport(annotation)).append(";\n");
         return shift;
     }
     
     protected int generateFieldInitializer(Writer writer, int shift, TypeElement element, Attribute attribute) throws IOException {
+        if(isCounter(attribute)) {
+            writer.append(indent(shift)).append("this.").append(toSafeName(attribute.getName())).append(".add(").append(toSafeName(attribute.getName())).append(");\n");
+            return shift;
+        }
         writer.append(indent(shift)).append("this.").append(toSafeName(attribute.getName())).append(" = ").append(retain(attribute)).append(";\n");
         return shift;
     }
@@ -499,14 +2854,25 @@ public class InterfaceProcessor extends AbstractProcessor {
             }
         }
         
+        AnnotationMirror annotation = findAnnotation(element, GenerateClass.class, elementUtils, typeUtils);
+        boolean copyOnWrite = isCopyOnWrite(annotation, definition);
+        List<Property> initialized = new ArrayList<Property>();
         for (Property property : definition.getProperties()) {
             if(!property.isIgnored() && canInitializeField(property, ConstructorGenerationType.FULL_ARG_CONSTRUCTOR, ConstructorGenerationPhase.FIELD_INITALIZATION)) {
-                shift = generateFieldInitializer(writer, shift, element, property);
+                if(copyOnWrite) {
+                    initialized.add(property);
+                } else {
+                    shift = generateFieldInitializer(writer, shift, element, property);
+                }
             }
         }
 
-        if(isPropertyChangeEventAware(element)) {
-            shift = generatePropertySupport(writer, shift, elementUtils);
+        if(copyOnWrite) {
+            shift = generateStateInitializer(writer, shift, definition, initialized);
+        }
+
+        if(isPropertyChangeEventAware(element) && !isLazyInfrastructure(annotation)) {
+            shift = generatePropertySupport(writer, shift, annotation);
         }
 
         writer.append(indent(--shift)).append("}\n\n");
@@ -566,16 +2932,27 @@ public class InterfaceProcessor extends AbstractProcessor {
             }
         }
         
+        AnnotationMirror annotation = findAnnotation(element, GenerateClass.class, elementUtils, typeUtils);
+        boolean copyOnWrite = isCopyOnWrite(annotation, definition);
+        List<Property> initialized = new ArrayList<Property>();
         for (Property property : definition.getProperties()) {
             if(!property.isIgnored()) {
                 if(isReadOnlyProperty(property) && canInitializeField(property, ConstructorGenerationType.READ_ONLY_CONSTRUCTOR, ConstructorGenerationPhase.FIELD_INITALIZATION)) {
-                    shift = generateFieldInitializer(writer, shift, element, property);
+                    if(copyOnWrite) {
+                        initialized.add(property);
+                    } else {
+                        shift = generateFieldInitializer(writer, shift, element, property);
+                    }
                 }
             }
         }
 
-        if(isPropertyChangeEventAware(element)) {
-            shift = generatePropertySupport(writer, shift, elementUtils);
+        if(copyOnWrite) {
+            shift = generateStateInitializer(writer, shift, definition, initialized);
+        }
+
+        if(isPropertyChangeEventAware(element) && !isLazyInfrastructure(annotation)) {
+            shift = generatePropertySupport(writer, shift, annotation);
         }
 
         writer.append(indent(--shift)).append("}\n\n");
@@ -598,7 +2975,9 @@ public class InterfaceProcessor extends AbstractProcessor {
     }
 
     protected int generateEquals(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className, boolean isHavingSuperClass, TypeElement targetInterface) throws IOException {
-        boolean threadSafe = isThreadSafe(annotation);
+        boolean guarded = isGuardingRead(annotation, definition);
+        String prefix = getReadPrefix(annotation, definition);
+        List<Attribute> attributes = getValueAttributes(definition);
 
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift)).append("public boolean equals(Object obj) {\n")
@@ -610,32 +2989,35 @@ public class InterfaceProcessor extends AbstractProcessor {
               .append(indent(--shift)).append("}\n\n")
               .append(indent(shift)).append("final ").append(className).append(" other = (").append(className).append(") obj;\n");
 
-        if(threadSafe) {
-            writer.append(indent(shift)).append(INSTANCE_LOCK).append(".readLock().lock();\n")
-                  .append(indent(shift++)).append("try {\n");
+        if(guarded && isReadingFrozenFields(annotation, definition)) {
+            writer.append(indent(shift++)).append("if (this.").append(FROZEN).append(") {\n");
+            for (Attribute attribute : attributes) {
+                shift = generateEqualForOneAttribute(attribute, "this.", "other.", writer, shift);
+            }
+            shift = generateSuperEquals(writer, shift, isHavingSuperClass);
+            writer.append(indent(shift)).append("return true;\n")
+                  .append(indent(--shift)).append("}\n");
         }
-        Types typeUtils = processingEnv.getTypeUtils();
-        for (Field field : definition.getInnerFields(typeUtils)) {
-            //We must generate equals() for all inner fields including 'ignore=true' fields.
-            shift = generateEqualForOneAttribute(field, writer, shift);
+
+        if(guarded) {
+            shift = generateBeginRead(writer, shift, annotation, attributes);
         }
 
-        for (Property property : definition.getProperties()) {
-            if(!property.isIgnored()) {
-                shift = generateEqualForOneAttribute(property, writer, shift);
-            }
+        String otherPrefix = "other.";
+        if(isCopyOnWrite(annotation, definition)) {
+            writer.append(indent(shift)).append("final ").append(STATE_CLASS).append(" otherState = other.").append(STATE).append(".get();\n");
+            otherPrefix = "otherState.";
         }
 
-        if(isHavingSuperClass) {
-            writer.append(indent(shift)).append("if (!super.equals(obj)) {\n")
-                  .append(indent(++shift)).append("return false;\n")
-                  .append(indent(--shift)).append("}\n");
+        //We must generate equals() for all inner fields including 'ignore=true' fields.
+        for (Attribute attribute : attributes) {
+            shift = generateEqualForOneAttribute(attribute, prefix, otherPrefix, writer, shift);
         }
 
-        if(threadSafe) {
-            writer.append(indent(--shift)).append("} finally {\n")
-                  .append(indent(++shift)).append(INSTANCE_LOCK).append(".readLock().unlock();\n")
-                  .append(indent(--shift)).append("}\n");
+        shift = generateSuperEquals(writer, shift, isHavingSuperClass);
+
+        if(guarded) {
+            shift = generateEndRead(writer, shift, annotation);
         }
 
         writer.append(indent(shift)).append("return true;\n");
@@ -643,27 +3025,51 @@ public class InterfaceProcessor extends AbstractProcessor {
         return shift;
     }
 
+    private int generateSuperEquals(Writer writer, int shift, boolean isHavingSuperClass) throws IOException {
+        if(isHavingSuperClass) {
+            writer.append(indent(shift)).append("if (!super.equals(obj)) {\n")
+                  .append(indent(++shift)).append("return false;\n")
+                  .append(indent(--shift)).append("}\n");
+        }
+        return shift;
+    }
+
     protected int generateEqualForOneAttribute(Attribute attribute, Writer writer, int shift) throws IOException {
-        final String fieldName = toSafeName(attribute.getName());
+        return generateEqualForOneAttribute(attribute, "this.", writer, shift);
+    }
+
+    /**
+     * @param prefix the prefix for accessing the value of this object, "this." for the field or "" for a local variable.
+     */
+    protected int generateEqualForOneAttribute(Attribute attribute, String prefix, Writer writer, int shift) throws IOException {
+        return generateEqualForOneAttribute(attribute, prefix, "other.", writer, shift);
+    }
+
+    /**
+     * @param otherPrefix the prefix for accessing the value of the other object.
+     */
+    protected int generateEqualForOneAttribute(Attribute attribute, String prefix, String otherPrefix, Writer writer, int shift) throws IOException {
+        final String value = valueExpression(attribute, prefix);
+        final String otherValue = valueExpression(attribute, otherPrefix);
         if(isPrimitive(attribute.getType())) {
             switch(attribute.getType().getKind()) {
                 case FLOAT:
-                    writer.append(indent(shift)).append("if (Float.floatToIntBits(this.").append(fieldName).append(") != Float.floatToIntBits(other.").append(fieldName).append(")) {\n")
+                    writer.append(indent(shift)).append("if (Float.floatToIntBits(").append(value).append(") != Float.floatToIntBits(").append(otherValue).append(")) {\n")
                         .append(indent(++shift)).append("return false;\n")
                         .append(indent(--shift)).append("}\n");
                     break;
                 case DOUBLE:
-                    writer.append(indent(shift)).append("if (Double.doubleToLongBits(this.").append(fieldName).append(") != Double.doubleToLongBits(other.").append(fieldName).append(")) {\n")
+                    writer.append(indent(shift)).append("if (Double.doubleToLongBits(").append(value).append(") != Double.doubleToLongBits(").append(otherValue).append(")) {\n")
                         .append(indent(++shift)).append("return false;\n")
                         .append(indent(--shift)).append("}\n");
                     break;
                 default:
-                    writer.append(indent(shift)).append("if (this.").append(fieldName).append(" != other.").append(fieldName).append(") {\n")
+                    writer.append(indent(shift)).append("if (").append(value).append(" != ").append(otherValue).append(") {\n")
                         .append(indent(++shift)).append("return false;\n")
                         .append(indent(--shift)).append("}\n");
             }
         } else {
-            writer.append(indent(shift)).append("if (this.").append(fieldName).append(" != other.").append(fieldName).append(" && (this.").append(fieldName).append(" == null || !this.").append(fieldName).append(".equals(other.").append(fieldName).append("))) {\n")
+            writer.append(indent(shift)).append("if (").append(value).append(" != ").append(otherValue).append(" && (").append(value).append(" == null || !").append(value).append(".equals(").append(otherValue).append("))) {\n")
                 .append(indent(++shift)).append("return false;\n")
                 .append(indent(--shift)).append("}\n");
         }
@@ -671,37 +3077,29 @@ public class InterfaceProcessor extends AbstractProcessor {
     }
 
     protected int generateHashCode(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className, boolean isHavingSuperClass, TypeElement targetInterface) throws IOException {
-        boolean threadSafe = isThreadSafe(annotation);
+        boolean guarded = isGuardingRead(annotation, definition);
+        String prefix = getReadPrefix(annotation, definition);
+        List<Attribute> attributes = getValueAttributes(definition);
+
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift)).append("public int hashCode() {\n")
               .append(indent(++shift)).append("int result = 17;\n");
 
-        if(threadSafe) {
-            writer.append(indent(shift)).append(INSTANCE_LOCK).append(".readLock().lock();\n")
-                  .append(indent(shift++)).append("try {\n");
-        }
-        
-        Types typeUtils = processingEnv.getTypeUtils();
-        
-        for (Field field : definition.getInnerFields(typeUtils)) {
-            //We must generate hashCode for all inner fields including 'ignore=true' fields.
-            generateHashCodeForOneAttribute(field, writer, shift);
+        if(guarded && isReadingFrozenFields(annotation, definition)) {
+            writer.append(indent(shift++)).append("if (this.").append(FROZEN).append(") {\n");
+            generateHashCodeForAttributes(writer, shift, attributes, "this.", isHavingSuperClass);
+            writer.append(indent(shift)).append("return result;\n")
+                  .append(indent(--shift)).append("}\n");
         }
 
-        for (Property property : definition.getProperties()) {
-            if(!property.isIgnored()) {
-                generateHashCodeForOneAttribute(property, writer, shift);
-            }
+        if(guarded) {
+            shift = generateBeginRead(writer, shift, annotation, attributes);
         }
 
-        if(isHavingSuperClass) {
-            writer.append(indent(shift)).append("result = 31 * result + ").append("super.hashCode();\n");
-        }
+        generateHashCodeForAttributes(writer, shift, attributes, prefix, isHavingSuperClass);
 
-        if(threadSafe) {
-            writer.append(indent(--shift)).append("} finally {\n")
-                  .append(indent(++shift)).append(INSTANCE_LOCK).append(".readLock().unlock();\n")
-                  .append(indent(--shift)).append("}\n");
+        if(guarded) {
+            shift = generateEndRead(writer, shift, annotation);
         }
 
         writer.append(indent(shift)).append("return result;\n");
@@ -710,61 +3108,90 @@ public class InterfaceProcessor extends AbstractProcessor {
         return shift;
     }
 
+    private void generateHashCodeForAttributes(Writer writer, int shift, List<Attribute> attributes, String prefix, boolean isHavingSuperClass) throws IOException {
+        //We must generate hashCode for all inner fields including 'ignore=true' fields.
+        for (Attribute attribute : attributes) {
+            generateHashCodeForOneAttribute(attribute, prefix, writer, shift);
+        }
+
+        if(isHavingSuperClass) {
+            writer.append(indent(shift)).append("result = 31 * result + ").append("super.hashCode();\n");
+        }
+    }
+
     protected void generateHashCodeForOneAttribute(Attribute attribute, Writer writer, int shift) throws IOException {
-        final String fieldName = toSafeName(attribute.getName());
+        generateHashCodeForOneAttribute(attribute, "this.", writer, shift);
+    }
+
+    /**
+     * @param prefix the prefix for accessing the value, "this." for the field or "" for a local variable.
+     */
+    protected void generateHashCodeForOneAttribute(Attribute attribute, String prefix, Writer writer, int shift) throws IOException {
+        final String value = valueExpression(attribute, prefix);
         String expression = null;
         if(isPrimitive(attribute.getType())) {
             switch(attribute.getType().getKind()) {
                 case FLOAT:
-                    expression = "Float.floatToIntBits(this." + fieldName + ")";
+                    expression = "Float.floatToIntBits(" + value + ")";
                     break;
                 case DOUBLE:
-                    expression = "(int) (Double.doubleToLongBits(this." + fieldName + ") ^ (Double.doubleToLongBits(this." + fieldName + ") >>> 32))";
+                    expression = "(int) (Double.doubleToLongBits(" + value + ") ^ (Double.doubleToLongBits(" + value + ") >>> 32))";
                     break;
                 case BOOLEAN:
-                    expression = "(this." + fieldName + " ? 1 : 0)";
+                    expression = "(" + value + " ? 1 : 0)";
                     break;
                 case LONG:
-                    expression = "(int) (this." + fieldName + " ^ (this." + fieldName + " >>> 32))";
+                    expression = "(int) (" + value + " ^ (" + value + " >>> 32))";
                     break;
                 default:
-                    expression = "this." + fieldName;
+                    expression = value;
             }
         } else {
-            expression = "(this." + fieldName + " != null ? this." + fieldName + ".hashCode() : 0)";
+            expression = "(" + value + " != null ? " + value + ".hashCode() : 0)";
         }
         writer.append(indent(shift)).append("result = 31 * result + ").append(expression).append(";\n");
     }
 
     protected int generateToString(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className, boolean isHavinsSuperClass, TypeElement targetInterface) throws IOException {
-        boolean threadSafe = isThreadSafe(annotation);
-        Types typeUtils = processingEnv.getTypeUtils();
-        
+        boolean guarded = isGuardingRead(annotation, definition);
+        String prefix = getReadPrefix(annotation, definition);
+        List<Attribute> attributes = getValueAttributes(definition);
+
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift++)).append("public String toString() {\n");
 
-        if(threadSafe) {
-            writer.append(indent(shift)).append(INSTANCE_LOCK).append(".readLock().lock();\n")
-                  .append(indent(shift++)).append("try {\n");
+        if(guarded && isReadingFrozenFields(annotation, definition)) {
+            writer.append(indent(shift++)).append("if (this.").append(FROZEN).append(") {\n");
+            shift = generateToStringReturn(writer, shift, attributes, "this.", isHavinsSuperClass);
+            writer.append(indent(--shift)).append("}\n");
+        }
+
+        if(guarded) {
+            shift = generateBeginRead(writer, shift, annotation, attributes);
         }
 
+        shift = generateToStringReturn(writer, shift, attributes, prefix, isHavinsSuperClass);
+
+        if(guarded) {
+            shift = generateEndRead(writer, shift, annotation);
+        }
+
+        writer.append(indent(--shift)).append("}\n\n");
+
+        return shift;
+    }
+    
+    private int generateToStringReturn(Writer writer, int shift, List<Attribute> attributes, String prefix, boolean isHavinsSuperClass) throws IOException {
         writer.append(indent(shift)).append("return getClass().getSimpleName()").append(" + \"{\"\n");
 
         shift++;
         boolean isFirst = true;
-        
-        for (Field field : definition.getInnerFields(typeUtils)) {
-            //We must generate toString() for all inner fields including 'ignore=true' fields.
-            shift = generateToStringForOneAttribute(isFirst, field, writer, shift);
+
+        //We must generate toString() for all inner fields including 'ignore=true' fields.
+        for (Attribute attribute : attributes) {
+            shift = generateToStringForOneAttribute(isFirst, attribute, prefix, writer, shift);
             if(isFirst) isFirst = false;
         }
-        
-        for (Property property : definition.getProperties()) {
-            if(!property.isIgnored()) {
-                shift = generateToStringForOneAttribute(isFirst, property, writer, shift);
-                if(isFirst) isFirst = false;
-            }
-        }
         if(isHavinsSuperClass) {
             writer.append(indent(shift)).append(" + \"");
             if(!isFirst) writer.append(", ");
@@ -772,28 +3199,25 @@ public class InterfaceProcessor extends AbstractProcessor {
 
         }
         writer.append(indent(shift)).append(" + '}';\n");
-        shift--;
-
-        if(threadSafe) {
-            writer.append(indent(--shift)).append("} finally {\n")
-                  .append(indent(++shift)).append(INSTANCE_LOCK).append(".readLock().unlock();\n")
-                  .append(indent(--shift)).append("}\n");
-        }
-
-        writer.append(indent(--shift)).append("}\n\n");
-
-        return shift;
+        return --shift;
     }
-    
+
     protected int generateToStringForOneAttribute(boolean isFirst, Attribute attribute, Writer writer, int shift) throws IOException {
+        return generateToStringForOneAttribute(isFirst, attribute, "", writer, shift);
+    }
+
+    /**
+     * @param prefix the prefix for accessing the value, "this." for the field or "" for a local variable.
+     */
+    protected int generateToStringForOneAttribute(boolean isFirst, Attribute attribute, String prefix, Writer writer, int shift) throws IOException {
         final String safeName = toSafeName(attribute.getName());
         writer.append(indent(shift)).append(" + \"");
         if(!isFirst) writer.append(", ");
-        writer.append(safeName).append("=\" + ").append(safeName).append("\n");
+        writer.append(safeName).append("=\" + ").append(valueExpression(attribute, prefix)).append("\n");
         return shift;
     }
 
-    protected int generateClone(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className) throws IOException {
+    protected int generateClone(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className, TypeElement targetInterface) throws IOException {
         Elements elementUtils = processingEnv.getElementUtils();
 
         Map<? extends ExecutableElement, ? extends AnnotationValue> annotationValueMap = elementUtils.getElementValuesWithDefaults(annotation);
@@ -802,11 +3226,11 @@ public class InterfaceProcessor extends AbstractProcessor {
               .append(indent(shift)).append("public ").append(className).append(" clone() {\n");
 
         if(isHavingSuperClass(annotation)) {
-            writer.append(indent(++shift)).append("return (").append(className).append(") super.clone();\n");
+            shift = generateCloneBody(writer, ++shift, annotation, definition, className, targetInterface);
         } else {
-            writer.append(indent(++shift)).append("try {\n")
-                  .append(indent(++shift)).append("return (").append(className).append(") super.clone();\n")
-                  .append(indent(--shift)).append("} catch(CloneNotSupportedException ex) {\n")
+            writer.append(indent(++shift)).append("try {\n");
+            shift = generateCloneBody(writer, ++shift, annotation, definition, className, targetInterface);
+            writer.append(indent(--shift)).append("} catch(CloneNotSupportedException ex) {\n")
                   .append(indent(++shift)).append("throw new IllegalStateException(ex);\n")
                   .append(indent(--shift)).append("}\n");
         }
@@ -815,12 +3239,286 @@ public class InterfaceProcessor extends AbstractProcessor {
         return shift;
     }
 
+    /**
+     * Generate the statements which create a copy by super.clone() and return it.
+     * Fields which must not be shared between the original and the copy are replaced in the copy.
+     * The lazily created instanceLock and PropertyChangeListenerRegistry are cleared, so the copy creates its own ones.
+     */
+    protected int generateCloneBody(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className, TypeElement targetInterface) throws IOException {
+        List<Property> counters = new ArrayList<Property>();
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored() && property.isCounter()) {
+                counters.add(property);
+            }
+        }
+
+        List<String> lazyFields = new ArrayList<String>();
+        if(isLazyInfrastructure(annotation)) {
+            if(isPropertyChangeEventAware(targetInterface)) lazyFields.add(PROPERTY_SUPPORT);
+        }
+        if(isPropertyChangeEventAware(targetInterface) && isHavingWaiters(annotation, definition)) {
+            //the waiters of the original are not copied.
+            lazyFields.add(WAITERS);
+        }
+
+        boolean copyOnWrite = isCopyOnWrite(annotation, definition);
+        boolean frozenFlag = isHavingFrozenFlag(annotation, definition);
+        boolean striped = isStripedLock(annotation) && !isImmutable(annotation, definition);
+        boolean sequenceLock = isSequenceLock(annotation, definition);
+        if(striped) {
+            //the copy must be taken from a consistent view of all stripes.
+            shift = generateLockAllStripes(writer, shift, "readLock");
+        }
+        boolean dirty = isTrackingDirty(annotation);
+        boolean delta = isGeneratingDelta(annotation);
+        boolean journal = isJournaling(annotation);
+        if(counters.isEmpty() && lazyFields.isEmpty() && !copyOnWrite && !frozenFlag && !sequenceLock && !dirty && !delta && !journal) {
+            writer.append(indent(shift)).append("return (").append(className).append(") super.clone();\n");
+            if(striped) {
+                shift = generateUnlockAllStripes(writer, shift, "readLock");
+            }
+            return shift;
+        }
+
+        writer.append(indent(shift)).append(className).append(" copy = (").append(className).append(") super.clone();\n");
+        for (Property counter : counters) {
+            String fieldName = toSafeName(counter.getName());
+            writer.append(indent(shift)).append("copy.").append(fieldName).append(" = new java.util.concurrent.atomic.LongAdder();\n")
+                  .append(indent(shift)).append("copy.").append(fieldName).append(".add(this.").append(fieldName).append(".sum());\n");
+        }
+        if(sequenceLock) {
+            //super.clone() may copy the fields in the middle of a write. copy them again consistently.
+            List<Attribute> attributes = new ArrayList<Attribute>();
+            for (Attribute attribute : getValueAttributes(definition)) {
+                if(!isCounter(attribute)) attributes.add(attribute);
+            }
+            writer.append(indent(shift)).append("long ").append(SEQUENCE).append(";\n")
+                  .append(indent(shift++)).append("do {\n")
+                  .append(indent(shift)).append(SEQUENCE).append(" = this.").append(SEQUENCE).append(";\n");
+            for (Attribute attribute : attributes) {
+                String fieldName = toSafeName(attribute.getName());
+                writer.append(indent(shift)).append("copy.").append(fieldName).append(" = this.").append(fieldName).append(";\n");
+            }
+            writer.append(indent(shift)).append("java.lang.invoke.VarHandle.acquireFence();\n")
+                  .append(indent(--shift)).append("} while ((").append(SEQUENCE).append(" & 1L) != 0L || ").append(SEQUENCE).append(" != this.").append(SEQUENCE).append(");\n")
+                  .append(indent(shift)).append("copy.").append(SEQUENCE).append(" = 0L;\n");
+        }
+        if(copyOnWrite) {
+            writer.append(indent(shift)).append("copy.").append(STATE).append(" = new java.util.concurrent.atomic.AtomicReference<").append(STATE_CLASS).append(">(this.").append(STATE).append(".get());\n");
+        }
+        if(frozenFlag) {
+            writer.append(indent(shift)).append("copy.").append(FROZEN).append(" = false;\n");
+        }
+        if(dirty) {
+            writer.append(indent(shift)).append("copy.").append(DIRTY).append(" = this.").append(DIRTY).append(".copy();\n");
+        }
+        if(delta) {
+            writer.append(indent(shift)).append("copy.").append(DELTA_VERSIONS).append(" = this.").append(DELTA_VERSIONS).append(".copy();\n");
+        }
+        if(journal) {
+            //the copy is recorded as another instance.
+            writer.append(indent(shift)).append("copy.").append(JOURNAL_ID).append(" = 0L;\n");
+        }
+        for (String lazyField : lazyFields) {
+            writer.append(indent(shift)).append("copy.").append(lazyField).append(" = null;\n");
+        }
+        writer.append(indent(shift)).append("return copy;\n");
+        if(striped) {
+            shift = generateUnlockAllStripes(writer, shift, "readLock");
+        }
+        return shift;
+    }
+
+    /**
+     * @return the attributes which are the parameters of the full-arg constructor, in the order of the parameters.
+     */
+    protected final List<Attribute> getSerializedAttributes(ClassDefinition definition) {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (Field field : definition.getInnerFields(typeUtils)) {
+            if(!field.isIgnored()) attributes.add(field);
+        }
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored() && !property.isFieldDefined() && canInitializeField(property, ConstructorGenerationType.FULL_ARG_CONSTRUCTOR, ConstructorGenerationPhase.CONSTRUCTOR_ARGUMENTS)) {
+                attributes.add(property);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Generate writeReplace(), which copies the values into a SerializedForm in one read block, and the nested class SerializedForm.
+     * A SerializedForm has no serializable field. It writes the values by the primitive methods of DataOutput, and readResolve()
+     * creates a new object by the full-arg constructor, so no lock, listener nor dirty bit is serialized.
+     * readObject() of the generated class rejects a stream which contains the generated class itself.
+     * A subclass is serialized by the default mechanism.
+     */
+    protected int generateSerializedForm(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, String className) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Types typeUtils = processingEnv.getTypeUtils();
+        boolean guarded = isGuardingRead(annotation, definition);
+        String prefix = getReadPrefix(annotation, definition);
+        boolean frozenFlag = isHavingFrozenFlag(annotation, definition);
+        List<Attribute> attributes = getSerializedAttributes(definition);
+        Long version = (Long) getValueOfAnnotation(elementUtils.getElementValuesWithDefaults(annotation), SERIAL_VERSION).getValue();
+
+        writer.append(indent(shift++)).append("private Object writeReplace() {\n");
+        if(guarded) {
+            shift = generateBeginRead(writer, shift, annotation, attributes);
+        }
+        writer.append(indent(shift)).append("return new ").append(SERIALIZED_FORM_CLASS).append("(");
+        boolean isFirst = true;
+        for (Attribute attribute : attributes) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(valueExpression(attribute, prefix));
+        }
+        if(frozenFlag) {
+            writer.append(isFirst ? "" : ", ").append("this.").append(FROZEN);
+        }
+        writer.append(");\n");
+        if(guarded) {
+            shift = generateEndRead(writer, shift, annotation);
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+
+        //a subclass is serialized by the default mechanism, because the SerializedForm can not recreate it.
+        writer.append(indent(shift++)).append("private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {\n")
+              .append(indent(shift)).append("if (getClass() == ").append(className).append(".class) throw new java.io.InvalidObjectException(\"").append(className).append(" must be deserialized through its ").append(SERIALIZED_FORM_CLASS).append(".\");\n")
+              .append(indent(shift)).append("in.defaultReadObject();\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private static final class ").append(SERIALIZED_FORM_CLASS).append(" implements java.io.Serializable {\n")
+              .append(indent(shift)).append("private static final long serialVersionUID = ").append(version.toString()).append("L;\n");
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift)).append("private transient ").append(attribute.getType().toString()).append(" ").append(toSafeName(attribute.getName())).append(";\n");
+        }
+        if(frozenFlag) {
+            writer.append(indent(shift)).append("private transient boolean ").append(FROZEN).append(";\n");
+        }
+
+        writer.append("\n")
+              .append(indent(shift)).append(SERIALIZED_FORM_CLASS).append("(");
+        isFirst = true;
+        for (Attribute attribute : attributes) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(attribute.getType().toString()).append(" ").append(toSafeName(attribute.getName()));
+        }
+        if(frozenFlag) {
+            writer.append(isFirst ? "" : ", ").append("boolean ").append(FROZEN);
+        }
+        writer.append(") {\n");
+        shift++;
+        for (Attribute attribute : attributes) {
+            String name = toSafeName(attribute.getName());
+            writer.append(indent(shift)).append("this.").append(name).append(" = ").append(name).append(";\n");
+        }
+        if(frozenFlag) {
+            writer.append(indent(shift)).append("this.").append(FROZEN).append(" = ").append(FROZEN).append(";\n");
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {\n")
+              .append(indent(shift)).append("out.defaultWriteObject();\n");
+        boolean unchecked = false;
+        for (Attribute attribute : attributes) {
+            String value = "this." + toSafeName(attribute.getName());
+            if(isDeltaEncodable(attribute.getType())) {
+                generateDeltaWrite(writer, shift, attribute, value);
+            } else {
+                writer.append(indent(shift)).append("out.writeObject(").append(value).append(");\n");
+                TypeMirror type = attribute.getType();
+                if(!typeUtils.isSameType(type, typeUtils.erasure(type))) unchecked = true;
+            }
+        }
+        if(frozenFlag) {
+            writer.append(indent(shift)).append("out.writeBoolean(this.").append(FROZEN).append(");\n");
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+
+        if(unchecked) {
+            writer.append(indent(shift)).append("@SuppressWarnings(\"unchecked\")\n");
+        }
+        writer.append(indent(shift++)).append("private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {\n")
+              .append(indent(shift)).append("in.defaultReadObject();\n");
+        for (Attribute attribute : attributes) {
+            String name = toSafeName(attribute.getName());
+            String read = isDeltaEncodable(attribute.getType())
+                    ? deltaReadExpression(attribute)
+                    : "(" + attribute.getType().toString() + ") in.readObject()";
+            writer.append(indent(shift)).append("this.").append(name).append(" = ").append(read).append(";\n");
+        }
+        if(frozenFlag) {
+            writer.append(indent(shift)).append("this.").append(FROZEN).append(" = in.readBoolean();\n");
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private Object readResolve() {\n")
+              .append(indent(shift)).append(className).append(" instance = new ").append(className).append("(");
+        isFirst = true;
+        for (Attribute attribute : attributes) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append("this.").append(toSafeName(attribute.getName()));
+        }
+        writer.append(");\n");
+        if(frozenFlag) {
+            writer.append(indent(shift)).append("if (this.").append(FROZEN).append(") instance.freeze();\n");
+        }
+        writer.append(indent(shift)).append("return instance;\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    protected final boolean isCodecEncodable(TypeMirror type) {
+        if(type.getKind() == TypeKind.ARRAY) {
+            return ((ArrayType) type).getComponentType().getKind().isPrimitive();
+        }
+        return isDeltaEncodable(type);
+    }
+
+    protected final boolean isRowBindable(TypeMirror type) {
+        if(isDeltaEncodable(type)) return true;
+        if(type.getKind() == TypeKind.ARRAY) {
+            return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE;
+        }
+        return rowGetterOf(type) != null;
+    }
+
+    /**
+     * @return the name of the getter of ResultSet for a type which is neither a primitive, a wrapper, String nor an enum, or null if it is not supported.
+     */
+    protected final String rowGetterOf(TypeMirror type) {
+        if(type.getKind() == TypeKind.ARRAY) return "getBytes";
+        if(type.getKind() != TypeKind.DECLARED) return null;
+        String name = ((TypeElement) processingEnv.getTypeUtils().asElement(type)).getQualifiedName().toString();
+        if(name.equals("java.math.BigDecimal")) return "getBigDecimal";
+        if(name.equals("java.sql.Timestamp")) return "getTimestamp";
+        if(name.equals("java.sql.Date")) return "getDate";
+        if(name.equals("java.sql.Time")) return "getTime";
+        return null;
+    }
+
     protected int generatePropertyListenerAccessors(Writer writer, int shift, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Types typeUtils = processingEnv.getTypeUtils();
+        return generatePropertyListenerAccessors(writer, shift, findAnnotation(targetInterface, GenerateClass.class, elementUtils, typeUtils), definition, targetInterface);
+    }
+
+    /**
+     * If the PropertyChangeListenerRegistry is created lazily, it is created by the first registration of a listener.
+     * The other methods do not create it.
+     */
+    protected int generatePropertyListenerAccessors(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        boolean lazy = isLazyInfrastructure(annotation);
+        String support = lazy ? PROPERTY_SUPPORT + "()" : "this." + PROPERTY_SUPPORT;
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift++)).append("public void addPropertyChangeListener(java.beans.PropertyChangeListener... listeners) {\n")
               .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n")
               .append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
-              .append(indent(++shift)).append("this.propertySupport.addPropertyChangeListener(listener);\n")
+              .append(indent(++shift)).append(support).append(".addPropertyChangeListener(listener);\n")
               .append(indent(--shift)).append("}\n")
               .append(indent(--shift)).append("}\n\n");
 
@@ -829,31 +3527,64 @@ public class InterfaceProcessor extends AbstractProcessor {
               .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n")
               .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n")
               .append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
-              .append(indent(++shift)).append("this.propertySupport.addPropertyChangeListener(propertyName, listener);\n")
+              .append(indent(++shift)).append(support).append(".addPropertyChangeListener(propertyName, listener);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Add listeners which are referred weakly. they are removed automatically after they are garbage-collected.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void addWeakPropertyChangeListener(java.beans.PropertyChangeListener... listeners) {\n")
+              .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n")
+              .append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
+              .append(indent(++shift)).append(support).append(".addWeakPropertyChangeListener(listener);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Add listeners of the property which are referred weakly. they are removed automatically after they are garbage-collected.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void addWeakPropertyChangeListener(String propertyName, java.beans.PropertyChangeListener... listeners) {\n")
+              .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n")
+              .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n")
+              .append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
+              .append(indent(++shift)).append(support).append(".addWeakPropertyChangeListener(propertyName, listener);\n")
               .append(indent(--shift)).append("}\n")
               .append(indent(--shift)).append("}\n\n");
 
         writer.append(indent(shift)).append("@Override\n")
-              .append(indent(shift++)).append("public java.util.Collection<java.beans.PropertyChangeListener> getPropertyChangeListeners() {\n")
-              .append(indent(shift)).append("return java.util.Arrays.asList(this.propertySupport.getPropertyChangeListeners());\n")
+              .append(indent(shift++)).append("public java.util.Collection<java.beans.PropertyChangeListener> getPropertyChangeListeners() {\n");
+        if(lazy) {
+            writer.append(indent(shift)).append("if(this.propertySupport == null) return java.util.Collections.emptyList();\n");
+        }
+        writer.append(indent(shift)).append("return java.util.Arrays.asList(this.propertySupport.getPropertyChangeListeners());\n")
               .append(indent(--shift)).append("}\n\n");
 
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift++)).append("public java.util.Collection<java.beans.PropertyChangeListener> getPropertyChangeListeners(String propertyName) {\n")
-              .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n")
-              .append(indent(shift)).append("return java.util.Arrays.asList(this.propertySupport.getPropertyChangeListeners(propertyName));\n")
+              .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n");
+        if(lazy) {
+            writer.append(indent(shift)).append("if(this.propertySupport == null) return java.util.Collections.emptyList();\n");
+        }
+        writer.append(indent(shift)).append("return java.util.Arrays.asList(this.propertySupport.getPropertyChangeListeners(propertyName));\n")
               .append(indent(--shift)).append("}\n\n");
 
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift++)).append("public boolean hasListeners(String propertyName) {\n")
-              .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n")
-              .append(indent(shift)).append("return this.propertySupport.hasListeners(propertyName);\n")
+              .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n");
+        if(lazy) {
+            writer.append(indent(shift)).append("if(this.propertySupport == null) return false;\n");
+        }
+        writer.append(indent(shift)).append("return this.propertySupport.hasListeners(propertyName);\n")
               .append(indent(--shift)).append("}\n\n");
 
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift++)).append("public void removePropertyChangeListener(java.beans.PropertyChangeListener... listeners) {\n")
-              .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n")
-              .append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
+              .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n");
+        if(lazy) {
+            writer.append(indent(shift)).append("if(this.propertySupport == null) return;\n");
+        }
+        writer.append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
               .append(indent(++shift)).append("this.propertySupport.removePropertyChangeListener(listener);\n")
               .append(indent(--shift)).append("}\n")
               .append(indent(--shift)).append("}\n\n");
@@ -861,15 +3592,233 @@ public class InterfaceProcessor extends AbstractProcessor {
         writer.append(indent(shift)).append("@Override\n")
               .append(indent(shift++)).append("public void removePropertyChangeListener(String propertyName, java.beans.PropertyChangeListener... listeners) {\n")
               .append(indent(shift)).append("if(propertyName == null) throw new IllegalArgumentException(\"the argument 'propertyName' should not be null.\");\n")
-              .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n")
-              .append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
+              .append(indent(shift)).append("if(listeners == null) throw new IllegalArgumentException(\"the argument 'listeners' should not be null.\");\n");
+        if(lazy) {
+            writer.append(indent(shift)).append("if(this.propertySupport == null) return;\n");
+        }
+        writer.append(indent(shift)).append("for (java.beans.PropertyChangeListener listener : listeners) {\n")
               .append(indent(++shift)).append("this.propertySupport.removePropertyChangeListener(propertyName, listener);\n")
               .append(indent(--shift)).append("}\n")
               .append(indent(--shift)).append("}\n\n");
 
+        if(isGeneratingTypedListeners(annotation)) {
+            shift = generateTypedListenerAccessors(writer, shift, annotation, definition);
+        }
+
+        if(isAsyncEvents(annotation)) {
+            shift = generateEventDispatchAccessors(writer, shift, annotation);
+        }
+
+        if(isGeneratingFlowPublishers(annotation) && !getListenableAttributes(definition).isEmpty()) {
+            shift = generateFlowPublishers(writer, shift, annotation, definition);
+        }
+
+        if(isHavingWaiters(annotation, definition)) {
+            shift = generateAwaitMethods(writer, shift, annotation, definition);
+        }
+        return shift;
+    }
+
+    /**
+     * Generate the field of the waiters of await&lt;Property&gt;(), which is created at the first call of them,
+     * and a static VarHandle for installing it by compare-and-set.
+     * The waiters are not listeners, so they are neither visible to nor removed by the methods of PropertyChangeEventAware.
+     */
+    protected int generateWaitersField(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition, TypeElement targetInterface) throws IOException {
+        String className = resolveImplementationClassName(targetInterface.getAnnotation(GenerateClass.class), annotation, definition);
+        writer.append("\n")
+              .append(indent(shift)).append("private transient volatile ").append(PropertyWaiters.class.getName()).append(" ").append(WAITERS).append(";\n")
+              .append(indent(shift)).append("private static final java.lang.invoke.VarHandle ").append(toConstantName(WAITERS)).append("_HANDLE;\n\n");
+
+        writer.append(indent(shift++)).append("static {\n")
+              .append(indent(shift++)).append("try {\n")
+              .append(indent(shift)).append(toConstantName(WAITERS)).append("_HANDLE = java.lang.invoke.MethodHandles.lookup().findVarHandle(").append(className).append(".class, \"").append(WAITERS).append("\", ").append(PropertyWaiters.class.getName()).append(".class);\n")
+              .append(indent(--shift)).append("} catch (ReflectiveOperationException ex) {\n")
+              .append(indent(++shift)).append("throw new ExceptionInInitializerError(ex);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n");
+        return shift;
+    }
+
+    /**
+     * Generate await&lt;Property&gt;() for each modifiable property, and the accessor of the waiters.
+     * The waiters are tested by the modifiers after the lock is released, and only while somebody is waiting.
+     */
+    protected int generateAwaitMethods(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        String waitersClass = PropertyWaiters.class.getName();
+
+        shift = generateLazyAccessor(writer, shift, waitersClass, WAITERS, "new " + waitersClass + "(" + PROPERTY_NAMES + ".length)");
+        for (Attribute attribute : getListenableAttributes(definition)) {
+            TypeMirror type = attribute.getType();
+            String name = capitalize(attribute.getName());
+            String valueType = isPrimitive(type) ? typeUtils.boxedClass((PrimitiveType) type).getQualifiedName().toString() : type.toString();
+            String getter = (isBoolean(type, typeUtils) ? "is" : "get") + name;
+
+            writer.append(indent(shift)).append("/**\n")
+                  .append(indent(shift)).append(" * @return a future which is completed by the first value of '").append(attribute.getName()).append("' which satisfies the condition, including the current value.\n")
+                  .append(indent(shift)).append(" */\n")
+                  .append(indent(shift++)).append("public java.util.concurrent.CompletableFuture<").append(valueType).append("> await").append(name).append("(java.util.function.Predicate<? super ").append(valueType).append("> condition) {\n")
+                  .append(indent(shift)).append("if(condition == null) throw new IllegalArgumentException(\"the argument 'condition' should not be null.\");\n")
+                  .append(indent(shift)).append("return ").append(WAITERS).append("().<").append(valueType).append(">await(").append(String.valueOf(propertyIndexOf(definition, attribute))).append(", condition, this::").append(getter).append(");\n")
+                  .append(indent(--shift)).append("}\n\n");
+
+            writer.append(indent(shift)).append("/**\n")
+                  .append(indent(shift)).append(" * Wait until the value of '").append(attribute.getName()).append("' satisfies the condition.\n")
+                  .append(indent(shift)).append(" */\n")
+                  .append(indent(shift++)).append("public ").append(type.toString()).append(" await").append(name).append("(java.util.function.Predicate<? super ").append(valueType).append("> condition, java.time.Duration timeout) throws InterruptedException, java.util.concurrent.TimeoutException {\n")
+                  .append(indent(shift)).append("if(timeout == null) throw new IllegalArgumentException(\"the argument 'timeout' should not be null.\");\n")
+                  .append(indent(shift)).append("return ").append(waitersClass).append(".get(await").append(name).append("(condition), timeout);\n")
+                  .append(indent(--shift)).append("}\n\n");
+        }
+        return shift;
+    }
+
+    /**
+     * Generate &lt;property&gt;Changes() for each modifiable property, and the nested classes of the publishers.
+     */
+    protected int generateFlowPublishers(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        String awareType = PropertyChangeEventAware.class.getName();
+
+        for (Attribute attribute : getListenableAttributes(definition)) {
+            TypeMirror type = attribute.getType();
+            String valueType = isPrimitive(type) ? typeUtils.boxedClass((PrimitiveType) type).getQualifiedName().toString() : type.toString();
+
+            writer.append(indent(shift)).append("/**\n")
+                  .append(indent(shift)).append(" * @return a publisher of the new values of '").append(attribute.getName()).append("'. a subscriber which falls behind receives only the latest value.\n")
+                  .append(indent(shift)).append(" */\n")
+                  .append(indent(shift++)).append("public java.util.concurrent.Flow.Publisher<").append(valueType).append("> ").append(attribute.getName()).append("Changes() {\n")
+                  .append(indent(shift)).append("return new ").append(PUBLISHER_CLASS).append("<").append(valueType).append(">(this, \"").append(attribute.getName()).append("\");\n")
+                  .append(indent(--shift)).append("}\n\n");
+        }
+
+        writer.append(indent(shift++)).append("private static final class ").append(PUBLISHER_CLASS).append("<T> implements java.util.concurrent.Flow.Publisher<T> {\n")
+              .append(indent(shift)).append("private final ").append(awareType).append(" source;\n")
+              .append(indent(shift)).append("private final String propertyName;\n\n")
+              .append(indent(shift++)).append(PUBLISHER_CLASS).append("(").append(awareType).append(" source, String propertyName) {\n")
+              .append(indent(shift)).append("this.source = source;\n")
+              .append(indent(shift)).append("this.propertyName = propertyName;\n")
+              .append(indent(--shift)).append("}\n\n")
+              .append(indent(shift)).append("@Override\n")
+              .append(indent(shift++)).append("public void subscribe(java.util.concurrent.Flow.Subscriber<? super T> subscriber) {\n")
+              .append(indent(shift)).append("if(subscriber == null) throw new NullPointerException(\"the argument 'subscriber' should not be null.\");\n")
+              .append(indent(shift)).append(SUBSCRIPTION_CLASS).append("<T> subscription = new ").append(SUBSCRIPTION_CLASS).append("<T>(this.source, this.propertyName, subscriber);\n")
+              .append(indent(shift)).append("subscriber.onSubscribe(subscription);\n")
+              .append(indent(shift)).append("subscription.start();\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("private static final class ").append(SUBSCRIPTION_CLASS).append("<T> extends ").append(LatestValueSubscription.class.getName()).append(" implements java.util.concurrent.Flow.Subscription {\n")
+              .append(indent(shift)).append("private final java.util.concurrent.Flow.Subscriber<? super T> subscriber;\n\n")
+              .append(indent(shift++)).append(SUBSCRIPTION_CLASS).append("(").append(awareType).append(" source, String propertyName, java.util.concurrent.Flow.Subscriber<? super T> subscriber) {\n")
+              .append(indent(shift)).append("super(source, propertyName);\n")
+              .append(indent(shift)).append("this.subscriber = subscriber;\n")
+              .append(indent(--shift)).append("}\n\n")
+              .append(indent(shift)).append("@Override\n")
+              .append(indent(shift)).append("@SuppressWarnings(\"unchecked\")\n")
+              .append(indent(shift++)).append("protected void emit(Object value) {\n")
+              .append(indent(shift)).append("this.subscriber.onNext((T) value);\n")
+              .append(indent(--shift)).append("}\n\n")
+              .append(indent(shift)).append("@Override\n")
+              .append(indent(shift++)).append("protected void fail(Throwable error) {\n")
+              .append(indent(shift)).append("this.subscriber.onError(error);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate setEventExecutor() and flushEvents() for the asynchronous delivery of events.
+     */
+    protected int generateEventDispatchAccessors(Writer writer, int shift, AnnotationMirror annotation) throws IOException {
+        boolean lazy = isLazyInfrastructure(annotation);
+        String support = lazy ? PROPERTY_SUPPORT + "()" : "this." + PROPERTY_SUPPORT;
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Change the executor which delivers PropertyChangeEvents. a shared daemon thread pool is used by default.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void setEventExecutor(java.util.concurrent.Executor executor) {\n")
+              .append(indent(shift)).append(support).append(".setExecutor(executor);\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Deliver all PropertyChangeEvents which are published before this call.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void flushEvents() {\n");
+        if(lazy) {
+            writer.append(indent(shift)).append("if(this.propertySupport == null) return;\n");
+        }
+        writer.append(indent(shift)).append("this.propertySupport.flushEvents();\n")
+              .append(indent(--shift)).append("}\n\n");
+        return shift;
+    }
+
+    /**
+     * Generate on&lt;Property&gt;Changed() and remove&lt;Property&gt;ChangedListener() for each modifiable property.
+     */
+    protected int generateTypedListenerAccessors(Writer writer, int shift, AnnotationMirror annotation, ClassDefinition definition) throws IOException {
+        boolean lazy = isLazyInfrastructure(annotation);
+        String support = lazy ? PROPERTY_SUPPORT + "()" : "this." + PROPERTY_SUPPORT;
+
+        for (Attribute attribute : getListenableAttributes(definition)) {
+            String name = capitalize(attribute.getName());
+            String listenerType = typedListenerOf(attribute.getType());
+            int index = propertyIndexOf(definition, attribute);
+
+            writer.append(indent(shift++)).append("public void on").append(name).append("Changed(").append(listenerType).append(" listener) {\n")
+                  .append(indent(shift)).append("if(listener == null) throw new IllegalArgumentException(\"the argument 'listener' should not be null.\");\n")
+                  .append(indent(shift)).append(support).append(".addTypedListener(").append(String.valueOf(index)).append(", listener);\n")
+                  .append(indent(--shift)).append("}\n\n");
+
+            writer.append(indent(shift++)).append("public void remove").append(name).append("ChangedListener(").append(listenerType).append(" listener) {\n")
+                  .append(indent(shift)).append("if(listener == null) throw new IllegalArgumentException(\"the argument 'listener' should not be null.\");\n");
+            if(lazy) {
+                writer.append(indent(shift)).append("if(this.propertySupport == null) return;\n");
+            }
+            writer.append(indent(shift)).append("this.propertySupport.removeTypedListener(").append(String.valueOf(index)).append(", listener);\n")
+                  .append(indent(--shift)).append("}\n\n");
+        }
         return shift;
     }
 
+    /**
+     * @return the modifiable fields and properties, whose modifiers fire PropertyChangeEvents.
+     */
+    protected final List<Attribute> getListenableAttributes(ClassDefinition definition) {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (Field field : definition.getInnerFields(typeUtils)) {
+            if(!field.isIgnored() && !field.isReadOnly()) attributes.add(field);
+        }
+        for (Property property : definition.getProperties()) {
+            if(!property.isIgnored() && property.isWritable()) attributes.add(property);
+        }
+        return attributes;
+    }
+
+    /**
+     * @return the name of the typed listener which PropertyChangeListenerRegistry calls for a property of the type.
+     */
+    protected final String typedListenerOf(TypeMirror type) {
+        switch(type.getKind()) {
+            case BOOLEAN:
+                return BooleanChangeListener.class.getName();
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+                return IntChangeListener.class.getName();
+            case LONG:
+                return LongChangeListener.class.getName();
+            case FLOAT:
+            case DOUBLE:
+                return DoubleChangeListener.class.getName();
+            default:
+                return ValueChangeListener.class.getName() + "<? super " + type.toString() + ">";
+        }
+    }
+
     /**
      * users can override this method for generate other methods.
      * @param writer A writer for outputting code.
@@ -929,6 +3878,51 @@ public class InterfaceProcessor extends AbstractProcessor {
     }
 
 
+    /**
+     * @return the literal of the default value of a field of the type.
+     */
+    protected final String defaultValueOf(TypeMirror type) {
+        switch(type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+                return "(byte) 0";
+            case SHORT:
+                return "(short) 0";
+            case CHAR:
+                return "'\\0'";
+            case INT:
+                return "0";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0.0f";
+            case DOUBLE:
+                return "0.0d";
+            default:
+                return "null";
+        }
+    }
+
+    protected final boolean isCounter(Attribute attribute) {
+        return (attribute instanceof Property) && ((Property) attribute).isCounter();
+    }
+
+    /**
+     * @param prefix the prefix for accessing the field like "this." or "other.".
+     * an empty prefix means that the value is a local copy and it is referred as it is.
+     * @return an expression for reading the value of an attribute.
+     */
+    protected final String valueExpression(Attribute attribute, String prefix) {
+        String safeName = prefix + toSafeName(attribute.getName());
+        if(prefix.length() == 0 || !isCounter(attribute)) return safeName;
+
+        if(attribute.getType().getKind() == TypeKind.INT) {
+            return "((int) " + safeName + ".sum())";
+        }
+        return safeName + ".sum()";
+    }
+
     protected final String retain(Attribute attribute) {
         return retain(attribute, "");
     }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+import static com.shelfmap.interfaceprocessor.util.Strings.toConstantName;
+
+/**
+ * Generates the JSON class of a class annotated with {@code @GenerateClass(generateJson = true)}.
+ *
+ * @author Tsutomu YANO
+ */
+public class JsonGenerator extends CompanionGenerator {
+    private static final String JSON_SUFFIX = "Json";
+
+    public JsonGenerator(InterfaceProcessor processor, ProcessingEnvironment processingEnv) {
+        super(processor, processingEnv, JSON_SUFFIX);
+    }
+
+    /**
+     * Generate writeTo() and read() of JSON. The names of the members, with the preceding brace or comma and the following colon,
+     * are string constants for an Appendable and UTF-8 byte arrays for an OutputStream.
+     * read() switches on a slot computed from the hash returned by JsonReader.nextName(). The size of the table is the smallest power of two
+     * in which the names of the properties do not collide, so each case compares only one name in most classes.
+     */
+    @Override
+    protected void generate(Writer writer, ClassDefinition definition, String packageName, String className, String jsonName) throws IOException {
+        Types typeUtils = processingEnv.getTypeUtils();
+        List<Attribute> attributes = getSerializedAttributes(definition);
+        String typeName = definition.getPackage() + "." + definition.getClassName();
+        String jsonStreams = JsonStreams.class.getName();
+        String jsonReader = JsonReader.class.getName();
+
+        int mask = jsonSlotMask(attributes);
+        Map<Integer, List<Attribute>> slots = new TreeMap<Integer, List<Attribute>>();
+        for (Attribute attribute : attributes) {
+            int hash = attribute.getName().hashCode();
+            Integer slot = (hash ^ (hash >>> 16)) & mask;
+            if(!slots.containsKey(slot)) slots.put(slot, new ArrayList<Attribute>());
+            slots.get(slot).add(attribute);
+        }
+
+        generateCompanionHeader(writer, packageName, jsonName);
+        int shift = 1;
+        boolean isFirst = true;
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift)).append("private static final byte[] ").append(toConstantName(attribute.getName())).append("_NAME = ")
+                  .append(jsonStreams).append(".bytes(\"").append(jsonNameLiteral(attribute, isFirst)).append("\");\n");
+            isFirst = false;
+        }
+        for (Attribute attribute : attributes) {
+            if(isEnum(attribute)) {
+                String enumName = typeUtils.erasure(attribute.getType()).toString();
+                writer.append(indent(shift)).append("private static final ").append(enumName).append("[] ").append(toConstantName(attribute.getName())).append("_VALUES = ").append(enumName).append(".values();\n");
+            }
+        }
+        writer.append(attributes.isEmpty() ? "" : "\n")
+              .append(indent(shift++)).append("private ").append(jsonName).append("() {\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        for (String sink : new String[]{"Appendable", "java.io.OutputStream"}) {
+            boolean bytes = !sink.equals("Appendable");
+            writer.append(indent(shift)).append("/**\n")
+                  .append(indent(shift)).append(bytes ? " * Write the value as a JSON object in UTF-8. the stream should be buffered.\n" : " * Write the value as a JSON object.\n")
+                  .append(indent(shift)).append(" */\n")
+                  .append(indent(shift++)).append("public static void writeTo(").append(typeName).append(" value, ").append(sink).append(" out) throws java.io.IOException {\n")
+                  .append(indent(shift)).append("if(value == null) throw new IllegalArgumentException(\"the argument 'value' should not be null.\");\n")
+                  .append(indent(shift)).append("if(out == null) throw new IllegalArgumentException(\"the argument 'out' should not be null.\");\n");
+            if(attributes.isEmpty()) {
+                writer.append(indent(shift)).append(bytes ? "out.write('{');\n" : "out.append('{');\n");
+            }
+            isFirst = true;
+            for (Attribute attribute : attributes) {
+                writer.append(indent(shift)).append(bytes
+                        ? "out.write(" + toConstantName(attribute.getName()) + "_NAME);\n"
+                        : "out.append(\"" + jsonNameLiteral(attribute, isFirst) + "\");\n");
+                isFirst = false;
+                generateJsonWrite(writer, shift, attribute, getterExpression(attribute));
+            }
+            writer.append(indent(shift)).append(bytes ? "out.write('}');\n" : "out.append('}');\n")
+                  .append(indent(--shift)).append("}\n\n");
+        }
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Read a JSON object. the members which are not the properties are skipped, and the missing properties have their default values.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the new object, or null if the value is null.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static ").append(className).append(" read(").append(jsonReader).append(" reader) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if(reader == null) throw new IllegalArgumentException(\"the argument 'reader' should not be null.\");\n")
+              .append(indent(shift)).append("if (reader.nextIfNull()) return null;\n");
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(attribute.getName()).append("Value = ").append(defaultValueOf(attribute.getType())).append(";\n");
+        }
+        writer.append(indent(shift)).append("reader.beginObject();\n")
+              .append(indent(shift++)).append("while (reader.hasNext()) {\n")
+              .append(indent(shift)).append("int hash = reader.nextName();\n");
+        if(!attributes.isEmpty()) {
+            writer.append(indent(shift++)).append("switch ((hash ^ (hash >>> 16)) & ").append(String.valueOf(mask)).append(") {\n");
+            for (Map.Entry<Integer, List<Attribute>> entry : slots.entrySet()) {
+                writer.append(indent(shift++)).append("case ").append(entry.getKey().toString()).append(":\n");
+                for (Attribute attribute : entry.getValue()) {
+                    writer.append(indent(shift++)).append("if (reader.nameEquals(\"").append(attribute.getName()).append("\")) {\n")
+                          .append(indent(shift)).append(attribute.getName()).append("Value = ").append(jsonReadExpression(attribute)).append(";\n")
+                          .append(indent(shift)).append("continue;\n")
+                          .append(indent(--shift)).append("}\n");
+                }
+                writer.append(indent(shift--)).append("break;\n");
+            }
+            writer.append(indent(--shift)).append("}\n");
+        }
+        writer.append(indent(shift)).append("reader.skipValue();\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("reader.endObject();\n")
+              .append(indent(shift)).append("return new ").append(className).append("(");
+        isFirst = true;
+        for (Attribute attribute : attributes) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(attribute.getName()).append("Value");
+        }
+        writer.append(");\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Read a JSON object which is the whole input. content after the object is reported by an IOException.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static ").append(className).append(" read(java.io.Reader in) throws java.io.IOException {\n")
+              .append(indent(shift)).append(jsonReader).append(" reader = new ").append(jsonReader).append("(in);\n")
+              .append(indent(shift)).append(className).append(" value = read(reader);\n")
+              .append(indent(shift)).append("reader.endDocument();\n")
+              .append(indent(shift)).append("return value;\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Read a JSON object in UTF-8 which is the whole input.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public static ").append(className).append(" read(java.io.InputStream in) throws java.io.IOException {\n")
+              .append(indent(shift)).append("if(in == null) throw new IllegalArgumentException(\"the argument 'in' should not be null.\");\n")
+              .append(indent(shift)).append("return read(new java.io.InputStreamReader(in, \"UTF-8\"));\n")
+              .append(indent(--shift)).append("}\n");
+        writer.append("}");
+    }
+
+    /**
+     * @return the smallest mask of a power of two in which the hashes of the names do not collide. if the hashes themselves collide,
+     * the mask of the table sixteen times as large as the number of the names.
+     */
+    private int jsonSlotMask(List<Attribute> attributes) {
+        int size = 1;
+        while(size < attributes.size()) size <<= 1;
+        for (; size <= Math.max(attributes.size() * 4, 1) << 2; size <<= 1) {
+            Set<Integer> slots = new HashSet<Integer>();
+            boolean perfect = true;
+            for (Attribute attribute : attributes) {
+                int hash = attribute.getName().hashCode();
+                if(!slots.add((hash ^ (hash >>> 16)) & (size - 1))) {
+                    perfect = false;
+                    break;
+                }
+            }
+            if(perfect) return size - 1;
+        }
+        return (size >> 1) - 1;
+    }
+
+    /**
+     * @return the name of the member in a Java string literal, preceded by a brace for the first member or a comma, and followed by a colon.
+     */
+    private String jsonNameLiteral(Attribute attribute, boolean isFirst) {
+        return (isFirst ? "{" : ",") + "\\\"" + attribute.getName() + "\\\":";
+    }
+
+    private void generateJsonWrite(Writer writer, int shift, Attribute attribute, String value) throws IOException {
+        String jsonStreams = JsonStreams.class.getName();
+        TypeMirror type = attribute.getType();
+        if(isEnum(attribute)) {
+            writer.append(indent(shift)).append(jsonStreams).append(".writeEnum(out, ").append(value).append(");\n");
+        } else if(isPrimitive(type)) {
+            writer.append(indent(shift)).append(jsonStreams).append(".").append(jsonWriteMethodOf(type.getKind())).append("(out, ").append(value).append(");\n");
+        } else if(isWrapper(attribute)) {
+            String local = attribute.getName() + "Value";
+            writer.append(indent(shift)).append(type.toString()).append(" ").append(local).append(" = ").append(value).append(";\n")
+                  .append(indent(shift)).append("if (").append(local).append(" == null) ").append(jsonStreams).append(".writeNull(out); else ")
+                  .append(jsonStreams).append(".").append(jsonWriteMethodOf(unboxedKind(type))).append("(out, ").append(local).append(");\n");
+        } else {
+            writer.append(indent(shift)).append(jsonStreams).append(".writeString(out, ").append(value).append(");\n");
+        }
+    }
+
+    private String jsonWriteMethodOf(TypeKind kind) {
+        switch(kind) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return "writeLong";
+            default:
+                return "write" + dataMethodOf(kind);
+        }
+    }
+
+    private String jsonReadExpression(Attribute attribute) {
+        TypeMirror type = attribute.getType();
+        if(isEnum(attribute)) {
+            return "reader.nextEnum(" + toConstantName(attribute.getName()) + "_VALUES)";
+        } else if(isPrimitive(type)) {
+            return "reader.next" + dataMethodOf(type.getKind()) + "()";
+        } else if(isWrapper(attribute)) {
+            return "reader.nextIfNull() ? null : " + type.toString() + ".valueOf(reader.next" + dataMethodOf(unboxedKind(type)) + "())";
+        }
+        return "reader.nextString()";
+    }
+}
@@ -0,0 +1,380 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A pull parser of JSON which the generated JSON classes read with. It builds no tree.
+ * nextName() does not create a String. It returns the hash of the name, which is the same as String.hashCode(),
+ * and the name can be compared by nameEquals(String). Malformed input is reported by an IOException.
+ * An instance is not thread-safe.
+ *
+ * @author Tsutomu YANO
+ */
+public final class JsonReader {
+    private final Reader in;
+    private final char[] buffer = new char[1024];
+    private int position;
+    private int limit;
+    private long consumed;
+
+    private char[] text = new char[64];
+    private int textLength;
+
+    private boolean[] first = new boolean[16];
+    private int depth;
+    private boolean pending;
+
+    public JsonReader(Reader in) {
+        if(in == null) throw new IllegalArgumentException("the argument 'in' should not be null.");
+        this.in = in;
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+        if(++depth == first.length) {
+            boolean[] grown = new boolean[first.length << 1];
+            System.arraycopy(first, 0, grown, 0, first.length);
+            first = grown;
+        }
+        first[depth] = true;
+        pending = false;
+    }
+
+    public void endObject() throws IOException {
+        if(depth == 0 || pending) throw malformed("unexpected end of an object");
+        expect('}');
+        depth--;
+    }
+
+    /**
+     * Check that the input ends after the value read last, allowing only whitespaces.
+     */
+    public void endDocument() throws IOException {
+        if(depth != 0) throw malformed("unclosed object");
+        if(peek() != -1) throw malformed("unexpected content after the value");
+    }
+
+    /**
+     * @return true if the current object has one more member. it can be called repeatedly before nextName().
+     */
+    public boolean hasNext() throws IOException {
+        if(pending) return true;
+        if(depth == 0) throw malformed("not in an object");
+        int c = peek();
+        if(c == '}') return false;
+        if(!first[depth]) {
+            expect(',');
+        }
+        first[depth] = false;
+        pending = true;
+        return true;
+    }
+
+    /**
+     * Read the name of the next member and the following colon.
+     *
+     * @return the hash of the name, which is equal to String.hashCode() of the name.
+     */
+    public int nextName() throws IOException {
+        if(!hasNext()) throw malformed("no more member");
+        pending = false;
+        expect('"');
+        int hash = readText();
+        expect(':');
+        return hash;
+    }
+
+    /**
+     * @return true if the name read by the last nextName() is equal to the argument.
+     */
+    public boolean nameEquals(String name) {
+        if(name.length() != textLength) return false;
+        for (int i = 0; i < textLength; i++) {
+            if(text[i] != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * If the next value is null, consume it.
+     *
+     * @return true if the next value was null.
+     */
+    public boolean nextIfNull() throws IOException {
+        if(peek() != 'n') return false;
+        expectLiteral("null");
+        return true;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        int c = peek();
+        if(c == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        if(c == 'f') {
+            expectLiteral("false");
+            return false;
+        }
+        throw malformed("expected a boolean");
+    }
+
+    public String nextString() throws IOException {
+        if(nextIfNull()) return null;
+        expect('"');
+        readText();
+        return new String(text, 0, textLength);
+    }
+
+    public char nextChar() throws IOException {
+        expect('"');
+        readText();
+        if(textLength != 1) throw malformed("expected a string of one character");
+        return text[0];
+    }
+
+    /**
+     * Read a string and return the constant of the same name, without creating the string.
+     */
+    public <E extends Enum<E>> E nextEnum(E[] constants) throws IOException {
+        if(nextIfNull()) return null;
+        expect('"');
+        readText();
+        for (E constant : constants) {
+            if(nameEquals(constant.name())) return constant;
+        }
+        throw malformed("unknown constant '" + new String(text, 0, textLength) + "'");
+    }
+
+    public byte nextByte() throws IOException {
+        long value = nextLong();
+        if(value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) throw malformed(value + " is out of the range of byte");
+        return (byte) value;
+    }
+
+    public short nextShort() throws IOException {
+        long value = nextLong();
+        if(value < Short.MIN_VALUE || value > Short.MAX_VALUE) throw malformed(value + " is out of the range of short");
+        return (short) value;
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw malformed(value + " is out of the range of int");
+        return (int) value;
+    }
+
+    public long nextLong() throws IOException {
+        readNumber();
+        int i = 0;
+        boolean negative = text[0] == '-';
+        if(negative) i++;
+        if(i == textLength) throw malformed("expected an integer");
+        //accumulate negatively, because the range of negative longs is larger.
+        long value = 0L;
+        for (; i < textLength; i++) {
+            char c = text[i];
+            if(c < '0' || c > '9') throw malformed("expected an integer");
+            if(value < (Long.MIN_VALUE + (c - '0')) / 10L) throw malformed("the integer is out of the range of long");
+            value = value * 10L - (c - '0');
+        }
+        if(negative) return value;
+        if(value == Long.MIN_VALUE) throw malformed("the integer is out of the range of long");
+        return -value;
+    }
+
+    public float nextFloat() throws IOException {
+        readNumber();
+        try {
+            return Float.parseFloat(new String(text, 0, textLength));
+        } catch (NumberFormatException ex) {
+            throw malformed("expected a number");
+        }
+    }
+
+    public double nextDouble() throws IOException {
+        readNumber();
+        try {
+            return Double.parseDouble(new String(text, 0, textLength));
+        } catch (NumberFormatException ex) {
+            throw malformed("expected a number");
+        }
+    }
+
+    /**
+     * Skip the next value, including all members of an object or all elements of an array.
+     */
+    public void skipValue() throws IOException {
+        int c = peek();
+        switch(c) {
+            case '{':
+            case '[':
+                char close = c == '{' ? '}' : ']';
+                position++;
+                consumed++;
+                if(peek() == close) {
+                    position++;
+                    consumed++;
+                    return;
+                }
+                do {
+                    if(close == '}') {
+                        expect('"');
+                        readText();
+                        expect(':');
+                    }
+                    skipValue();
+                } while (consumeIf(','));
+                expect(close);
+                return;
+            case '"':
+                position++;
+                consumed++;
+                readText();
+                return;
+            case 't':
+                expectLiteral("true");
+                return;
+            case 'f':
+                expectLiteral("false");
+                return;
+            case 'n':
+                expectLiteral("null");
+                return;
+            default:
+                readNumber();
+        }
+    }
+
+    /**
+     * Read the rest of a string after the opening quote into the text, and return its hash.
+     */
+    private int readText() throws IOException {
+        int hash = 0;
+        textLength = 0;
+        while(true) {
+            int c = read();
+            if(c == '"') return hash;
+            if(c == '\\') {
+                c = read();
+                switch(c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if(digit < 0) throw malformed("malformed unicode escape");
+                            c = (c << 4) | digit;
+                        }
+                        break;
+                    default:
+                        throw malformed("unknown escape");
+                }
+            } else if(c < 0x20) {
+                throw malformed("unescaped control character in a string");
+            }
+            append((char) c);
+            hash = 31 * hash + c;
+        }
+    }
+
+    private void readNumber() throws IOException {
+        skipWhitespace();
+        textLength = 0;
+        while(true) {
+            if(position == limit && !fill()) break;
+            char c = buffer[position];
+            if((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                append(c);
+                position++;
+                consumed++;
+            } else {
+                break;
+            }
+        }
+        if(textLength == 0) throw malformed("expected a number");
+    }
+
+    private void append(char c) {
+        if(textLength == text.length) {
+            char[] grown = new char[text.length << 1];
+            System.arraycopy(text, 0, grown, 0, textLength);
+            text = grown;
+        }
+        text[textLength++] = c;
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        skipWhitespace();
+        for (int i = 0; i < literal.length(); i++) {
+            if(read() != literal.charAt(i)) throw malformed("expected " + literal);
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if(peek() != expected) throw malformed("expected '" + expected + "'");
+        position++;
+        consumed++;
+    }
+
+    private boolean consumeIf(char expected) throws IOException {
+        if(peek() != expected) return false;
+        position++;
+        consumed++;
+        return true;
+    }
+
+    /**
+     * @return the next character which is not a whitespace without consuming it, or -1 at the end of the input.
+     */
+    private int peek() throws IOException {
+        skipWhitespace();
+        return position < limit ? buffer[position] : -1;
+    }
+
+    private void skipWhitespace() throws IOException {
+        while(position < limit || fill()) {
+            char c = buffer[position];
+            if(c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            position++;
+            consumed++;
+        }
+    }
+
+    private int read() throws IOException {
+        if(position == limit && !fill()) throw malformed("unexpected end of the input");
+        consumed++;
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int count = in.read(buffer, 0, buffer.length);
+        if(count <= 0) return false;
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("malformed JSON at " + consumed + ": " + message + ".");
+    }
+}
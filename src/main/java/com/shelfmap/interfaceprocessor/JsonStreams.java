@@ -0,0 +1,249 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Writing helpers for the generated JSON classes. Each method has a version for an Appendable and
+ * a version for an OutputStream, which encodes into UTF-8 by itself.
+ * Strings and integers are written without allocation. An OutputStream is written byte by byte,
+ * so it should be buffered.
+ *
+ * @author Tsutomu YANO
+ */
+public final class JsonStreams {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] NULL = bytes("null");
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] MIN_LONG = bytes(Long.toString(Long.MIN_VALUE));
+
+    private JsonStreams() {
+        super();
+    }
+
+    /**
+     * @return the UTF-8 bytes of a text, used for the names of properties which are encoded when a generated class is initialized.
+     */
+    public static byte[] bytes(String text) {
+        return text.getBytes(UTF_8);
+    }
+
+    public static void writeNull(Appendable out) throws IOException {
+        out.append("null");
+    }
+
+    public static void writeNull(OutputStream out) throws IOException {
+        out.write(NULL);
+    }
+
+    public static void writeBoolean(Appendable out, boolean value) throws IOException {
+        out.append(value ? "true" : "false");
+    }
+
+    public static void writeBoolean(OutputStream out, boolean value) throws IOException {
+        out.write(value ? TRUE : FALSE);
+    }
+
+    public static void writeLong(Appendable out, long value) throws IOException {
+        if(value == Long.MIN_VALUE) {
+            out.append(Long.toString(Long.MIN_VALUE));
+            return;
+        }
+        if(value < 0L) {
+            out.append('-');
+            value = -value;
+        }
+        long divisor = 1L;
+        while(value / divisor >= 10L) divisor *= 10L;
+        for (; divisor > 0L; divisor /= 10L) {
+            out.append((char) ('0' + (value / divisor) % 10L));
+        }
+    }
+
+    public static void writeLong(OutputStream out, long value) throws IOException {
+        if(value == Long.MIN_VALUE) {
+            out.write(MIN_LONG);
+            return;
+        }
+        if(value < 0L) {
+            out.write('-');
+            value = -value;
+        }
+        long divisor = 1L;
+        while(value / divisor >= 10L) divisor *= 10L;
+        for (; divisor > 0L; divisor /= 10L) {
+            out.write((int) ('0' + (value / divisor) % 10L));
+        }
+    }
+
+    /**
+     * JSON can not represent NaN nor infinities, so they are rejected.
+     */
+    public static void writeDouble(Appendable out, double value) throws IOException {
+        out.append(Double.toString(checkFinite(value)));
+    }
+
+    public static void writeDouble(OutputStream out, double value) throws IOException {
+        writeAscii(out, Double.toString(checkFinite(value)));
+    }
+
+    public static void writeFloat(Appendable out, float value) throws IOException {
+        out.append(Float.toString((float) checkFinite(value)));
+    }
+
+    public static void writeFloat(OutputStream out, float value) throws IOException {
+        writeAscii(out, Float.toString((float) checkFinite(value)));
+    }
+
+    public static void writeChar(Appendable out, char value) throws IOException {
+        out.append('"');
+        writeEscaped(out, value);
+        out.append('"');
+    }
+
+    public static void writeChar(OutputStream out, char value) throws IOException {
+        out.write('"');
+        if(value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE) {
+            //a lone surrogate can not be encoded into UTF-8.
+            writeUnicodeEscape(out, value);
+        } else {
+            writeEscaped(out, value);
+        }
+        out.write('"');
+    }
+
+    public static void writeString(Appendable out, String value) throws IOException {
+        if(value == null) {
+            writeNull(out);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            writeEscaped(out, value.charAt(i));
+        }
+        out.append('"');
+    }
+
+    public static void writeString(OutputStream out, String value) throws IOException {
+        if(value == null) {
+            writeNull(out);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out.write(0xF0 | (codePoint >> 18));
+                    out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                    out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                    out.write(0x80 | (codePoint & 0x3F));
+                } else {
+                    writeUnicodeEscape(out, c);
+                }
+            } else {
+                writeEscaped(out, c);
+            }
+        }
+        out.write('"');
+    }
+
+    public static void writeEnum(Appendable out, Enum<?> value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    public static void writeEnum(OutputStream out, Enum<?> value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    private static double checkFinite(double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value)) throw new IllegalArgumentException("JSON can not represent " + value + ".");
+        return value;
+    }
+
+    private static void writeAscii(OutputStream out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            out.write(text.charAt(i));
+        }
+    }
+
+    private static void writeEscaped(Appendable out, char c) throws IOException {
+        switch(c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if(c < 0x20) {
+                    out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                } else {
+                    out.append(c);
+                }
+        }
+    }
+
+    /**
+     * Write a char which is not a surrogate.
+     */
+    private static void writeEscaped(OutputStream out, char c) throws IOException {
+        switch(c) {
+            case '"':
+                out.write('\\');
+                out.write('"');
+                break;
+            case '\\':
+                out.write('\\');
+                out.write('\\');
+                break;
+            case '\n':
+                out.write('\\');
+                out.write('n');
+                break;
+            case '\r':
+                out.write('\\');
+                out.write('r');
+                break;
+            case '\t':
+                out.write('\\');
+                out.write('t');
+                break;
+            default:
+                if(c < 0x20) {
+                    writeUnicodeEscape(out, c);
+                } else if(c < 0x80) {
+                    out.write(c);
+                } else if(c < 0x800) {
+                    out.write(0xC0 | (c >> 6));
+                    out.write(0x80 | (c & 0x3F));
+                } else {
+                    out.write(0xE0 | (c >> 12));
+                    out.write(0x80 | ((c >> 6) & 0x3F));
+                    out.write(0x80 | (c & 0x3F));
+                }
+        }
+    }
+
+    private static void writeUnicodeEscape(OutputStream out, char c) throws IOException {
+        out.write('\\');
+        out.write('u');
+        out.write(HEX[c >> 12]);
+        out.write(HEX[(c >> 8) & 0xF]);
+        out.write(HEX[(c >> 4) & 0xF]);
+        out.write(HEX[c & 0xF]);
+    }
+}
@@ -0,0 +1,124 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A subscription to the changes of a property, which is the base of the subscriptions of the generated
+ * &lt;property&gt;Changes() publishers.
+ * The new values are delivered only while the subscriber has requested them. While the subscriber has no demand,
+ * only the latest new value is kept, so a burst of changes is conflated into one value instead of being queued.
+ *
+ * Values are delivered one at a time, by the thread which changes the property or the thread which requests values.
+ * A change to null is not delivered, because a reactive stream can not carry null.
+ *
+ * @author Tsutomu YANO
+ */
+public abstract class LatestValueSubscription implements PropertyChangeListener {
+    private final PropertyChangeEventAware source;
+    private final String propertyName;
+    private final AtomicReference<Object> latest = new AtomicReference<Object>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger work = new AtomicInteger();
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    protected LatestValueSubscription(PropertyChangeEventAware source, String propertyName) {
+        if(source == null) throw new IllegalArgumentException("the argument 'source' should not be null.");
+        if(propertyName == null) throw new IllegalArgumentException("the argument 'propertyName' should not be null.");
+        this.source = source;
+        this.propertyName = propertyName;
+    }
+
+    /**
+     * Start listening the property. the changes made before this call are not delivered.
+     */
+    public final void start() {
+        this.source.addPropertyChangeListener(this.propertyName, this);
+        if(this.cancelled) {
+            this.source.removePropertyChangeListener(this.propertyName, this);
+        }
+    }
+
+    /**
+     * Add n to the demand. if n is not positive, the subscription is cancelled and an IllegalArgumentException is
+     * passed to {@link #fail(Throwable)}.
+     */
+    public final void request(long n) {
+        if(this.cancelled) return;
+        if(n <= 0) {
+            this.error = new IllegalArgumentException("the number of requested values must be positive, but was " + n + ".");
+        } else {
+            for(;;) {
+                long current = this.demand.get();
+                long next = current + n;
+                if(next < 0) next = Long.MAX_VALUE;
+                if(this.demand.compareAndSet(current, next)) break;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Stop listening the property. no value is delivered after this call returns, except the value being delivered.
+     */
+    public final void cancel() {
+        if(!this.cancelled) {
+            this.cancelled = true;
+            this.source.removePropertyChangeListener(this.propertyName, this);
+        }
+    }
+
+    @Override
+    public final void propertyChange(PropertyChangeEvent event) {
+        Object value = event.getNewValue();
+        if(value != null && !this.cancelled) {
+            this.latest.set(value);
+            drain();
+        }
+    }
+
+    /**
+     * Deliver the latest value if it is requested. only one thread at a time runs the loop, and the other threads only
+     * increment 'work' so that the running thread checks again.
+     */
+    private void drain() {
+        if(this.work.getAndIncrement() != 0) return;
+        int missed = 1;
+        for(;;) {
+            if(this.cancelled) {
+                this.latest.set(null);
+            } else if(this.error != null) {
+                Throwable failure = this.error;
+                cancel();
+                fail(failure);
+            } else if(this.demand.get() > 0) {
+                Object value = this.latest.getAndSet(null);
+                if(value != null) {
+                    if(this.demand.get() != Long.MAX_VALUE) this.demand.decrementAndGet();
+                    try {
+                        emit(value);
+                    } catch (RuntimeException ex) {
+                        //a subscriber must not throw. the subscription is considered cancelled.
+                        cancel();
+                    }
+                }
+            }
+            missed = this.work.addAndGet(-missed);
+            if(missed == 0) break;
+        }
+    }
+
+    /**
+     * Deliver a new value of the property to the subscriber.
+     */
+    protected abstract void emit(Object value);
+
+    /**
+     * Notify the subscriber of an error. the subscription is already cancelled.
+     */
+    protected abstract void fail(Throwable error);
+}
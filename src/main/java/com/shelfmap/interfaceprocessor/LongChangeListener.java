@@ -0,0 +1,11 @@
+package com.shelfmap.interfaceprocessor;
+
+/**
+ * A listener for a long property, which receives the values without boxing them nor creating a PropertyChangeEvent.
+ * It is registered by the generated method on&lt;Property&gt;Changed().
+ *
+ * @author Tsutomu YANO
+ */
+public interface LongChangeListener {
+    void valueChanged(long oldValue, long newValue);
+}
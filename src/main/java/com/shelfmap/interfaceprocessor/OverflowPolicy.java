@@ -0,0 +1,26 @@
+package com.shelfmap.interfaceprocessor;
+
+/**
+ * What a modifier does when the queue of asynchronous PropertyChangeEvents is full.
+ *
+ * @author Tsutomu YANO
+ */
+public enum OverflowPolicy {
+    /**
+     * the modifier waits until the queue has a room.
+     * a listener which modifies the object while the queue is full delivers the oldest event by itself instead of waiting.
+     */
+    BLOCK,
+
+    /**
+     * the oldest event in the queue is discarded.
+     */
+    DROP_OLDEST,
+
+    /**
+     * each property has at most one pending event. a new change of a property which already has a pending event
+     * replaces the new value of the pending event, so the queue never overflows.
+     * the order of delivery is the order of the first pending changes.
+     */
+    CONFLATE;
+}
@@ -37,6 +37,18 @@ public interface Property extends Attribute {
     boolean isFieldDefined();
     void setFieldDefined(boolean defined);
 
+    /**
+     * @return true if this property is a counter which is backed by a LongAdder.
+     */
+    boolean isCounter();
+    void setCounter(boolean counter);
+
+    /**
+     * @return the name of the lock group of this property, or an empty string if it has no group.
+     */
+    String getLockGroup();
+    void setLockGroup(String lockGroup);
+
     ExecutableElement getReader();
     void setReader(ExecutableElement element);
     ExecutableElement getWriter();
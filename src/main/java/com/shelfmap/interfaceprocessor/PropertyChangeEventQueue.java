@@ -0,0 +1,275 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue of the events of a {@link PropertyChangeListenerRegistry}.
+ * Any thread can publish events into the preallocated slots of the ring, and one thread at a time drains them
+ * in the order of publication. A slot is claimed by compare-and-set on the tail, and is handed to the consumer
+ * by its sequence number, so neither publishers nor the consumer take a lock. The oldest event is taken by
+ * compare-and-set on the head, so a publisher can discard it while the consumer is delivering another event.
+ *
+ * The values of primitive properties are stored as raw bits, so publishing them does not box them.
+ *
+ * @author Tsutomu YANO
+ */
+final class PropertyChangeEventQueue implements Runnable {
+    static final byte BOOLEAN = 0;
+    static final byte BYTE = 1;
+    static final byte SHORT = 2;
+    static final byte CHAR = 3;
+    static final byte INT = 4;
+    static final byte LONG = 5;
+    static final byte FLOAT = 6;
+    static final byte DOUBLE = 7;
+    static final byte OBJECT = 8;
+
+    private static final long WAIT_NANOS = 1000L;
+
+    private final PropertyChangeListenerRegistry registry;
+    private final OverflowPolicy policy;
+    private final int mask;
+
+    //the slot i is free for the position p if sequences[i] == p, and holds the event of the position p if sequences[i] == p + 1.
+    private final AtomicLongArray sequences;
+    private final byte[] kinds;
+    private final int[] indexes;
+    private final long[] oldBits;
+    private final long[] newBits;
+    private final Object[] oldValues;
+    private final Object[] newValues;
+
+    //the pending event of each property for OverflowPolicy.CONFLATE. the ring holds only the indexes of the properties.
+    private final AtomicReferenceArray<Pending> pendings;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile Thread consumer;
+    private volatile Executor executor;
+
+    PropertyChangeEventQueue(PropertyChangeListenerRegistry registry, Executor executor, int capacity, OverflowPolicy policy, int propertyCount) {
+        if(capacity < 1) throw new IllegalArgumentException("the capacity must be 1 or more.");
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.registry = registry;
+        this.executor = executor;
+        this.policy = policy;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.kinds = new byte[size];
+        this.indexes = new int[size];
+        this.oldBits = new long[size];
+        this.newBits = new long[size];
+        this.oldValues = new Object[size];
+        this.newValues = new Object[size];
+        this.pendings = policy == OverflowPolicy.CONFLATE ? new AtomicReferenceArray<Pending>(propertyCount) : null;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    void publish(byte kind, int index, long oldBits, long newBits, Object oldValue, Object newValue) {
+        if(this.policy == OverflowPolicy.CONFLATE) {
+            publishConflated(kind, index, oldBits, newBits, oldValue, newValue);
+        } else {
+            while(!offer(kind, index, oldBits, newBits, oldValue, newValue)) {
+                if(this.policy == OverflowPolicy.DROP_OLDEST) {
+                    dropOldest();
+                } else {
+                    waitForRoom();
+                }
+            }
+        }
+        schedule();
+    }
+
+    private void publishConflated(byte kind, int index, long oldBits, long newBits, Object oldValue, Object newValue) {
+        for(;;) {
+            Pending current = this.pendings.get(index);
+            if(current == null) {
+                if(this.pendings.compareAndSet(index, null, new Pending(kind, oldBits, newBits, oldValue, newValue))) {
+                    //a property is in the ring at most once, so the ring has a room except for a moment while the consumer releases a slot.
+                    while(!offer(kind, index, 0L, 0L, null, null)) {
+                        Thread.yield();
+                    }
+                    return;
+                }
+            } else if(this.pendings.compareAndSet(index, current, new Pending(current.kind, current.oldBits, newBits, current.oldValue, newValue))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the ring is full.
+     */
+    private boolean offer(byte kind, int index, long oldBits, long newBits, Object oldValue, Object newValue) {
+        long position;
+        int slot;
+        for(;;) {
+            position = this.tail.get();
+            slot = (int) position & this.mask;
+            long sequence = this.sequences.get(slot);
+            if(sequence == position) {
+                if(this.tail.compareAndSet(position, position + 1)) break;
+            } else if(sequence < position) {
+                return false;
+            }
+        }
+        this.kinds[slot] = kind;
+        this.indexes[slot] = index;
+        this.oldBits[slot] = oldBits;
+        this.newBits[slot] = newBits;
+        this.oldValues[slot] = oldValue;
+        this.newValues[slot] = newValue;
+        this.sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Take the oldest event and deliver it if deliver is true. only the thread which owns 'draining' can deliver events.
+     * The slot is released before the delivery, so a listener can publish events.
+     *
+     * @return false if no event is available.
+     */
+    private boolean poll(boolean deliver) {
+        long position;
+        int slot;
+        for(;;) {
+            position = this.head.get();
+            slot = (int) position & this.mask;
+            long sequence = this.sequences.get(slot);
+            if(sequence == position + 1) {
+                if(this.head.compareAndSet(position, position + 1)) break;
+            } else if(sequence < position + 1) {
+                return false;
+            }
+        }
+
+        byte kind = this.kinds[slot];
+        int index = this.indexes[slot];
+        long oldBits = this.oldBits[slot];
+        long newBits = this.newBits[slot];
+        Object oldValue = this.oldValues[slot];
+        Object newValue = this.newValues[slot];
+        this.oldValues[slot] = null;
+        this.newValues[slot] = null;
+        this.sequences.lazySet(slot, position + this.mask + 1);
+
+        if(this.pendings != null) {
+            Pending pending = this.pendings.getAndSet(index, null);
+            if(pending == null) return true;
+            kind = pending.kind;
+            oldBits = pending.oldBits;
+            newBits = pending.newBits;
+            oldValue = pending.oldValue;
+            newValue = pending.newValue;
+        }
+        if(deliver) {
+            this.registry.deliver(kind, index, oldBits, newBits, oldValue, newValue);
+        }
+        return true;
+    }
+
+    private boolean isEmpty() {
+        return this.head.get() == this.tail.get();
+    }
+
+    private void dropOldest() {
+        if(!poll(false)) {
+            //the oldest slot is still being written by another publisher.
+            Thread.yield();
+        }
+    }
+
+    private void waitForRoom() {
+        if(this.consumer == Thread.currentThread()) {
+            //a listener is modifying the object. waiting for itself never ends.
+            poll(true);
+        } else {
+            schedule();
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+    }
+
+    private void schedule() {
+        if(!this.draining.get() && this.draining.compareAndSet(false, true)) {
+            Executor current = this.executor;
+            try {
+                (current == null ? DefaultExecutorHolder.EXECUTOR : current).execute(this);
+            } catch (RejectedExecutionException ex) {
+                run();
+            }
+        }
+    }
+
+    /**
+     * Drain the queue. the caller must own 'draining', and it is released by this method.
+     */
+    @Override
+    public void run() {
+        Thread previous = this.consumer;
+        this.consumer = Thread.currentThread();
+        try {
+            while(poll(true)) {
+                //deliver all available events.
+            }
+        } finally {
+            this.consumer = previous;
+            this.draining.set(false);
+            if(!isEmpty()) schedule();
+        }
+    }
+
+    void flush() {
+        if(this.consumer == Thread.currentThread()) {
+            while(poll(true)) {
+                //deliver all available events.
+            }
+            return;
+        }
+        while(!this.draining.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        run();
+    }
+
+    private static final class Pending {
+        private final byte kind;
+        private final long oldBits;
+        private final long newBits;
+        private final Object oldValue;
+        private final Object newValue;
+
+        Pending(byte kind, long oldBits, long newBits, Object oldValue, Object newValue) {
+            this.kind = kind;
+            this.oldBits = oldBits;
+            this.newBits = newBits;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+
+    private static final class DefaultExecutorHolder {
+        private static final Executor EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "property-change-events");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,673 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeListenerProxy;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A replacement of {@link java.beans.PropertyChangeSupport} for generated classes.
+ * The listeners are held in immutable arrays which are replaced by compare-and-set when a listener is added or removed,
+ * so firing events needs no lock. The properties of the generated class are identified by their indexes in the array
+ * of property names given to the constructor, and {@link #hasListeners(int)} is a single volatile read,
+ * so a setter does not box the values nor create an event while nobody is listening.
+ *
+ * Typed listeners such as {@link IntChangeListener} can be registered for the known properties.
+ * They are called by the firePropertyChange() for the type of the property without boxing the values,
+ * and a PropertyChangeEvent is created only if some PropertyChangeListeners are registered for the property.
+ *
+ * Events can be delivered asynchronously through a bounded lock-free queue, see
+ * {@link #PropertyChangeListenerRegistry(Object, String[], Executor, int, OverflowPolicy)}.
+ * The events fired by the name of a property are always delivered synchronously.
+ *
+ * Listeners registered by addWeakPropertyChangeListener() do not keep the listeners alive.
+ * The registrations of collected listeners are removed through a ReferenceQueue when an event is dispatched,
+ * so they do not accumulate on a long-lived object.
+ *
+ * Like PropertyChangeSupport, only serializable listeners are serialized.
+ * A deserialized registry delivers events synchronously.
+ *
+ * @author Tsutomu YANO
+ */
+public final class PropertyChangeListenerRegistry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final PropertyChangeListener[] NO_LISTENERS = new PropertyChangeListener[0];
+    private static final Object[] NO_TYPED_LISTENERS = new Object[0];
+    private static final Listeners EMPTY = new Listeners(NO_LISTENERS, new PropertyChangeListener[0][], Collections.<String, PropertyChangeListener[]>emptyMap(), new Object[0][]);
+
+    private static final AtomicReferenceFieldUpdater<PropertyChangeListenerRegistry, Listeners> LISTENERS_UPDATER
+            = AtomicReferenceFieldUpdater.newUpdater(PropertyChangeListenerRegistry.class, Listeners.class, "listeners");
+
+    private final Object source;
+    private final String[] propertyNames;
+    private transient volatile Listeners listeners = EMPTY;
+    private transient PropertyChangeEventQueue queue;
+    private transient ReferenceQueue<PropertyChangeListener> collected = new ReferenceQueue<PropertyChangeListener>();
+
+    /**
+     * @param source the source of events.
+     * @param propertyNames the names of the properties. the array is shared, so it must not be modified.
+     */
+    public PropertyChangeListenerRegistry(Object source, String... propertyNames) {
+        if(source == null) throw new IllegalArgumentException("the argument 'source' should not be null.");
+        if(propertyNames == null) throw new IllegalArgumentException("the argument 'propertyNames' should not be null.");
+        this.source = source;
+        this.propertyNames = propertyNames;
+    }
+
+    /**
+     * Deliver events asynchronously through a bounded queue drained by the executor.
+     * Events of this registry are delivered in the order of publication, one at a time.
+     *
+     * @param executor the executor which delivers the events. if null, a shared daemon thread pool is used.
+     * @param capacity the capacity of the queue. it is rounded up to a power of two.
+     * @param policy what a publisher does when the queue is full.
+     */
+    public PropertyChangeListenerRegistry(Object source, String[] propertyNames, Executor executor, int capacity, OverflowPolicy policy) {
+        this(source, propertyNames);
+        if(policy == null) throw new IllegalArgumentException("the argument 'policy' should not be null.");
+        this.queue = new PropertyChangeEventQueue(this, executor, policy == OverflowPolicy.CONFLATE ? Math.max(capacity, propertyNames.length) : capacity, policy, propertyNames.length);
+    }
+
+    /**
+     * @return true if events are delivered asynchronously.
+     */
+    public boolean isAsynchronous() {
+        return this.queue != null;
+    }
+
+    /**
+     * Change the executor which delivers the events. it has no effect on a synchronous registry.
+     */
+    public void setExecutor(Executor executor) {
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) events.setExecutor(executor);
+    }
+
+    /**
+     * Deliver all events published before this call in the calling thread, and wait for a delivery running in another thread.
+     * it does nothing on a synchronous registry.
+     */
+    public void flushEvents() {
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) events.flush();
+    }
+
+    /**
+     * @param index the index of a property in the names given to the constructor.
+     * @return true if some listeners, including typed listeners, will receive the events of the property.
+     */
+    public boolean hasListeners(int index) {
+        Listeners current = this.listeners;
+        return current != EMPTY && (current.hasPropertyChangeListeners(index) || current.typed(index).length != 0);
+    }
+
+    /**
+     * @return true if some PropertyChangeListeners will receive the events of the property. typed listeners are not counted.
+     */
+    public boolean hasListeners(String propertyName) {
+        Listeners current = this.listeners;
+        return current != EMPTY && (current.all.length != 0 || current.named(indexOf(propertyName), propertyName).length != 0);
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        if(listener == null) return;
+        if(listener instanceof PropertyChangeListenerProxy) {
+            PropertyChangeListenerProxy proxy = (PropertyChangeListenerProxy) listener;
+            addPropertyChangeListener(proxy.getPropertyName(), proxy.getListener());
+            return;
+        }
+        Listeners current;
+        do {
+            current = this.listeners;
+        } while (!LISTENERS_UPDATER.compareAndSet(this, current, current.withAll(add(current.all, listener))));
+    }
+
+    public void addPropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+        if(propertyName == null || listener == null) return;
+        int index = indexOf(propertyName);
+        Listeners current;
+        do {
+            current = this.listeners;
+        } while (!LISTENERS_UPDATER.compareAndSet(this, current, current.withNamed(index, propertyName, add(current.named(index, propertyName), listener), this.propertyNames.length)));
+    }
+
+    /**
+     * Add a listener which is referred weakly. the listener is removed after it is collected.
+     * It can be removed by removePropertyChangeListener() with the listener itself.
+     */
+    public void addWeakPropertyChangeListener(PropertyChangeListener listener) {
+        if(listener == null) return;
+        if(listener instanceof PropertyChangeListenerProxy) {
+            PropertyChangeListenerProxy proxy = (PropertyChangeListenerProxy) listener;
+            addWeakPropertyChangeListener(proxy.getPropertyName(), proxy.getListener());
+            return;
+        }
+        addPropertyChangeListener(new WeakPropertyChangeListener(null, listener, this.collected));
+    }
+
+    public void addWeakPropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+        if(propertyName == null || listener == null) return;
+        addPropertyChangeListener(propertyName, new WeakPropertyChangeListener(propertyName, listener, this.collected));
+    }
+
+    /**
+     * Remove the registrations of the weak listeners which are already collected.
+     */
+    private void purgeCollectedListeners() {
+        Reference<? extends PropertyChangeListener> reference;
+        while((reference = this.collected.poll()) != null) {
+            WeakPropertyChangeListener listener = (WeakPropertyChangeListener) reference;
+            if(listener.getPropertyName() == null) {
+                removePropertyChangeListener(listener);
+            } else {
+                removePropertyChangeListener(listener.getPropertyName(), listener);
+            }
+        }
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        if(listener == null) return;
+        if(listener instanceof PropertyChangeListenerProxy) {
+            PropertyChangeListenerProxy proxy = (PropertyChangeListenerProxy) listener;
+            removePropertyChangeListener(proxy.getPropertyName(), proxy.getListener());
+            return;
+        }
+        Listeners current;
+        PropertyChangeListener[] removed;
+        do {
+            current = this.listeners;
+            removed = remove(current.all, listener);
+            if(removed == current.all) return;
+        } while (!LISTENERS_UPDATER.compareAndSet(this, current, current.withAll(removed)));
+    }
+
+    public void removePropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+        if(propertyName == null || listener == null) return;
+        int index = indexOf(propertyName);
+        Listeners current;
+        PropertyChangeListener[] named;
+        PropertyChangeListener[] removed;
+        do {
+            current = this.listeners;
+            named = current.named(index, propertyName);
+            removed = remove(named, listener);
+            if(removed == named) return;
+        } while (!LISTENERS_UPDATER.compareAndSet(this, current, current.withNamed(index, propertyName, removed, this.propertyNames.length)));
+    }
+
+    /**
+     * @return all listeners. the listeners for a specific property are wrapped by PropertyChangeListenerProxy.
+     */
+    public PropertyChangeListener[] getPropertyChangeListeners() {
+        Listeners current = this.listeners;
+        List<PropertyChangeListener> result = new ArrayList<PropertyChangeListener>();
+        Collections.addAll(result, current.all);
+        for (int i = 0; i < current.named.length; i++) {
+            for (PropertyChangeListener listener : current.named[i]) {
+                result.add(new PropertyChangeListenerProxy(this.propertyNames[i], listener));
+            }
+        }
+        for (Map.Entry<String, PropertyChangeListener[]> entry : current.others.entrySet()) {
+            for (PropertyChangeListener listener : entry.getValue()) {
+                result.add(new PropertyChangeListenerProxy(entry.getKey(), listener));
+            }
+        }
+        return result.toArray(NO_LISTENERS);
+    }
+
+    public PropertyChangeListener[] getPropertyChangeListeners(String propertyName) {
+        if(propertyName == null) return NO_LISTENERS;
+        return this.listeners.named(indexOf(propertyName), propertyName).clone();
+    }
+
+    /**
+     * Add a typed listener for the property at the index.
+     * The type of the listener must match the type of the property, for example IntChangeListener for an int property.
+     */
+    public void addTypedListener(int index, Object listener) {
+        if(listener == null) return;
+        checkIndex(index);
+        Listeners current;
+        do {
+            current = this.listeners;
+        } while (!LISTENERS_UPDATER.compareAndSet(this, current, current.withTyped(index, add(current.typed(index), listener), this.propertyNames.length)));
+    }
+
+    public void removeTypedListener(int index, Object listener) {
+        if(listener == null) return;
+        checkIndex(index);
+        Listeners current;
+        Object[] typed;
+        Object[] removed;
+        do {
+            current = this.listeners;
+            typed = current.typed(index);
+            removed = remove(typed, listener);
+            if(removed == typed) return;
+        } while (!LISTENERS_UPDATER.compareAndSet(this, current, current.withTyped(index, removed, this.propertyNames.length)));
+    }
+
+    public Object[] getTypedListeners(int index) {
+        checkIndex(index);
+        return this.listeners.typed(index).clone();
+    }
+
+    public void firePropertyChange(int index, boolean oldValue, boolean newValue) {
+        if(oldValue == newValue) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.BOOLEAN, index, oldValue ? 1L : 0L, newValue ? 1L : 0L, null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, boolean oldValue, boolean newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((BooleanChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Boolean.valueOf(oldValue), Boolean.valueOf(newValue));
+        }
+    }
+
+    public void firePropertyChange(int index, byte oldValue, byte newValue) {
+        if(oldValue == newValue) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.BYTE, index, oldValue, newValue, null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, byte oldValue, byte newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((IntChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Byte.valueOf(oldValue), Byte.valueOf(newValue));
+        }
+    }
+
+    public void firePropertyChange(int index, short oldValue, short newValue) {
+        if(oldValue == newValue) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.SHORT, index, oldValue, newValue, null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, short oldValue, short newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((IntChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Short.valueOf(oldValue), Short.valueOf(newValue));
+        }
+    }
+
+    public void firePropertyChange(int index, char oldValue, char newValue) {
+        if(oldValue == newValue) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.CHAR, index, oldValue, newValue, null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, char oldValue, char newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((IntChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Character.valueOf(oldValue), Character.valueOf(newValue));
+        }
+    }
+
+    public void firePropertyChange(int index, int oldValue, int newValue) {
+        if(oldValue == newValue) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.INT, index, oldValue, newValue, null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, int oldValue, int newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((IntChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Integer.valueOf(oldValue), Integer.valueOf(newValue));
+        }
+    }
+
+    public void firePropertyChange(int index, long oldValue, long newValue) {
+        if(oldValue == newValue) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.LONG, index, oldValue, newValue, null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, long oldValue, long newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((LongChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Long.valueOf(oldValue), Long.valueOf(newValue));
+        }
+    }
+
+    /**
+     * the values are compared like Float.equals(), so no event is fired for NaN to NaN.
+     */
+    public void firePropertyChange(int index, float oldValue, float newValue) {
+        if(Float.floatToIntBits(oldValue) == Float.floatToIntBits(newValue)) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.FLOAT, index, Float.floatToRawIntBits(oldValue), Float.floatToRawIntBits(newValue), null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, float oldValue, float newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((DoubleChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Float.valueOf(oldValue), Float.valueOf(newValue));
+        }
+    }
+
+    /**
+     * the values are compared like Double.equals(), so no event is fired for NaN to NaN.
+     */
+    public void firePropertyChange(int index, double oldValue, double newValue) {
+        if(Double.doubleToLongBits(oldValue) == Double.doubleToLongBits(newValue)) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.DOUBLE, index, Double.doubleToRawLongBits(oldValue), Double.doubleToRawLongBits(newValue), null, null);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    private void notifyListeners(int index, double oldValue, double newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((DoubleChangeListener) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, Double.valueOf(oldValue), Double.valueOf(newValue));
+        }
+    }
+
+    /**
+     * Fire an event for the property at the index. no event is fired if the both values are equal and not null.
+     * the typed listeners of the property must be ValueChangeListeners.
+     */
+    public void firePropertyChange(int index, Object oldValue, Object newValue) {
+        if(oldValue != null && newValue != null && oldValue.equals(newValue)) return;
+        PropertyChangeEventQueue events = this.queue;
+        if(events != null) {
+            events.publish(PropertyChangeEventQueue.OBJECT, index, 0L, 0L, oldValue, newValue);
+            return;
+        }
+        notifyListeners(index, oldValue, newValue);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyListeners(int index, Object oldValue, Object newValue) {
+        Listeners current = this.listeners;
+        for (Object listener : current.typed(index)) {
+            ((ValueChangeListener<Object>) listener).valueChanged(oldValue, newValue);
+        }
+        if(current.hasPropertyChangeListeners(index)) {
+            fire(current, index, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Deliver an event published to the queue. called by the queue in the order of publication.
+     */
+    void deliver(byte kind, int index, long oldBits, long newBits, Object oldValue, Object newValue) {
+        //a conflated event may have the same values.
+        switch(kind) {
+            case PropertyChangeEventQueue.BOOLEAN:
+                if(oldBits != newBits) notifyListeners(index, oldBits != 0L, newBits != 0L);
+                break;
+            case PropertyChangeEventQueue.BYTE:
+                if(oldBits != newBits) notifyListeners(index, (byte) oldBits, (byte) newBits);
+                break;
+            case PropertyChangeEventQueue.SHORT:
+                if(oldBits != newBits) notifyListeners(index, (short) oldBits, (short) newBits);
+                break;
+            case PropertyChangeEventQueue.CHAR:
+                if(oldBits != newBits) notifyListeners(index, (char) oldBits, (char) newBits);
+                break;
+            case PropertyChangeEventQueue.INT:
+                if(oldBits != newBits) notifyListeners(index, (int) oldBits, (int) newBits);
+                break;
+            case PropertyChangeEventQueue.LONG:
+                if(oldBits != newBits) notifyListeners(index, oldBits, newBits);
+                break;
+            case PropertyChangeEventQueue.FLOAT:
+                float oldFloat = Float.intBitsToFloat((int) oldBits);
+                float newFloat = Float.intBitsToFloat((int) newBits);
+                if(Float.floatToIntBits(oldFloat) != Float.floatToIntBits(newFloat)) notifyListeners(index, oldFloat, newFloat);
+                break;
+            case PropertyChangeEventQueue.DOUBLE:
+                double oldDouble = Double.longBitsToDouble(oldBits);
+                double newDouble = Double.longBitsToDouble(newBits);
+                if(Double.doubleToLongBits(oldDouble) != Double.doubleToLongBits(newDouble)) notifyListeners(index, oldDouble, newDouble);
+                break;
+            default:
+                if(oldValue == null || newValue == null || !oldValue.equals(newValue)) notifyListeners(index, oldValue, newValue);
+        }
+    }
+
+    private void fire(Listeners current, int index, Object oldValue, Object newValue) {
+        fire(current.all, current.named(index), new PropertyChangeEvent(this.source, this.propertyNames[index], oldValue, newValue));
+        purgeCollectedListeners();
+    }
+
+    /**
+     * Fire an event for the property. no event is fired if the both values are equal and not null.
+     */
+    public void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        if(oldValue != null && newValue != null && oldValue.equals(newValue)) return;
+        Listeners current = this.listeners;
+        PropertyChangeListener[] named = propertyName == null ? NO_LISTENERS : current.named(indexOf(propertyName), propertyName);
+        fire(current.all, named, new PropertyChangeEvent(this.source, propertyName, oldValue, newValue));
+        purgeCollectedListeners();
+    }
+
+    private static void fire(PropertyChangeListener[] all, PropertyChangeListener[] named, PropertyChangeEvent event) {
+        for (PropertyChangeListener listener : all) {
+            listener.propertyChange(event);
+        }
+        for (PropertyChangeListener listener : named) {
+            listener.propertyChange(event);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= this.propertyNames.length) throw new IndexOutOfBoundsException("no property at the index " + index);
+    }
+
+    private int indexOf(String propertyName) {
+        for (int i = 0; i < this.propertyNames.length; i++) {
+            if(this.propertyNames[i].equals(propertyName)) return i;
+        }
+        return -1;
+    }
+
+    private static <T> T[] add(T[] listeners, T listener) {
+        T[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        return added;
+    }
+
+    /**
+     * @return the array without the first occurrence of the listener or a weak listener of it, or the same array if it is not found.
+     */
+    private static <T> T[] remove(T[] listeners, T listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if(listeners[i].equals(listener) || (listeners[i] instanceof WeakPropertyChangeListener && ((WeakPropertyChangeListener) listeners[i]).get() == listener)) {
+                T[] removed = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, removed, i, listeners.length - i - 1);
+                return removed;
+            }
+        }
+        return listeners;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (PropertyChangeListener listener : getPropertyChangeListeners()) {
+            if(listener instanceof PropertyChangeListenerProxy) {
+                PropertyChangeListenerProxy proxy = (PropertyChangeListenerProxy) listener;
+                if(proxy.getListener() instanceof Serializable) {
+                    out.writeObject(proxy.getPropertyName());
+                    out.writeObject(proxy.getListener());
+                }
+            } else if(listener instanceof Serializable) {
+                out.writeObject("");
+                out.writeObject(listener);
+            }
+        }
+        out.writeObject(null);
+
+        Listeners current = this.listeners;
+        for (int i = 0; i < current.typed.length; i++) {
+            for (Object listener : current.typed[i]) {
+                if(listener instanceof Serializable) {
+                    out.writeObject(this.propertyNames[i]);
+                    out.writeObject(listener);
+                }
+            }
+        }
+        out.writeObject(null);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.listeners = EMPTY;
+        this.collected = new ReferenceQueue<PropertyChangeListener>();
+        String propertyName;
+        while((propertyName = (String) in.readObject()) != null) {
+            PropertyChangeListener listener = (PropertyChangeListener) in.readObject();
+            if(propertyName.length() == 0) {
+                addPropertyChangeListener(listener);
+            } else {
+                addPropertyChangeListener(propertyName, listener);
+            }
+        }
+        while((propertyName = (String) in.readObject()) != null) {
+            Object listener = in.readObject();
+            int index = indexOf(propertyName);
+            if(index >= 0) {
+                addTypedListener(index, listener);
+            }
+        }
+    }
+
+    /**
+     * An immutable set of listeners.
+     * named holds the listeners for the known properties by their indexes, and others holds the listeners for unknown names.
+     * typed holds the typed listeners for the known properties by their indexes.
+     */
+    private static final class Listeners {
+        private final PropertyChangeListener[] all;
+        private final PropertyChangeListener[][] named;
+        private final Map<String, PropertyChangeListener[]> others;
+        private final Object[][] typed;
+
+        Listeners(PropertyChangeListener[] all, PropertyChangeListener[][] named, Map<String, PropertyChangeListener[]> others, Object[][] typed) {
+            this.all = all;
+            this.named = named;
+            this.others = others;
+            this.typed = typed;
+        }
+
+        boolean hasPropertyChangeListeners(int index) {
+            return this.all.length != 0 || named(index).length != 0;
+        }
+
+        Object[] typed(int index) {
+            return index < this.typed.length ? this.typed[index] : NO_TYPED_LISTENERS;
+        }
+
+        PropertyChangeListener[] named(int index) {
+            return index < this.named.length ? this.named[index] : NO_LISTENERS;
+        }
+
+        PropertyChangeListener[] named(int index, String propertyName) {
+            if(index >= 0) return named(index);
+            PropertyChangeListener[] listeners = this.others.get(propertyName);
+            return listeners == null ? NO_LISTENERS : listeners;
+        }
+
+        Listeners withAll(PropertyChangeListener[] all) {
+            return new Listeners(all, this.named, this.others, this.typed);
+        }
+
+        Listeners withNamed(int index, String propertyName, PropertyChangeListener[] listeners, int size) {
+            if(index >= 0) {
+                PropertyChangeListener[][] replaced = new PropertyChangeListener[size][];
+                for (int i = 0; i < size; i++) {
+                    replaced[i] = named(i);
+                }
+                replaced[index] = listeners;
+                return new Listeners(this.all, replaced, this.others, this.typed);
+            }
+            Map<String, PropertyChangeListener[]> replaced = new HashMap<String, PropertyChangeListener[]>(this.others);
+            if(listeners.length == 0) {
+                replaced.remove(propertyName);
+            } else {
+                replaced.put(propertyName, listeners);
+            }
+            return new Listeners(this.all, this.named, replaced, this.typed);
+        }
+
+        Listeners withTyped(int index, Object[] listeners, int size) {
+            Object[][] replaced = new Object[size][];
+            for (int i = 0; i < size; i++) {
+                replaced[i] = typed(i);
+            }
+            replaced[index] = listeners;
+            return new Listeners(this.all, this.named, this.others, replaced);
+        }
+    }
+}
@@ -151,6 +151,14 @@ public class PropertyVisitor extends ElementScanner6<Void, Environment> {
         if(p2.isWritable()) {
             p1.setWriter(p2.getWriter());
         }
+
+        if(p2.isCounter()) {
+            p1.setCounter(true);
+        }
+
+        if(!p2.getLockGroup().isEmpty()) {
+            p1.setLockGroup(p2.getLockGroup());
+        }
     }
     
     protected Field buildFieldFromVariableElement(VariableElement ve, Environment env) {
@@ -265,6 +273,12 @@ public class PropertyVisitor extends ElementScanner6<Void, Environment> {
                                 } else if(key.getSimpleName().toString().equals("ignore")) {
                                     Boolean ignore = (Boolean) value.getValue();
                                     property.setIgnored(ignore.booleanValue());
+                                } else if(key.getSimpleName().toString().equals("counter")) {
+                                    Boolean counter = (Boolean) value.getValue();
+                                    property.setCounter(counter.booleanValue());
+                                } else if(key.getSimpleName().toString().equals("lockGroup")) {
+                                    String lockGroup = (String) value.getValue();
+                                    property.setLockGroup(lockGroup);
                                 }
                             }
                         }
@@ -0,0 +1,146 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The waiters of the generated await&lt;Property&gt;() methods, held apart from the listeners of the object.
+ * The properties are identified by their indexes, and the waiters of each property are held in an immutable array
+ * which is replaced by compare-and-set, so {@link #hasWaiters(int)} is a single volatile read and a modifier tests
+ * the new value only while somebody is waiting for the property.
+ * A waiter is removed when its future is completed, failed or cancelled.
+ *
+ * @author Tsutomu YANO
+ */
+public final class PropertyWaiters {
+    private static final Waiter[] NO_WAITERS = new Waiter[0];
+
+    private final AtomicReferenceArray<Waiter[]> waiters;
+
+    /**
+     * @param size the number of the properties.
+     */
+    public PropertyWaiters(int size) {
+        this.waiters = new AtomicReferenceArray<Waiter[]>(size);
+        for(int i = 0; i < size; i++) {
+            this.waiters.set(i, NO_WAITERS);
+        }
+    }
+
+    /**
+     * @return true if somebody is waiting for the property.
+     */
+    public boolean hasWaiters(int index) {
+        return this.waiters.get(index).length != 0;
+    }
+
+    /**
+     * Register a waiter for the property and test the current value.
+     *
+     * @param current reads the current value of the property. it is called after the waiter is registered,
+     *                so a change between them is not lost.
+     * @return a future which is completed by the first value which satisfies the condition.
+     */
+    public <T> CompletableFuture<T> await(int index, Predicate<? super T> condition, Supplier<? extends T> current) {
+        if(condition == null) throw new IllegalArgumentException("the argument 'condition' should not be null.");
+        Waiter waiter = new Waiter(index, condition);
+        Waiter[] registered;
+        Waiter[] added;
+        do {
+            registered = this.waiters.get(index);
+            added = new Waiter[registered.length + 1];
+            System.arraycopy(registered, 0, added, 0, registered.length);
+            added[registered.length] = waiter;
+        } while (!this.waiters.compareAndSet(index, registered, added));
+
+        waiter.test(current.get());
+        waiter.future.whenComplete(waiter);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> future = (CompletableFuture<T>) waiter.future;
+        return future;
+    }
+
+    /**
+     * Test a new value of the property against all waiters of it. it must be called after the value is written.
+     */
+    public void test(int index, Object value) {
+        for (Waiter waiter : this.waiters.get(index)) {
+            waiter.test(value);
+        }
+    }
+
+    private void remove(int index, Waiter waiter) {
+        Waiter[] registered;
+        Waiter[] removed;
+        do {
+            registered = this.waiters.get(index);
+            int position = -1;
+            for(int i = 0; i < registered.length; i++) {
+                if(registered[i] == waiter) {
+                    position = i;
+                    break;
+                }
+            }
+            if(position < 0) return;
+            removed = registered.length == 1 ? NO_WAITERS : new Waiter[registered.length - 1];
+            System.arraycopy(registered, 0, removed, 0, position);
+            System.arraycopy(registered, position + 1, removed, position, registered.length - position - 1);
+        } while (!this.waiters.compareAndSet(index, registered, removed));
+    }
+
+    /**
+     * Wait for the future of {@link #await(int, Predicate, Supplier)}. the future is cancelled on a timeout or an interruption,
+     * so the waiter is removed.
+     */
+    public static <T> T get(CompletableFuture<T> future, Duration timeout) throws InterruptedException, TimeoutException {
+        if(timeout == null) throw new IllegalArgumentException("the argument 'timeout' should not be null.");
+        long nanos;
+        try {
+            nanos = timeout.toNanos();
+        } catch (ArithmeticException ex) {
+            nanos = timeout.isNegative() ? 0L : Long.MAX_VALUE;
+        }
+        try {
+            return future.get(nanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException ex) {
+            //only the condition can fail the future.
+            throw (RuntimeException) ex.getCause();
+        } finally {
+            future.cancel(false);
+        }
+    }
+
+    private final class Waiter implements BiConsumer<Object, Throwable> {
+        private final int index;
+        private final Predicate<Object> condition;
+        private final CompletableFuture<Object> future = new CompletableFuture<Object>();
+
+        @SuppressWarnings("unchecked")
+        Waiter(int index, Predicate<?> condition) {
+            this.index = index;
+            this.condition = (Predicate<Object>) condition;
+        }
+
+        void test(Object value) {
+            if(this.future.isDone()) return;
+            try {
+                if(this.condition.test(value)) this.future.complete(value);
+            } catch (RuntimeException ex) {
+                this.future.completeExceptionally(ex);
+            }
+        }
+
+        //called when the future is completed, failed or cancelled.
+        @Override
+        public void accept(Object value, Throwable error) {
+            remove(this.index, this);
+        }
+    }
+}
@@ -12,7 +12,7 @@ import javax.lang.model.SourceVersion;
  * 
  * @author Tsutomu YANO
  */
-@SupportedSourceVersion(SourceVersion.RELEASE_6)
+@SupportedSourceVersion(SourceVersion.RELEASE_9)
 @SupportedAnnotationTypes({"com.shelfmap.interfaceprocessor.annotation.GenerateClass"})
 public class RemovePrefixInterfaceProcessor extends InterfaceProcessor {
 
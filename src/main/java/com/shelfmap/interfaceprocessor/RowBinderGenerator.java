@@ -0,0 +1,213 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Generates the row binder of a class annotated with {@code @GenerateClass(generateRowBinder = true)}.
+ *
+ * @author Tsutomu YANO
+ */
+public class RowBinderGenerator extends CompanionGenerator {
+    private static final String ROW_BINDER_SUFFIX = "RowBinder";
+
+    public RowBinderGenerator(InterfaceProcessor processor, ProcessingEnvironment processingEnv) {
+        super(processor, processingEnv, ROW_BINDER_SUFFIX);
+    }
+
+    /**
+     * Generate a row binder. The indexes of the columns are resolved in the constructor and kept in an array
+     * in the order of the constructor parameters, where 0 means that the result set has no column for the property.
+     * A row is read by the typed getters into local variables, which are passed to the constructor,
+     * or set into a target through its setters.
+     */
+    @Override
+    protected void generate(Writer writer, ClassDefinition definition, String packageName, String className, String binderName) throws IOException {
+        List<Attribute> attributes = getSerializedAttributes(definition);
+        String typeName = definition.getPackage() + "." + definition.getClassName();
+
+        generateCompanionHeader(writer, packageName, binderName);
+        int shift = 1;
+        writer.append(indent(shift)).append("private static final String[] COLUMNS = {");
+        boolean isFirst = true;
+        for (Attribute attribute : attributes) {
+            writer.append(isFirst ? "" : ", ").append("\"").append(attribute.getName()).append("\"");
+            isFirst = false;
+        }
+        writer.append("};\n\n")
+              .append(indent(shift)).append("private final int[] columns;\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Resolve the indexes of the columns whose labels match the names of the properties, ignoring case and underscores.\n")
+              .append(indent(shift)).append(" * If two columns match a property, the first one is used. The properties without a column have their default values.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public ").append(binderName).append("(java.sql.ResultSetMetaData metaData) throws java.sql.SQLException {\n")
+              .append(indent(shift)).append("if(metaData == null) throw new IllegalArgumentException(\"the argument 'metaData' should not be null.\");\n")
+              .append(indent(shift)).append("this.columns = new int[COLUMNS.length];\n")
+              .append(indent(shift)).append("int count = metaData.getColumnCount();\n")
+              .append(indent(shift++)).append("for (int column = 1; column <= count; column++) {\n")
+              .append(indent(shift)).append("String label = metaData.getColumnLabel(column);\n")
+              .append(indent(shift++)).append("for (int i = 0; i < COLUMNS.length; i++) {\n")
+              .append(indent(shift++)).append("if (this.columns[i] == 0 && matches(label, COLUMNS[i])) {\n")
+              .append(indent(shift)).append("this.columns[i] = column;\n")
+              .append(indent(shift)).append("break;\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift++)).append("public static ").append(binderName).append(" of(java.sql.ResultSet rs) throws java.sql.SQLException {\n")
+              .append(indent(shift)).append("if(rs == null) throw new IllegalArgumentException(\"the argument 'rs' should not be null.\");\n")
+              .append(indent(shift)).append("return new ").append(binderName).append("(rs.getMetaData());\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Create an object from the current row.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public ").append(className).append(" bind(java.sql.ResultSet rs) throws java.sql.SQLException {\n")
+              .append(indent(shift)).append("if(rs == null) throw new IllegalArgumentException(\"the argument 'rs' should not be null.\");\n");
+        for (Attribute attribute : attributes) {
+            writer.append(indent(shift)).append(attribute.getType().toString()).append(" ").append(attribute.getName()).append("Value = ").append(defaultValueOf(attribute.getType())).append(";\n");
+        }
+        if(!attributes.isEmpty()) {
+            writer.append(indent(shift)).append("int column;\n");
+        }
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            generateRowRead(writer, shift, attribute, i, attribute.getName() + "Value = %s;");
+        }
+        writer.append(indent(shift)).append("return new ").append(className).append("(");
+        isFirst = true;
+        for (Attribute attribute : attributes) {
+            if(!isFirst) writer.append(", ");
+            isFirst = false;
+            writer.append(attribute.getName()).append("Value");
+        }
+        writer.append(");\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Set the current row into the target through its setters. The properties which have no setter or no column keep their values.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public void bindInto(java.sql.ResultSet rs, ").append(typeName).append(" target) throws java.sql.SQLException {\n")
+              .append(indent(shift)).append("if(rs == null) throw new IllegalArgumentException(\"the argument 'rs' should not be null.\");\n")
+              .append(indent(shift)).append("if(target == null) throw new IllegalArgumentException(\"the argument 'target' should not be null.\");\n");
+        boolean declared = false;
+        for (int i = 0; i < attributes.size(); i++) {
+            Property property = (Property) attributes.get(i);
+            if(!property.isWritable()) continue;
+            if(!declared) {
+                writer.append(indent(shift)).append("int column;\n");
+                declared = true;
+            }
+            generateRowRead(writer, shift, property, i, "target." + property.getWriter().getSimpleName() + "(%s);");
+        }
+        writer.append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Move to the following rows and create objects into the array from the offset, until the array is filled or the rows are exhausted.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the number of the bound rows.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public int bindAll(java.sql.ResultSet rs, ").append(className).append("[] rows, int offset) throws java.sql.SQLException {\n")
+              .append(indent(shift)).append("if(rs == null) throw new IllegalArgumentException(\"the argument 'rs' should not be null.\");\n")
+              .append(indent(shift)).append("if(rows == null) throw new IllegalArgumentException(\"the argument 'rows' should not be null.\");\n")
+              .append(indent(shift)).append("if(offset < 0 || offset > rows.length) throw new IndexOutOfBoundsException(\"offset: \" + offset);\n")
+              .append(indent(shift)).append("int count = 0;\n")
+              .append(indent(shift++)).append("while (offset + count < rows.length && rs.next()) {\n")
+              .append(indent(shift)).append("rows[offset + count++] = bind(rs);\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return count;\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * Move to the following rows and add at most max objects to the list.\n")
+              .append(indent(shift)).append(" *\n")
+              .append(indent(shift)).append(" * @return the number of the bound rows.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("public int bindAll(java.sql.ResultSet rs, java.util.List<? super ").append(className).append("> rows, int max) throws java.sql.SQLException {\n")
+              .append(indent(shift)).append("if(rs == null) throw new IllegalArgumentException(\"the argument 'rs' should not be null.\");\n")
+              .append(indent(shift)).append("if(rows == null) throw new IllegalArgumentException(\"the argument 'rows' should not be null.\");\n")
+              .append(indent(shift)).append("int count = 0;\n")
+              .append(indent(shift++)).append("while (count < max && rs.next()) {\n")
+              .append(indent(shift)).append("rows.add(bind(rs));\n")
+              .append(indent(shift)).append("count++;\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return count;\n")
+              .append(indent(--shift)).append("}\n\n");
+
+        writer.append(indent(shift)).append("/**\n")
+              .append(indent(shift)).append(" * @return true if the label is equal to the name ignoring case and underscores, such as 'FIRST_NAME' for 'firstName'.\n")
+              .append(indent(shift)).append(" */\n")
+              .append(indent(shift++)).append("private static boolean matches(String label, String name) {\n")
+              .append(indent(shift)).append("if(label == null) return false;\n")
+              .append(indent(shift)).append("int j = 0;\n")
+              .append(indent(shift++)).append("for (int i = 0; i < label.length(); i++) {\n")
+              .append(indent(shift)).append("char c = label.charAt(i);\n")
+              .append(indent(shift)).append("if (c == '_') continue;\n")
+              .append(indent(shift)).append("if (j == name.length() || Character.toLowerCase(c) != Character.toLowerCase(name.charAt(j))) return false;\n")
+              .append(indent(shift)).append("j++;\n")
+              .append(indent(--shift)).append("}\n")
+              .append(indent(shift)).append("return j == name.length();\n")
+              .append(indent(--shift)).append("}\n");
+        writer.append("}");
+    }
+
+    /**
+     * Generate the statements which read the column of the property at the index from 'rs', if the column exists.
+     * The read value is applied to the statement, in which %s is replaced with the value.
+     */
+    private void generateRowRead(Writer writer, int shift, Attribute attribute, int index, String statement) throws IOException {
+        TypeMirror type = attribute.getType();
+        String result = attribute.getName() + "Result";
+        String prelude = null;
+        String value;
+        TypeKind kind = isPrimitive(type) ? type.getKind() : isWrapper(attribute) ? unboxedKind(type) : null;
+        if(kind == TypeKind.CHAR) {
+            prelude = "String " + result + " = rs.getString(column);";
+            value = isPrimitive(type)
+                    ? result + " == null || " + result + ".isEmpty() ? '\\0' : " + result + ".charAt(0)"
+                    : result + " == null || " + result + ".isEmpty() ? null : java.lang.Character.valueOf(" + result + ".charAt(0))";
+        } else if(kind != null && isPrimitive(type)) {
+            value = "rs.get" + dataMethodOf(kind) + "(column)";
+        } else if(kind != null) {
+            prelude = kind.name().toLowerCase() + " " + result + " = rs.get" + dataMethodOf(kind) + "(column);";
+            value = "rs.wasNull() ? null : " + type.toString() + ".valueOf(" + result + ")";
+        } else if(isEnum(attribute)) {
+            prelude = "String " + result + " = rs.getString(column);";
+            value = result + " == null ? null : " + processingEnv.getTypeUtils().erasure(type).toString() + ".valueOf(" + result + ")";
+        } else if(processor.rowGetterOf(type) != null) {
+            value = "rs." + processor.rowGetterOf(type) + "(column)";
+        } else {
+            value = "rs.getString(column)";
+        }
+
+        if(prelude == null) {
+            writer.append(indent(shift)).append("if ((column = this.columns[").append(String.valueOf(index)).append("]) != 0) ").append(String.format(statement, value)).append("\n");
+        } else {
+            writer.append(indent(shift++)).append("if ((column = this.columns[").append(String.valueOf(index)).append("]) != 0) {\n")
+                  .append(indent(shift)).append(prelude).append("\n")
+                  .append(indent(shift)).append(String.format(statement, value)).append("\n")
+                  .append(indent(--shift)).append("}\n");
+        }
+    }
+}
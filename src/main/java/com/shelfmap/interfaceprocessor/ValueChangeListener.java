@@ -0,0 +1,12 @@
+package com.shelfmap.interfaceprocessor;
+
+/**
+ * A typed listener for a property of a reference type, which is called without creating a PropertyChangeEvent.
+ * It is registered by the generated method on&lt;Property&gt;Changed().
+ *
+ * @param <T> the type of the property.
+ * @author Tsutomu YANO
+ */
+public interface ValueChangeListener<T> {
+    void valueChanged(T oldValue, T newValue);
+}
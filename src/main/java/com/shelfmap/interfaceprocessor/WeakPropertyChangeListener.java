@@ -0,0 +1,45 @@
+package com.shelfmap.interfaceprocessor;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A listener registered by addWeakPropertyChangeListener() of {@link PropertyChangeListenerRegistry}.
+ * It refers to the actual listener weakly, so the registration does not keep the listener alive.
+ * When the listener is collected, this object is enqueued to the queue of the registry,
+ * and the registry removes it at the next dispatch of an event.
+ *
+ * @author Tsutomu YANO
+ */
+public final class WeakPropertyChangeListener extends WeakReference<PropertyChangeListener> implements PropertyChangeListener {
+    private final String propertyName;
+
+    WeakPropertyChangeListener(String propertyName, PropertyChangeListener listener, ReferenceQueue<? super PropertyChangeListener> queue) {
+        super(listener, queue);
+        this.propertyName = propertyName;
+    }
+
+    /**
+     * @return the name of the property which the listener is registered for, or null if it is registered for all properties.
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    /**
+     * @return the actual listener, or null if it is already collected.
+     */
+    public PropertyChangeListener getListener() {
+        return get();
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        PropertyChangeListener listener = get();
+        if(listener != null) {
+            listener.propertyChange(event);
+        }
+    }
+}
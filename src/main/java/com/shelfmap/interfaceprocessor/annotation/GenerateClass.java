@@ -16,13 +16,18 @@
 package com.shelfmap.interfaceprocessor.annotation;
 
 import com.shelfmap.interfaceprocessor.AutoResolveClassNameResolver;
+import com.shelfmap.interfaceprocessor.ConcurrencyType;
 import com.shelfmap.interfaceprocessor.Modifier;
+import com.shelfmap.interfaceprocessor.OverflowPolicy;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Marks an interface whose implementation is generated by InterfaceProcessor.
+ * <p>
+ * The processor, its runtime classes and the generated code require Java 9 or later, whichever options are used.
  *
  * @author Tsutomu YANO
  */
@@ -32,6 +37,172 @@ public @interface GenerateClass {
     boolean autoGenerate() default true;
     boolean isAbstract() default false;
     boolean isThreadSafe() default true;
+    ConcurrencyType concurrency() default ConcurrencyType.READ_WRITE_LOCK;
+
+    /**
+     * If true and the interface has no setter, no counter and no writable inner field, the generated class is immutable:
+     * its fields are final and it has no instanceLock, even if isThreadSafe is true.
+     * A subclass of such a class can not use the instanceLock, so this option should not be used for a super class.
+     */
+    boolean elideLockIfImmutable() default false;
+
+    /**
+     * If true, compareAndSetXxx, getAndSetXxx, updateXxx and accumulateXxx methods (and getAndAddXxx/addAndGetXxx
+     * for int, long and double) are generated for each writable property.
+     * With ConcurrencyType.VOLATILE they are implemented by VarHandles, otherwise they are executed
+     * under one hold of the write lock. Wrappers and strings are compared by equals(), and other references are compared
+     * by identity, so properties of reference types are handled only if their retainType is HOLD.
+     * Floats and doubles are compared by their bits both for compare-and-set and for detecting a change, so NaN is equal
+     * to itself and 0.0 is not equal to -0.0.
+     */
+    boolean generateAtomicOperations() default false;
+
+    /**
+     * If true, the PropertyChangeListenerRegistry of an instance is not created in its constructor, but when the first listener
+     * is registered, so instances which are never observed save the memory. The instanceLock is still created in the constructor.
+     * The registry is installed through a VarHandle. A super class must be generated with the same option.
+     * A clone creates its own PropertyChangeListenerRegistry, so the listeners of the original are not copied.
+     */
+    boolean lazyInfrastructure() default false;
+
+    /**
+     * If true, freeze() and isFrozen() are generated. After freeze(), all modifiers throw an IllegalStateException,
+     * and getters, equals(), hashCode() and toString() read the fields without the instanceLock.
+     * A clone of a frozen object is not frozen.
+     */
+    boolean isFreezable() default false;
+
+    /**
+     * The number of ReadWriteLocks which guard the properties of a class of ConcurrencyType.READ_WRITE_LOCK.
+     * If it is greater than 1, each property is guarded by one of the stripes (see lockGroup of @Property),
+     * so setters of properties in different stripes do not contend. equals(), hashCode(), toString(), clone()
+     * and freeze() acquire all stripes in the order of their indexes. The stripes are always created eagerly.
+     */
+    int lockStripes() default 1;
+
+    /**
+     * If true, a nested class Mutator and update(Consumer&lt;Mutator&gt;) are generated.
+     * update() applies all modifications made through the Mutator under one acquisition of the lock,
+     * and fires at most one PropertyChangeEvent for each modified property after the lock is released.
+     */
+    boolean generateBatchUpdate() default false;
+
+    /**
+     * If true and the interface extends PropertyChangeEventAware, on&lt;Property&gt;Changed() and
+     * remove&lt;Property&gt;ChangedListener() are generated for each modifiable property.
+     * They take a typed listener such as IntChangeListener, which receives the old and new values
+     * without boxing them nor creating a PropertyChangeEvent. The listeners registered by
+     * addPropertyChangeListener() keep receiving PropertyChangeEvents.
+     */
+    boolean generateTypedListeners() default false;
+
+    /**
+     * If true and the interface extends PropertyChangeEventAware, modifiers only publish their changes into a bounded
+     * lock-free queue, and an executor delivers the events in the order of publication.
+     * setEventExecutor(Executor) and flushEvents() are generated. Listeners must be thread-safe.
+     */
+    boolean asyncEvents() default false;
+
+    /**
+     * The capacity of the queue of asynchronous events. it is rounded up to a power of two.
+     */
+    int eventQueueCapacity() default 1024;
+
+    /**
+     * What a modifier does when the queue of asynchronous events is full.
+     */
+    OverflowPolicy eventOverflowPolicy() default OverflowPolicy.BLOCK;
+
+    /**
+     * If true and the interface extends PropertyChangeEventAware, &lt;property&gt;Changes() is generated for each
+     * modifiable property. It returns a java.util.concurrent.Flow.Publisher of the new values, which delivers values
+     * only on demand, and keeps only the latest value while a subscriber has no demand.
+     */
+    boolean generateFlowPublishers() default false;
+
+    /**
+     * If true and the interface extends PropertyChangeEventAware, await&lt;Property&gt;(Predicate) and
+     * await&lt;Property&gt;(Predicate, Duration) are generated for each modifiable property.
+     * The former returns a CompletableFuture which the modifier completes with the first value satisfying the condition,
+     * and the latter blocks until then. The current value is tested first.
+     * The waiters are held by the object apart from its listeners, and a modifier tests them only while somebody is waiting.
+     */
+    boolean generateAwaitMethods() default false;
+
+    /**
+     * If true, the generated class records which properties are modified in a bitmask indexed like the properties
+     * of PropertyChangeEvents. A modifier marks its property only if the value is actually changed.
+     * dirtyProperties(), isDirty(String) and clearDirty() are generated.
+     */
+    boolean trackDirty() default false;
+
+    /**
+     * If true, writeDelta(DataOutput, long) and applyDelta(DataInput) are generated.
+     * writeDelta() writes a bitmap of the properties modified since a version returned by a former writeDelta() and their values,
+     * and returns a new version. A delta since 0 contains all properties. The versions are independent of trackDirty,
+     * and each receiver can keep its own version. applyDelta() applies all values of a delta at once,
+     * and the applied values are not written in the deltas of the receiver.
+     * Only primitives, their wrappers, String and enums can be written in a delta.
+     */
+    boolean generateDelta() default false;
+
+    /**
+     * If true, the values assigned by setters, update(), the atomic operations, applyDelta() and the operations of counters
+     * are recorded in the ChangeJournal given to
+     * the static setChangeJournal(ChangeJournal) of the generated class, and the static replayJournal(File, Supplier)
+     * rebuilds the instances from a journal file. A setter only appends a record to a buffer, and the journal writes
+     * the records in batches. The records of a property are in the order of the writes, except for ConcurrencyType.VOLATILE
+     * and COPY_ON_WRITE. Only primitives, their wrappers, String and enums can be recorded.
+     * If the journal could not write its file, a setter throws an UncheckedIOException after assigning the value.
+     */
+    boolean journal() default false;
+
+    /**
+     * If true and isSerializable is true, the generated class is serialized through a nested class SerializedForm,
+     * which writes only the values of the properties with the primitive methods of DataOutput, read in one read block.
+     * A deserialized object is created by the full-arg constructor, so it has its own lock and no listener,
+     * and it is not dirty. A frozen object remains frozen.
+     * It can not be used with a superclass nor an abstract class.
+     */
+    boolean compactSerialization() default false;
+
+    /**
+     * If true, a class named after the interface with the suffix 'Codec' is generated in the package of the generated class.
+     * It encodes the properties into a ByteBuffer in a layout computed at compile time: primitives, their wrappers and enums
+     * at fixed offsets, followed by strings and primitive arrays prefixed by their lengths.
+     * Encoding does not allocate. The values are read through the getters one by one, not in one read block.
+     * It can not be used with a generic type nor an abstract class, and all properties must be readable.
+     */
+    boolean generateCodec() default false;
+
+    /**
+     * If true, a class named after the interface with the suffix 'Json' is generated in the package of the generated class.
+     * Its writeTo() writes the properties as a JSON object into an Appendable or an OutputStream in UTF-8,
+     * and its read() creates an object from a JSON object with a JsonReader, which builds no tree.
+     * Members are dispatched by a switch on the hashes of the property names, and unknown members are skipped.
+     * Only primitives, their wrappers, String and enums are supported. The values are read through the getters one by one.
+     * It can not be used with a generic type nor an abstract class, and all properties must be readable.
+     */
+    boolean generateJson() default false;
+
+    /**
+     * If true, a class named after the interface with the suffix 'CsvReader' is generated in the package of the generated class.
+     * It parses delimited records from a CharSequence or a Reader with a CsvCursor, and maps the columns to the properties
+     * by the names in a header or in the declared order. Each record is passed to a Consumer as a new object, or set into
+     * a reusable object through its setters. Numbers are parsed without creating Strings, and readParallel() parses chunks of
+     * a CharSequence on the common ForkJoinPool. Only primitives, their wrappers, String and enums are supported.
+     * It can not be used with a generic type nor an abstract class.
+     */
+    boolean generateCsvReader() default false;
+
+    /**
+     * If true, a class named after the interface with the suffix 'RowBinder' is generated in the package of the generated class.
+     * It resolves the indexes of the columns for the properties once from a ResultSetMetaData, matching the labels
+     * to the names of the properties ignoring case and underscores, and reads rows by the typed getters of ResultSet.
+     * Only primitives, their wrappers, String, enums, BigDecimal, byte arrays and the date types of java.sql are supported.
+     * It can not be used with a generic type nor an abstract class.
+     */
+    boolean generateRowBinder() default false;
     String packageName() default "";
     boolean isPackageNameRelative() default false;
     String className() default "";
@@ -31,4 +31,18 @@ public @interface Property {
     RetainType retainType() default RetainType.HOLD;
     Class<?> realType() default Void.class;
     boolean ignore() default false;
+
+    /**
+     * If true, the property of type int or long is backed by a {@code java.util.concurrent.atomic.LongAdder}
+     * instead of a plain field, and incrementXxx(), decrementXxx() and addXxx() methods are generated.
+     * The counter is never guarded by the instanceLock and its increments do not fire PropertyChangeEvents.
+     */
+    boolean counter() default false;
+
+    /**
+     * The name of the lock stripe group of this property, used when 'lockStripes' of @GenerateClass is greater than 1.
+     * Properties in the same group are always guarded by the same stripe, chosen by the hash of the group name.
+     * Properties without a group are assigned to the stripes round-robin in the order of their declarations.
+     */
+    String lockGroup() default "";
 }
@@ -34,6 +34,8 @@ public class DefaultProperty implements Property {
     private String retainType = "HOLD";
     private TypeMirror realType;
     private boolean ignore;
+    private boolean counter;
+    private String lockGroup = "";
     private ExecutableElement reader;
     private ExecutableElement writer;
 
@@ -112,6 +114,26 @@ public class DefaultProperty implements Property {
         this.ignore = ignore;
     }
 
+    @Override
+    public boolean isCounter() {
+        return counter;
+    }
+
+    @Override
+    public void setCounter(boolean counter) {
+        this.counter = counter;
+    }
+
+    @Override
+    public String getLockGroup() {
+        return lockGroup;
+    }
+
+    @Override
+    public void setLockGroup(String lockGroup) {
+        this.lockGroup = lockGroup;
+    }
+
     @Override
     public ExecutableElement getReader() {
         return reader;
@@ -146,6 +168,8 @@ public class DefaultProperty implements Property {
         hash = 67 * hash + (this.retainType != null ? this.retainType.hashCode() : 0);
         hash = 67 * hash + (this.realType != null ? this.realType.hashCode() : 0);
         hash = 67 * hash + (this.ignore ? 1 : 0);
+        hash = 67 * hash + (this.counter ? 1 : 0);
+        hash = 67 * hash + (this.lockGroup != null ? this.lockGroup.hashCode() : 0);
         hash = 67 * hash + (this.reader != null ? this.reader.hashCode() : 0);
         hash = 67 * hash + (this.writer != null ? this.writer.hashCode() : 0);
         return hash;
@@ -187,6 +211,12 @@ public class DefaultProperty implements Property {
         if (this.ignore != other.ignore) {
             return false;
         }
+        if (this.counter != other.counter) {
+            return false;
+        }
+        if ((this.lockGroup == null) ? (other.lockGroup != null) : !this.lockGroup.equals(other.lockGroup)) {
+            return false;
+        }
         if (this.reader != other.reader && (this.reader == null || !this.reader.equals(other.reader))) {
             return false;
         }
@@ -198,6 +228,6 @@ public class DefaultProperty implements Property {
 
     @Override
     public String toString() {
-        return "DefaultProperty{" + "defined=" + defined + ", writable=" + writable + ", readable=" + readable + ", fieldDefined=" + fieldDefined + ", name=" + name + ", type=" + type + ", retainType=" + retainType + ", realType=" + realType + ", ignore=" + ignore + ", reader=" + reader + ", writer=" + writer + '}';
+        return "DefaultProperty{" + "defined=" + defined + ", writable=" + writable + ", readable=" + readable + ", fieldDefined=" + fieldDefined + ", name=" + name + ", type=" + type + ", retainType=" + retainType + ", realType=" + realType + ", ignore=" + ignore + ", counter=" + counter + ", lockGroup=" + lockGroup + ", reader=" + reader + ", writer=" + writer + '}';
     }
 }
@@ -45,4 +45,21 @@ public final class Strings {
                     .append(value.subSequence(1, value.length()))
                     .toString();
     }
+
+    public static String toConstantName(CharSequence value) {
+        if(value == null) return null;
+
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(i > 0 && Character.isUpperCase(c)) {
+                char prev = value.charAt(i - 1);
+                if(Character.isLowerCase(prev) || Character.isDigit(prev)) {
+                    sb.append('_');
+                }
+            }
+            sb.append(Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.AsyncDropImpl;
+import com.shelfmap.interfaceprocessor.fixture.AsyncImpl;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests a class generated with asyncEvents, whose events are delivered through a bounded queue.
+ *
+ * @author Tsutomu YANO
+ */
+public class AsyncEventsTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void eventsAreDeliveredInOrderByTheExecutor() throws Exception {
+        AsyncImpl async = new AsyncImpl();
+        async.setEventExecutor(executor);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger callerDeliveries = new AtomicInteger();
+        final CountDownLatch last = new CountDownLatch(1);
+        async.onAgeChanged(new IntChangeListener() {
+            @Override
+            public void valueChanged(int oldValue, int newValue) {
+                if(Thread.currentThread() == caller) callerDeliveries.incrementAndGet();
+                received.add(newValue);
+                if(newValue == 10000) last.countDown();
+            }
+        });
+        for (int i = 1; i <= 10000; i++) {
+            async.setAge(i);
+        }
+        assertTrue(last.await(30, TimeUnit.SECONDS));
+
+        assertEquals(10000, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), received.get(i));
+        }
+        assertEquals(0, callerDeliveries.get());
+    }
+
+    @Test(timeout = 60000)
+    public void flushEventsDeliversAllPublishedEvents() throws Exception {
+        AsyncImpl async = new AsyncImpl();
+        async.setEventExecutor(executor);
+        final AtomicInteger count = new AtomicInteger();
+        async.onNameChanged(new ValueChangeListener<String>() {
+            @Override
+            public void valueChanged(String oldValue, String newValue) {
+                count.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < 1000; i++) {
+            async.setName("n" + i);
+        }
+        async.flushEvents();
+
+        assertEquals(1000, count.get());
+    }
+
+    @Test(timeout = 60000)
+    public void dropOldestKeepsTheLatestEvent() throws Exception {
+        AsyncDropImpl async = new AsyncDropImpl();
+        async.setEventExecutor(executor);
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger latest = new AtomicInteger();
+        async.onAgeChanged(new IntChangeListener() {
+            @Override
+            public void valueChanged(int oldValue, int newValue) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                count.incrementAndGet();
+                latest.set(newValue);
+            }
+        });
+        for (int i = 1; i <= 1000; i++) {
+            async.setAge(i);
+        }
+        async.flushEvents();
+
+        assertTrue("delivered " + count.get(), count.get() < 1000);
+        assertEquals(1000, latest.get());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.FlagImpl;
+import com.shelfmap.interfaceprocessor.fixture.GaugeImpl;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the atomic operations generated with generateAtomicOperations, through VarHandles and under the write lock.
+ *
+ * @author Tsutomu YANO
+ */
+public class AtomicOperationsTest {
+
+    @Test
+    public void compareAndSetWritesOnlyTheExpectedValue() {
+        FlagImpl flag = new FlagImpl(0L);
+
+        assertTrue(flag.compareAndSetCount(0, 5));
+        assertFalse(flag.compareAndSetCount(0, 7));
+        assertEquals(5, flag.getCount());
+        assertTrue(flag.compareAndSetSymbol(null, "x"));
+        assertEquals("x", flag.getAndSetSymbol("y"));
+        assertEquals("y", flag.getSymbol());
+    }
+
+    @Test
+    public void wrappersAndStringsAreComparedByEquals() {
+        GaugeImpl gauge = new GaugeImpl(1000, 0L, "abc");
+
+        //1000 is not cached by Integer.valueOf(), so the expected value is another instance.
+        assertTrue(gauge.compareAndSetCount(Integer.valueOf(1000), 1001));
+        assertEquals(Integer.valueOf(1001), gauge.getCount());
+        assertTrue(gauge.compareAndSetName(new String("abc"), "def"));
+        assertEquals("def", gauge.getName());
+    }
+
+    @Test
+    public void updateAndAccumulateApplyTheFunctions() {
+        FlagImpl flag = new FlagImpl(0L);
+        flag.setCount(3);
+        GaugeImpl gauge = new GaugeImpl(2, 0L, "a");
+
+        assertEquals(6, flag.updateCount(new IntUnaryOperator() {
+            @Override
+            public int applyAsInt(int operand) {
+                return operand * 2;
+            }
+        }));
+        assertEquals(10, flag.accumulateCount(4, new IntBinaryOperator() {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left + right;
+            }
+        }));
+        assertEquals("ab", gauge.updateName(new UnaryOperator<String>() {
+            @Override
+            public String apply(String value) {
+                return value + "b";
+            }
+        }));
+        assertEquals(Integer.valueOf(5), gauge.accumulateCount(3, new BinaryOperator<Integer>() {
+            @Override
+            public Integer apply(Integer left, Integer right) {
+                return left + right;
+            }
+        }));
+    }
+
+    @Test
+    public void eventsAreFiredOnlyForChanges() {
+        FlagImpl flag = new FlagImpl(0L);
+        final List<PropertyChangeEvent> events = new ArrayList<PropertyChangeEvent>();
+        flag.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                events.add(evt);
+            }
+        });
+        flag.compareAndSetCount(1, 2);
+        flag.getAndSetCount(0);
+        flag.addAndGetCount(4);
+
+        assertEquals(1, events.size());
+        assertEquals(0, events.get(0).getOldValue());
+        assertEquals(4, events.get(0).getNewValue());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentAdditionsAreNotLost() throws Exception {
+        final FlagImpl flag = new FlagImpl(0L);
+        final GaugeImpl gauge = new GaugeImpl();
+        Threads.runConcurrently(8, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10000; i++) {
+                    flag.addAndGetCount(1);
+                    flag.addAndGetPrice(0.5);
+                    gauge.getAndAddTotal(2L);
+                }
+            }
+        });
+
+        assertEquals(80000, flag.getCount());
+        assertEquals(40000.0, flag.getPrice(), 0.0);
+        assertEquals(160000L, gauge.getTotal());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.BatchImpl;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests update(Consumer&lt;Mutator&gt;) generated with generateBatchUpdate.
+ *
+ * @author Tsutomu YANO
+ */
+public class BatchUpdateTest {
+
+    @Test
+    public void anUpdateFiresOneEventForEachModifiedProperty() {
+        BatchImpl batch = new BatchImpl(1L);
+        final List<String> events = new ArrayList<String>();
+        batch.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                events.add(evt.getPropertyName() + ":" + evt.getOldValue() + "->" + evt.getNewValue());
+            }
+        });
+        batch.update(new Consumer<BatchImpl.Mutator>() {
+            @Override
+            public void accept(BatchImpl.Mutator mutator) {
+                mutator.setName("a").setAge(3);
+                mutator.setAge(5);
+                mutator.setActive(false);
+            }
+        });
+
+        assertEquals("a", batch.getName());
+        assertEquals(5, batch.getAge());
+        assertEquals(2, events.size());
+        assertEquals("name:null->a", events.get(0));
+        assertEquals("age:0->5", events.get(1));
+    }
+
+    @Test(timeout = 60000)
+    public void eventsAreFiredAfterTheLockIsReleased() throws Exception {
+        final BatchImpl batch = new BatchImpl(1L);
+        final boolean[] written = new boolean[1];
+        batch.addPropertyChangeListener("name", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                Thread other = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        batch.setActive(true);
+                    }
+                });
+                other.start();
+                try {
+                    other.join(10000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                written[0] = !other.isAlive();
+            }
+        });
+        batch.update(new Consumer<BatchImpl.Mutator>() {
+            @Override
+            public void accept(BatchImpl.Mutator mutator) {
+                mutator.setName("a");
+            }
+        });
+
+        assertTrue(written[0]);
+        assertTrue(batch.isActive());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void aMutatorCanNotBeUsedAfterTheUpdate() {
+        BatchImpl batch = new BatchImpl(1L);
+        final BatchImpl.Mutator[] leaked = new BatchImpl.Mutator[1];
+        batch.update(new Consumer<BatchImpl.Mutator>() {
+            @Override
+            public void accept(BatchImpl.Mutator mutator) {
+                leaked[0] = mutator;
+            }
+        });
+        leaked[0].setAge(1);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.CowImpl;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests a class generated with ConcurrencyType.COPY_ON_WRITE.
+ *
+ * @author Tsutomu YANO
+ */
+public class CopyOnWriteTest {
+
+    @Test
+    public void aSnapshotIsNotChangedBySetters() {
+        CowImpl cow = new CowImpl(7L);
+        cow.setName("x");
+        cow.setCount(3);
+        CowImpl.State snapshot = cow.snapshot();
+        cow.setName("y");
+
+        assertEquals("x", snapshot.getName());
+        assertEquals(3, snapshot.getCount());
+        assertEquals(7L, snapshot.getId());
+        assertEquals("y", cow.getName());
+    }
+
+    @Test
+    public void aCloneHasItsOwnState() {
+        CowImpl cow = new CowImpl("x", 1, 7L);
+        CowImpl clone = cow.clone();
+        assertEquals(cow, clone);
+
+        clone.setCount(9);
+        assertEquals(1, cow.getCount());
+        assertEquals(9, clone.getCount());
+        assertFalse(cow.equals(clone));
+    }
+
+    @Test
+    public void settersFireEventsOnlyForChanges() {
+        CowImpl cow = new CowImpl(7L);
+        final List<PropertyChangeEvent> events = new ArrayList<PropertyChangeEvent>();
+        cow.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                events.add(evt);
+            }
+        });
+        cow.setCount(3);
+        cow.setCount(3);
+
+        assertEquals(1, events.size());
+        assertEquals(0, events.get(0).getOldValue());
+        assertEquals(3, events.get(0).getNewValue());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentUpdatesAreNotLostAndSnapshotsAreConsistent() throws Exception {
+        final CowImpl cow = new CowImpl(0L);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        cow.setName("0");
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (writing.get()) {
+                    CowImpl.State state = cow.snapshot();
+                    if(!state.getName().equals(String.valueOf(state.getCount()))) {
+                        failure.compareAndSet(null, "a half written state: " + state.getName() + ", " + state.getCount());
+                    }
+                }
+            }
+        });
+        reader.start();
+        Threads.runConcurrently(4, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10000; i++) {
+                    cow.update(new Consumer<CowImpl.Mutator>() {
+                        @Override
+                        public void accept(CowImpl.Mutator mutator) {
+                            int count = mutator.getCount() + 1;
+                            mutator.setCount(count).setName(String.valueOf(count));
+                        }
+                    });
+                }
+            }
+        });
+        writing.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(40000, cow.getCount());
+        assertEquals("40000", cow.getName());
+    }
+}
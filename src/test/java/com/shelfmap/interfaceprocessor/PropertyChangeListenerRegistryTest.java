@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.PersonImpl;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the listeners of a generated class, which are held by a PropertyChangeListenerRegistry.
+ *
+ * @author Tsutomu YANO
+ */
+public class PropertyChangeListenerRegistryTest {
+    private static final List<String> RECEIVED = new ArrayList<String>();
+
+    private static final class RecordingListener implements PropertyChangeListener, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String tag;
+
+        RecordingListener(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            RECEIVED.add(tag + ":" + evt.getPropertyName() + "=" + evt.getNewValue());
+        }
+    }
+
+    @Test
+    public void listenersReceiveTheEventsOfTheirProperties() {
+        RECEIVED.clear();
+        PersonImpl person = new PersonImpl(1L);
+        person.setName("nobody");
+        RecordingListener all = new RecordingListener("all");
+        RecordingListener age = new RecordingListener("age");
+        person.addPropertyChangeListener(all);
+        person.addPropertyChangeListener("age", age);
+        person.setName("x");
+        person.setAge(3);
+        person.setAge(3);
+
+        assertEquals("[all:name=x, all:age=3, age:age=3]", RECEIVED.toString());
+        assertEquals(1, person.getPropertyChangeListeners("age").size());
+        assertTrue(person.hasListeners("age"));
+
+        person.removePropertyChangeListener(all);
+        person.removePropertyChangeListener("age", age);
+        RECEIVED.clear();
+        person.setAge(10);
+
+        assertTrue(RECEIVED.isEmpty());
+        assertFalse(person.hasListeners("age"));
+    }
+
+    @Test
+    public void aListenerAddedDuringAnEventReceivesOnlyLaterEvents() {
+        RECEIVED.clear();
+        final PersonImpl person = new PersonImpl(1L);
+        person.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if(RECEIVED.isEmpty()) person.addPropertyChangeListener(new RecordingListener("added"));
+                RECEIVED.add("first:" + evt.getNewValue());
+            }
+        });
+        person.setAge(1);
+        person.setAge(2);
+
+        assertEquals("[first:1, first:2, added:age=2]", RECEIVED.toString());
+    }
+
+    @Test
+    public void onlySerializableListenersAreSerialized() throws Exception {
+        RECEIVED.clear();
+        PersonImpl person = new PersonImpl(1L);
+        person.addPropertyChangeListener(new RecordingListener("kept"));
+        person.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                RECEIVED.add("dropped");
+            }
+        });
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(person);
+        out.close();
+        PersonImpl copy = (PersonImpl) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        copy.setAge(9);
+
+        assertEquals("[kept:age=9]", RECEIVED.toString());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentRegistrationsAreNotLost() throws Exception {
+        final PropertyChangeListenerRegistry registry = new PropertyChangeListenerRegistry(this, "name", "age");
+        Threads.runConcurrently(8, new Runnable() {
+            @Override
+            public void run() {
+                List<PropertyChangeListener> removed = new ArrayList<PropertyChangeListener>();
+                for (int i = 0; i < 1000; i++) {
+                    PropertyChangeListener listener = new RecordingListener("x");
+                    registry.addPropertyChangeListener("age", listener);
+                    if(i % 2 == 0) removed.add(listener);
+                }
+                for (PropertyChangeListener listener : removed) {
+                    registry.removePropertyChangeListener("age", listener);
+                }
+            }
+        });
+
+        assertEquals(4000, registry.getPropertyChangeListeners("age").length);
+        assertTrue(registry.hasListeners(1));
+        assertFalse(registry.hasListeners(0));
+    }
+}
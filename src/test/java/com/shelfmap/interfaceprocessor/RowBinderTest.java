@@ -0,0 +1,202 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.RowImpl;
+import com.shelfmap.interfaceprocessor.fixture.RowRowBinder;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests a row binder generated with generateRowBinder, on a ResultSet which counts the calls.
+ *
+ * @author Tsutomu YANO
+ */
+public class RowBinderTest {
+    private static final String[] LABELS = {"ID", "FIRST_NAME", "extra", "age", "Rank", "unit", "initial", "firstname"};
+    private static final Object[][] ROWS = {
+        {1L, "ann", "x", 30, 5, "SECONDS", "B", "ignored"},
+        {2L, null, "x", 40, null, null, "", "ignored"},
+        {3L, "c", "x", 1, 1, "DAYS", null, "ignored"},
+    };
+
+    /**
+     * A ResultSet over rows of values, which counts the calls of the methods by their names.
+     */
+    private static final class StubResultSet implements InvocationHandler {
+        private final String[] labels;
+        private final Object[][] rows;
+        private final Map<String, Integer> calls = new HashMap<String, Integer>();
+        private final ResultSetMetaData metaData;
+        private int row = -1;
+        private boolean wasNull;
+
+        StubResultSet(String[] labels, Object[][] rows) {
+            this.labels = labels;
+            this.rows = rows;
+            this.metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, this);
+        }
+
+        ResultSet resultSet() {
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class}, this);
+        }
+
+        int calls(String name) {
+            Integer count = calls.get(name);
+            return count == null ? 0 : count;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            calls.put(name, calls(name) + 1);
+            if(name.equals("getMetaData")) return metaData;
+            if(name.equals("getColumnCount")) return labels.length;
+            if(name.equals("getColumnLabel")) return labels[(Integer) args[0] - 1];
+            if(name.equals("next")) return ++row < rows.length;
+            if(name.equals("wasNull")) return wasNull;
+            if(name.startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+                Object value = rows[row][(Integer) args[0] - 1];
+                wasNull = value == null;
+                if(value != null) return value;
+                Class<?> type = method.getReturnType();
+                if(type == int.class) return 0;
+                if(type == long.class) return 0L;
+                return null;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    @Test
+    public void theColumnsAreResolvedOncePerMetaData() throws Exception {
+        StubResultSet stub = new StubResultSet(LABELS, ROWS);
+        ResultSet rs = stub.resultSet();
+        RowRowBinder binder = RowRowBinder.of(rs);
+        assertEquals(1, stub.calls("getMetaData"));
+        assertEquals(LABELS.length, stub.calls("getColumnLabel"));
+
+        List<RowImpl> rows = new ArrayList<RowImpl>();
+        assertEquals(3, binder.bindAll(rs, rows, Integer.MAX_VALUE));
+
+        assertEquals(1, stub.calls("getMetaData"));
+        assertEquals(LABELS.length, stub.calls("getColumnLabel"));
+        assertEquals(0, stub.calls("findColumn"));
+        RowImpl first = rows.get(0);
+        assertEquals(1L, first.getId());
+        assertEquals("ann", first.getFirstName());
+        assertEquals(30, first.getAge());
+        assertEquals(TimeUnit.SECONDS, first.getUnit());
+        assertEquals(Character.valueOf('B'), first.getInitial());
+    }
+
+    @Test
+    public void aNullColumnIsNullForABoxedProperty() throws Exception {
+        StubResultSet stub = new StubResultSet(LABELS, ROWS);
+        ResultSet rs = stub.resultSet();
+        RowRowBinder binder = RowRowBinder.of(rs);
+        rs.next();
+        assertEquals(Integer.valueOf(5), binder.bind(rs).getRank());
+        rs.next();
+        RowImpl second = binder.bind(rs);
+
+        assertNull(second.getRank());
+        assertNull(second.getFirstName());
+        assertNull(second.getUnit());
+        assertNull(second.getInitial());
+        assertEquals(40, second.getAge());
+
+        RowImpl target = new RowImpl("old", 0, 7, TimeUnit.DAYS, 'x', 9L);
+        binder.bindInto(rs, target);
+        assertNull(target.getRank());
+        assertEquals(9L, target.getId());
+    }
+
+    @Test
+    public void aMissingColumnLeavesTheDefaultValue() throws Exception {
+        StubResultSet stub = new StubResultSet(new String[]{"age"}, new Object[][]{{7}});
+        ResultSet rs = stub.resultSet();
+        RowRowBinder binder = new RowRowBinder(rs.getMetaData());
+        rs.next();
+        RowImpl row = binder.bind(rs);
+
+        assertEquals(7, row.getAge());
+        assertNull(row.getFirstName());
+        assertNull(row.getRank());
+        assertEquals(0L, row.getId());
+    }
+
+    @Test
+    public void bindAllIntoAnArrayStartsAtTheOffsetAndStopsWhenItIsFull() throws Exception {
+        StubResultSet stub = new StubResultSet(LABELS, ROWS);
+        ResultSet rs = stub.resultSet();
+        RowRowBinder binder = RowRowBinder.of(rs);
+        RowImpl[] rows = new RowImpl[3];
+
+        assertEquals(2, binder.bindAll(rs, rows, 1));
+        assertNull(rows[0]);
+        assertEquals(1L, rows[1].getId());
+        assertEquals(2L, rows[2].getId());
+        //the third row is not consumed.
+        assertEquals(2, stub.calls("next"));
+        assertEquals(1, binder.bindAll(rs, new RowImpl[1], 0));
+        assertEquals(0, binder.bindAll(rs, new RowImpl[4], 4));
+    }
+
+    @Test
+    public void bindAllIntoAnArrayStopsAtTheLastRow() throws Exception {
+        StubResultSet stub = new StubResultSet(LABELS, ROWS);
+        ResultSet rs = stub.resultSet();
+        RowImpl[] rows = new RowImpl[5];
+
+        assertEquals(3, RowRowBinder.of(rs).bindAll(rs, rows, 0));
+        assertEquals(3L, rows[2].getId());
+        assertNull(rows[3]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void bindAllRejectsAnOffsetBeyondTheArray() throws Exception {
+        ResultSet rs = new StubResultSet(LABELS, ROWS).resultSet();
+        RowRowBinder.of(rs).bindAll(rs, new RowImpl[2], 3);
+    }
+
+    @Test
+    public void bindAllIntoAListAddsAtMostMaxRows() throws Exception {
+        StubResultSet stub = new StubResultSet(LABELS, ROWS);
+        ResultSet rs = stub.resultSet();
+        RowRowBinder binder = RowRowBinder.of(rs);
+        List<Object> rows = new ArrayList<Object>();
+        rows.add("existing");
+
+        assertEquals(2, binder.bindAll(rs, rows, 2));
+        assertEquals(3, rows.size());
+        assertEquals(2, stub.calls("next"));
+        assertEquals(0, binder.bindAll(rs, rows, 0));
+        assertEquals(1, binder.bindAll(rs, rows, 5));
+        assertEquals(3L, ((RowImpl) rows.get(3)).getId());
+    }
+}
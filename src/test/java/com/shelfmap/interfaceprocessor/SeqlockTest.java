@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.TickImpl;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests a class generated with ConcurrencyType.SEQLOCK.
+ *
+ * @author Tsutomu YANO
+ */
+public class SeqlockTest {
+
+    @Test(timeout = 60000)
+    public void aSnapshotNeverSeesAHalfWrittenUpdate() throws Exception {
+        final TickImpl tick = new TickImpl(7);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long i = 1; i <= 200000; i++) {
+                    tick.setTime(i);
+                    tick.addAndGetBid(1.0);
+                }
+                writing.set(false);
+            }
+        });
+        writer.start();
+        long inconsistent = 0;
+        long snapshots = 0;
+        while (writing.get()) {
+            TickImpl.State state = tick.snapshot();
+            //each setter is consistent on its own, so the bid is the time or one less.
+            if(state.getBid() > state.getTime() || state.getBid() < state.getTime() - 1) inconsistent++;
+            snapshots++;
+        }
+        writer.join();
+
+        assertEquals("inconsistent snapshots in " + snapshots, 0L, inconsistent);
+        assertEquals(200000.0, tick.getBid(), 0.0);
+        assertEquals(200000L, tick.getTime());
+        assertEquals(7, tick.getSymbol());
+    }
+
+    @Test
+    public void accessorsEqualsAndCloneReadTheFields() {
+        TickImpl tick = new TickImpl(1.5, 2.5, 10L, 3);
+        TickImpl clone = tick.clone();
+
+        assertEquals(tick, clone);
+        assertEquals(tick.hashCode(), clone.hashCode());
+        clone.setAsk(3.0);
+        assertEquals(2.5, tick.getAsk(), 0.0);
+        assertTrue(clone.compareAndSetTime(10L, 11L));
+        assertEquals(11L, clone.snapshot().getTime());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void aFrozenObjectCanNotBeModified() {
+        TickImpl tick = new TickImpl(7);
+        tick.freeze();
+        tick.setAsk(1.0);
+    }
+}
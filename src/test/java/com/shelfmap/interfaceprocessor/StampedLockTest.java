@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.QuoteImpl;
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests a class generated with ConcurrencyType.STAMPED_LOCK.
+ *
+ * @author Tsutomu YANO
+ */
+public class StampedLockTest {
+
+    @Test
+    public void theFieldsAreGuardedByAStampedLock() throws Exception {
+        Field lock = QuoteImpl.class.getDeclaredField("instanceLock");
+        assertEquals(StampedLock.class, lock.getType());
+    }
+
+    @Test
+    public void gettersReadTheValuesOfSetters() {
+        QuoteImpl quote = new QuoteImpl(10L);
+        quote.setSymbol("ABC");
+        quote.setPrice(1.5);
+
+        assertEquals("ABC", quote.getSymbol());
+        assertEquals(1.5, quote.getPrice(), 0.0);
+        assertEquals(10L, quote.getVolume());
+        assertEquals(new QuoteImpl("ABC", 1.5, 10L), quote);
+        assertEquals(new QuoteImpl("ABC", 1.5, 10L).hashCode(), quote.hashCode());
+        assertEquals("QuoteImpl{symbol=ABC, price=1.5, volume=10}", quote.toString());
+    }
+
+    @Test(timeout = 60000)
+    public void optimisticReadsSeeOnlyWrittenValues() throws Exception {
+        final QuoteImpl quote = new QuoteImpl(0L);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                double last = 0.0;
+                while (writing.get()) {
+                    double price = quote.getPrice();
+                    if(price < last || price != Math.rint(price)) {
+                        failure.compareAndSet(null, last + " -> " + price);
+                    }
+                    last = price;
+                }
+            }
+        });
+        reader.start();
+        Threads.runConcurrently(4, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10000; i++) {
+                    quote.addAndGetPrice(1.0);
+                }
+            }
+        });
+        writing.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(40000.0, quote.getPrice(), 0.0);
+    }
+}
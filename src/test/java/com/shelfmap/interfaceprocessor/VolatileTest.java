@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor;
+
+import com.shelfmap.interfaceprocessor.fixture.FlagImpl;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests a class generated with ConcurrencyType.VOLATILE.
+ *
+ * @author Tsutomu YANO
+ */
+public class VolatileTest {
+
+    @Test
+    public void theFieldsAreVolatileAndNoLockIsCreated() {
+        for (Field field : FlagImpl.class.getDeclaredFields()) {
+            if(java.lang.reflect.Modifier.isStatic(field.getModifiers())) continue;
+            Class<?> type = field.getType();
+            assertFalse(field.getName(), Lock.class.isAssignableFrom(type) || ReadWriteLock.class.isAssignableFrom(type) || type == StampedLock.class);
+            if(!field.getName().equals("propertySupport")) {
+                assertTrue(field.getName(), java.lang.reflect.Modifier.isVolatile(field.getModifiers()));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void aValueIsVisibleToOtherThreads() throws Exception {
+        final FlagImpl flag = new FlagImpl(0L);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!flag.isEnabled()) {
+                    Thread.onSpinWait();
+                }
+                flag.setCount(flag.getCount() + 1);
+            }
+        });
+        waiter.start();
+        flag.setCount(41);
+        flag.setEnabled(true);
+        waiter.join();
+
+        assertEquals(42, flag.getCount());
+    }
+
+    @Test
+    public void settersFireEventsOnlyForChanges() {
+        FlagImpl flag = new FlagImpl(0L);
+        final List<PropertyChangeEvent> events = new ArrayList<PropertyChangeEvent>();
+        flag.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                events.add(evt);
+            }
+        });
+        flag.setSymbol("A");
+        flag.setSymbol("A");
+        flag.setPrice(2.5);
+
+        assertEquals(2, events.size());
+        assertEquals("symbol", events.get(0).getPropertyName());
+        assertNull(events.get(0).getOldValue());
+        assertEquals("A", events.get(0).getNewValue());
+        assertEquals(0.0, events.get(1).getOldValue());
+        assertEquals(2.5, events.get(1).getNewValue());
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2011 Tsutomu YANO.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shelfmap.interfaceprocessor.fixture;
+
+import com.shelfmap.interfaceprocessor.annotation.GenerateClass;
+import java.util.concurrent.TimeUnit;
+
+@GenerateClass(generateRowBinder = true)
+public interface Row {
+    String getFirstName();
+    void setFirstName(String firstName);
+    int getAge();
+    void setAge(int age);
+    Integer getRank();
+    void setRank(Integer rank);
+    TimeUnit getUnit();
+    void setUnit(TimeUnit unit);
+    Character getInitial();
+    void setInitial(Character initial);
+    long getId();
+}